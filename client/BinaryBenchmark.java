@@ -0,0 +1,136 @@
+package client;
+
+import common.Employee;
+import common.EmployeeService;
+import common.PayrollService;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares RMI with the binary protocol endpoint on the same server, using read calls only
+ * (getEmployeeByUsername and getPayrollRecords for an existing employee):
+ * <pre>
+ * java -cp .:common:client client.BinaryBenchmark host rmiPort binaryPort username [calls] [threads] [window]
+ * </pre>
+ * Runs RMI and blocking binary calls from the given number of threads (one shared binary
+ * connection), then pipelined binary calls from a single thread with up to "window" requests in
+ * flight, and prints throughput and latency percentiles for each.
+ */
+public class BinaryBenchmark {
+    private interface Call {
+        void run(int i) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: client.BinaryBenchmark host rmiPort binaryPort username [calls] [threads] [window]");
+            return;
+        }
+        String host = args[0];
+        String username = args[3];
+        int calls = args.length > 4 ? Integer.parseInt(args[4]) : 20000;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : 8;
+        int window = args.length > 6 ? Integer.parseInt(args[6]) : 64;
+
+        Registry registry = LocateRegistry.getRegistry(host, Integer.parseInt(args[1]));
+        EmployeeService rmiEmployees = (EmployeeService) registry.lookup("EmployeeService");
+        PayrollService rmiPayroll = (PayrollService) registry.lookup("PayrollService");
+        Employee employee = rmiEmployees.getEmployeeByUsername(username);
+        if (employee == null) {
+            System.err.println("No employee " + username);
+            return;
+        }
+        int employeeId = employee.getId();
+        System.out.println("Employee " + username + " has " + rmiPayroll.getPayrollRecords(employeeId).size() + " payroll records; "
+                + calls + " calls, " + threads + " threads, pipeline window " + window);
+
+        try (BinaryClient client = BinaryClient.connect(host, Integer.parseInt(args[2]))) {
+            EmployeeService binEmployees = client.getEmployeeService();
+            PayrollService binPayroll = client.getPayrollService();
+            Call rmi = i -> {
+                if (i % 2 == 0) {
+                    rmiEmployees.getEmployeeByUsername(username);
+                } else {
+                    rmiPayroll.getPayrollRecords(employeeId);
+                }
+            };
+            Call binary = i -> {
+                if (i % 2 == 0) {
+                    binEmployees.getEmployeeByUsername(username);
+                } else {
+                    binPayroll.getPayrollRecords(employeeId);
+                }
+            };
+            // 预热，让两边都完成JIT编译
+            measure("warm-up", calls / 5, threads, rmi, false);
+            measure("warm-up", calls / 5, threads, binary, false);
+            pipelined(client, calls / 5, window, username, employeeId, false);
+
+            measure("RMI", calls, threads, rmi, true);
+            measure("binary", calls, threads, binary, true);
+            pipelined(client, calls, window, username, employeeId, true);
+        }
+        System.exit(0);
+    }
+
+    private static void measure(String name, int calls, int threads, Call call, boolean print) throws Exception {
+        long[] latencies = new long[calls];
+        AtomicLong next = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        Exception[] failure = new Exception[1];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                int i;
+                while ((i = (int) next.getAndIncrement()) < calls) {
+                    long begin = System.nanoTime();
+                    try {
+                        call.run(i);
+                    } catch (Exception e) {
+                        failure[0] = e;
+                        return;
+                    }
+                    latencies[i] = System.nanoTime() - begin;
+                }
+            }, "bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        long elapsed = System.nanoTime() - start;
+        if (print) {
+            Arrays.sort(latencies);
+            System.out.printf("%-18s %9.0f calls/s   p50 %6.3f ms   p99 %6.3f ms%n", name, calls * 1e9 / elapsed,
+                    latencies[calls / 2] / 1e6, latencies[Math.min(calls - 1, calls * 99 / 100)] / 1e6);
+        }
+    }
+
+    private static void pipelined(BinaryClient client, int calls, int window, String username, int employeeId, boolean print) throws Exception {
+        Semaphore slots = new Semaphore(window);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[calls];
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            slots.acquire();
+            CompletableFuture<Object> future = i % 2 == 0
+                    ? client.callAsync(EmployeeService.class, "getEmployeeByUsername", username)
+                    : client.callAsync(PayrollService.class, "getPayrollRecords", employeeId);
+            futures[i] = future.whenComplete((result, error) -> slots.release());
+        }
+        CompletableFuture.allOf(futures).join();
+        long elapsed = System.nanoTime() - start;
+        if (print) {
+            System.out.printf("%-18s %9.0f calls/s   (1 thread, window %d)%n", "binary pipelined", calls * 1e9 / elapsed, window);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package client;
+
+import common.BinaryProtocol;
+import common.EmployeeService;
+import common.PayrollService;
+import common.ServerBusyException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.ConnectIOException;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BinaryClient calls a server's binary protocol endpoint (-Dpayroll.binary.port) over one TCP
+ * connection, for integrations that push or read many rows.
+ * <p>
+ * {@link #getEmployeeService()} and {@link #getPayrollService()} return the usual interfaces.
+ * Any number of threads can use them at once; their requests are multiplexed on the connection
+ * and each call waits only for its own response. {@link #callAsync} sends a request without
+ * waiting, so one thread can keep many requests in flight (pipelining). Futures complete on the
+ * reader thread, so callbacks attached to them should not block.
+ * <p>
+ * Server errors arrive like RMI's: a ServerException whose cause carries the server's message
+ * (a {@link ServerBusyException} when the server shed the call). Event listeners need RMI and
+ * are not available here.
+ */
+public class BinaryClient implements Closeable {
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("payroll.client.connectTimeoutMs", 2000);
+    private static final long CALL_TIMEOUT_MS = Long.getLong("payroll.client.callTimeoutMs", 30000);
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private final EmployeeService employeeService;
+    private final PayrollService payrollService;
+    private volatile IOException failure;
+
+    private BinaryClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        this.employeeService = proxy(EmployeeService.class);
+        this.payrollService = proxy(PayrollService.class);
+        Thread reader = new Thread(this::readResponses, "binary-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public static BinaryClient connect(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        socket.setTcpNoDelay(true);
+        return new BinaryClient(socket);
+    }
+
+    public EmployeeService getEmployeeService() {
+        return employeeService;
+    }
+
+    public PayrollService getPayrollService() {
+        return payrollService;
+    }
+
+    /**
+     * Sends a request without waiting for the response.
+     * @param service EmployeeService.class or PayrollService.class
+     * @param method Method name; overloads are told apart by the number of arguments
+     * @return Future completed with the method's return value; cancelling it abandons the call
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> callAsync(Class<?> service, String method, Object... args) {
+        Method target = BinaryProtocol.find(service, method, args.length);
+        if (target == null) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new RemoteException("Not available over the binary protocol: " + method + " with " + args.length + " arguments"));
+            return failed;
+        }
+        return (CompletableFuture<T>) send(target, args);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private CompletableFuture<Object> send(Method method, Object[] args) {
+        int id = nextId.incrementAndGet();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        // 调用方超时或取消时也从pending中移除，迟到的响应直接丢弃
+        future.whenComplete((value, error) -> pending.remove(id, future));
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream frame = new DataOutputStream(bytes);
+            frame.writeInt(0);
+            frame.writeInt(id);
+            frame.writeShort(BinaryProtocol.opcode(method));
+            BinaryProtocol.writeArguments(frame, method, args);
+            byte[] request = bytes.toByteArray();
+            int length = request.length - 4;
+            request[0] = (byte) (length >>> 24);
+            request[1] = (byte) (length >>> 16);
+            request[2] = (byte) (length >>> 8);
+            request[3] = (byte) length;
+            pending.put(id, future);
+            synchronized (out) {
+                if (failure != null) {
+                    throw failure;
+                }
+                out.write(request);
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(new ConnectIOException("Binary protocol request failed: " + e.getMessage(), e));
+        }
+        return future;
+    }
+
+    private void readResponses() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < 5 || length > BinaryProtocol.MAX_FRAME) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                int id = in.readInt();
+                byte status = in.readByte();
+                Object value = BinaryProtocol.readValue(in);
+                CompletableFuture<Object> future = pending.remove(id);
+                if (future == null) {
+                    continue;
+                }
+                if (status == BinaryProtocol.OK) {
+                    future.complete(value);
+                } else {
+                    String message = String.valueOf(value);
+                    RemoteException cause = status == BinaryProtocol.BUSY ? new ServerBusyException(message) : new RemoteException(message);
+                    future.completeExceptionally(new ServerException("RemoteException occurred in server thread", cause));
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            // 连接断开，所有等待中的调用立即失败
+            for (Integer id : pending.keySet()) {
+                CompletableFuture<Object> future = pending.remove(id);
+                if (future != null) {
+                    future.completeExceptionally(new ConnectIOException("Binary protocol connection lost: " + e.getMessage(), e));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> service) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "BinaryClient[" + service.getSimpleName() + " @ " + socket.getRemoteSocketAddress() + "]";
+                }
+            }
+            if (BinaryProtocol.opcode(method) < 0) {
+                throw new RemoteException("Not available over the binary protocol: " + method.getName());
+            }
+            CompletableFuture<Object> future = send(method, args);
+            try {
+                return future.get(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                throw new RemoteException("Call timed out after " + CALL_TIMEOUT_MS + " ms: " + method.getName());
+            } catch (InterruptedException e) {
+                future.cancel(false);
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Interrupted while waiting for " + method.getName());
+            }
+        };
+        return (T) Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[]{service}, handler);
+    }
+}
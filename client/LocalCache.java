@@ -0,0 +1,277 @@
+package client;
+
+import common.ChangeSet;
+import common.Employee;
+import common.PayrollRecord;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LocalCache is a synced copy of server rows kept in a small binary file, so windows can show
+ * the last known data at once and then fetch only what changed since the cache's version.
+ * <p>
+ * File layout: magic, format version, sync version (the high-water mark passed back to
+ * getChangesSince), row count, then the rows as written by a {@link Codec}. The file is replaced
+ * through a temporary file after each sync that changed something; a missing, foreign or damaged
+ * file is treated as empty. Passwords are never written.
+ * <p>
+ * Files live in -Dpayroll.client.cacheDir (default ~/.payroll-cache), in a subdirectory per
+ * server list and tenant; -Dpayroll.client.cache=false keeps the copies in memory only.
+ */
+class LocalCache<T extends Serializable> {
+    private static final int MAGIC = 0x50434331;
+    private static final int FORMAT = 1;
+    private static final boolean PERSISTENT = Boolean.parseBoolean(System.getProperty("payroll.client.cache", "true"));
+    private static final Map<String, LocalCache<?>> OPEN = new ConcurrentHashMap<>();
+
+    /** Reads and writes one row type. */
+    interface Codec<T> {
+        int id(T row);
+
+        void write(DataOutputStream out, T row) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /** Fetches the changes after a version, e.g. {@code payrollService::getChangesSince}. */
+    @FunctionalInterface
+    interface Fetch<T extends Serializable> {
+        ChangeSet<T> since(long version) throws RemoteException;
+    }
+
+    private static final Codec<PayrollRecord> PAYROLL = new Codec<PayrollRecord>() {
+        @Override
+        public int id(PayrollRecord row) {
+            return row.getId();
+        }
+
+        @Override
+        public void write(DataOutputStream out, PayrollRecord row) throws IOException {
+            out.writeInt(row.getId());
+            out.writeInt(row.getEmployeeId());
+            writeString(out, row.getPeriod());
+            out.writeDouble(row.getBaseSalary());
+            out.writeDouble(row.getOvertimeHours());
+            out.writeDouble(row.getOvertimeRate());
+            out.writeDouble(row.getBonus());
+            out.writeDouble(row.getAllowance());
+            out.writeDouble(row.getGrossPay());
+            out.writeDouble(row.getDeductions());
+            out.writeDouble(row.getNetPay());
+        }
+
+        @Override
+        public PayrollRecord read(DataInputStream in) throws IOException {
+            PayrollRecord row = new PayrollRecord();
+            row.setId(in.readInt());
+            row.setEmployeeId(in.readInt());
+            row.setPeriod(readString(in));
+            row.setBaseSalary(in.readDouble());
+            row.setOvertimeHours(in.readDouble());
+            row.setOvertimeRate(in.readDouble());
+            row.setBonus(in.readDouble());
+            row.setAllowance(in.readDouble());
+            row.setGrossPay(in.readDouble());
+            row.setDeductions(in.readDouble());
+            row.setNetPay(in.readDouble());
+            return row;
+        }
+    };
+
+    private static final Codec<Employee> EMPLOYEE = new Codec<Employee>() {
+        @Override
+        public int id(Employee row) {
+            return row.getId();
+        }
+
+        @Override
+        public void write(DataOutputStream out, Employee row) throws IOException {
+            out.writeInt(row.getId());
+            writeString(out, row.getUsername());
+            writeString(out, row.getFirstName());
+            writeString(out, row.getLastName());
+            writeString(out, row.getIcPassport());
+            writeString(out, row.getRole());
+        }
+
+        @Override
+        public Employee read(DataInputStream in) throws IOException {
+            Employee row = new Employee();
+            row.setId(in.readInt());
+            row.setUsername(readString(in));
+            row.setFirstName(readString(in));
+            row.setLastName(readString(in));
+            row.setIcPassport(readString(in));
+            row.setRole(readString(in));
+            return row;
+        }
+    };
+
+    private final File file;
+    private final Codec<T> codec;
+    private final Map<Integer, T> rows = new TreeMap<>();
+    private long version;
+
+    private LocalCache(File file, Codec<T> codec) {
+        this.file = file;
+        this.codec = codec;
+        if (file != null) {
+            load();
+        }
+    }
+
+    /**
+     * @param name File name without extension, e.g. "payroll-all" or "payroll-42"
+     */
+    @SuppressWarnings("unchecked")
+    static LocalCache<PayrollRecord> payroll(String name) {
+        return (LocalCache<PayrollRecord>) OPEN.computeIfAbsent(name, n -> new LocalCache<>(fileFor(n), PAYROLL));
+    }
+
+    @SuppressWarnings("unchecked")
+    static LocalCache<Employee> employees() {
+        return (LocalCache<Employee>) OPEN.computeIfAbsent("employees", n -> new LocalCache<>(fileFor(n), EMPLOYEE));
+    }
+
+    /**
+     * @return The cached rows in ID order
+     */
+    synchronized List<T> rows() {
+        return new ArrayList<>(rows.values());
+    }
+
+    synchronized boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    /**
+     * Fetches the changes after the cache's version and applies them, saving the file if anything
+     * changed. If the server reports an older version than the cache holds (its clock went back),
+     * the cache is dropped and refetched in full.
+     * @return true if the rows changed
+     */
+    boolean sync(Fetch<T> fetch) throws RemoteException {
+        long base;
+        synchronized (this) {
+            base = version;
+        }
+        long from = base;
+        ChangeSet<T> changes = fetch.since(from);
+        if (changes.getVersion() < from) {
+            System.out.println("[CLIENT] Server is behind local cache " + (file == null ? "" : file.getName()) + ", reloading");
+            changes = fetch.since(0);
+            from = 0;
+        }
+        synchronized (this) {
+            if (base != version) {
+                // 另一次同步已先完成，本次结果可能较旧
+                return false;
+            }
+            boolean changed = from == 0 && !rows.isEmpty();
+            if (from == 0) {
+                rows.clear();
+            }
+            for (T row : changes.getUpserts()) {
+                rows.put(codec.id(row), row);
+                changed = true;
+            }
+            for (Integer id : changes.getDeletedIds()) {
+                changed |= rows.remove(id) != null;
+            }
+            version = changes.getVersion();
+            // 只有版本前进时不重写文件，下次启动多拉一点增量即可
+            if (file != null && changed) {
+                save();
+            }
+            return changed;
+        }
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                return;
+            }
+            long savedVersion = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                T row = codec.read(in);
+                rows.put(codec.id(row), row);
+            }
+            version = savedVersion;
+        } catch (FileNotFoundException e) {
+            // 首次使用，没有缓存文件
+        } catch (IOException e) {
+            System.err.println("[CLIENT] Ignoring damaged cache " + file + ": " + e.getMessage());
+            rows.clear();
+            version = 0;
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(version);
+                out.writeInt(rows.size());
+                for (T row : rows.values()) {
+                    codec.write(out, row);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 缓存写不进去不影响使用，下次启动从头同步
+            System.err.println("[CLIENT] Failed to save cache " + file + ": " + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    private static File fileFor(String name) {
+        if (!PERSISTENT) {
+            return null;
+        }
+        File root = new File(System.getProperty("payroll.client.cacheDir", System.getProperty("user.home") + File.separator + ".payroll-cache"));
+        // 不同服务端的数据分目录存放
+        String server = ServerConnection.configuredEndpoints().replaceAll("[^A-Za-z0-9.-]+", "_");
+        File dir = new File(root, server);
+        // 同一服务端上的不同租户员工ID会重复，必须分开存放
+        String tenant = ServerConnection.configuredTenant();
+        if (tenant != null) {
+            dir = new File(dir, "tenant-" + tenant.replaceAll("[^A-Za-z0-9_-]+", "_"));
+        }
+        return new File(dir, name + ".bin");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -7,8 +7,6 @@ import common.PayrollService;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import javax.swing.border.EmptyBorder;
 
 /**
@@ -18,6 +16,14 @@ import javax.swing.border.EmptyBorder;
 public class PayrollClient {
     private EmployeeService employeeService;
     private PayrollService payrollService;
+    private static final String OFFLINE_SUFFIX = " (offline copy)";
+    private static final int BULK_BATCH_SIZE = Integer.getInteger("payroll.client.batchSize", 200);
+    // 本地缓存的后台同步，单线程保证同一缓存不会并发同步
+    private final java.util.concurrent.ExecutorService cacheSync = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "cache-sync");
+        t.setDaemon(true);
+        return t;
+    });
 
     public PayrollClient() {
         System.out.println("[CLIENT] Employee.class loaded from: " + common.Employee.class.getProtectionDomain().getCodeSource().getLocation());
@@ -27,13 +33,10 @@ public class PayrollClient {
             System.err.println("Failed to set system look and feel");
         }
         try {
-            // 纯RMI连接，完全禁用SSL
-            Registry registry = LocateRegistry.getRegistry("172.20.10.2", 1099);
-            System.out.println("Connected to RMI registry (Pure RMI, No SSL)");
-            employeeService = (EmployeeService) registry.lookup("EmployeeService");
-            System.out.println("EmployeeService lookup success");
-            payrollService = (PayrollService) registry.lookup("PayrollService");
-            System.out.println("PayrollService lookup success");
+            // 纯RMI连接，完全禁用SSL；-Dpayroll.servers=host:port,host:port 配置多个服务端，自动选择最快的并在故障时切换
+            ServerConnection connection = ServerConnection.connect(ServerConnection.configuredEndpoints());
+            employeeService = connection.getEmployeeService();
+            payrollService = connection.getPayrollService();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Failed to connect to server: " + e.getMessage());
             e.printStackTrace();
@@ -779,17 +782,13 @@ public class PayrollClient {
         JScrollPane scrollPane = new JScrollPane(table);
         frame.add(scrollPane, BorderLayout.CENTER);
 
-        Runnable loadRecords = () -> {
+        Runnable loadRecords = () -> loadCached(frame, "payroll records", LocalCache.payroll("payroll-" + emp.getId()),
+                version -> payrollService.getChangesSince(emp.getId(), version), records -> {
             model.setRowCount(0);
-            try {
-                java.util.List<common.PayrollRecord> records = payrollService.getPayrollRecords(emp.getId());
-                for (common.PayrollRecord rec : records) {
-                    model.addRow(new Object[]{rec.getPeriod(), rec.getGrossPay(), rec.getDeductions(), rec.getNetPay()});
-                }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "Error loading payroll records: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            for (common.PayrollRecord rec : records) {
+                model.addRow(new Object[]{rec.getPeriod(), rec.getGrossPay(), rec.getDeductions(), rec.getNetPay()});
             }
-        };
+        });
         loadRecords.run();
 
         refreshBtn.addActionListener(e -> {
@@ -816,8 +815,25 @@ public class PayrollClient {
         topPanel.add(title, BorderLayout.WEST);
         JButton refreshBtn = new JButton("Refresh");
         refreshBtn.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        topPanel.add(refreshBtn, BorderLayout.EAST);
+        JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
+        // 默认只加载本年度，避免每次打开都拉取全部历史
+        JComboBox<String> rangeBox = new JComboBox<>(new String[]{"This Year", "Last 12 Months", "All"});
+        rangeBox.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        btnPanel.add(rangeBox);
+        btnPanel.add(refreshBtn);
+        topPanel.add(btnPanel, BorderLayout.EAST);
         frame.add(topPanel, BorderLayout.NORTH);
+        // 仅admin可批量导出当期所有员工的工资单（ZIP）
+        if (emp.getRole() != null && emp.getRole().equalsIgnoreCase("admin")) {
+            JButton payslipBtn = new JButton("Download Payslips");
+            payslipBtn.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+            btnPanel.add(payslipBtn);
+            payslipBtn.addActionListener(e -> downloadPayslips(frame));
+            JButton statsBtn = new JButton("Statistics");
+            statsBtn.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+            btnPanel.add(statsBtn);
+            statsBtn.addActionListener(e -> showStatisticsWindow());
+        }
 
         String[] columns = {"Employee", "Period", "Base Salary", "Allowance", "Gross Pay", "Deductions", "Net Pay"};
         javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
@@ -832,48 +848,49 @@ public class PayrollClient {
         JScrollPane scrollPane = new JScrollPane(table);
         frame.add(scrollPane, BorderLayout.CENTER);
 
-        Runnable loadRecords = () -> {
+        // 报表先显示本地缓存，再在后台拉取增量
+        boolean admin = emp.getRole() != null && emp.getRole().equalsIgnoreCase("admin");
+        title.setText(admin ? "All Employees Payroll Report" : "My Payroll Report");
+        LocalCache<common.PayrollRecord> cache = admin ? LocalCache.payroll("payroll-all") : LocalCache.payroll("payroll-" + emp.getId());
+        LocalCache.Fetch<common.PayrollRecord> fetch = admin ? payrollService::getChangesSince : version -> payrollService.getChangesSince(emp.getId(), version);
+        Runnable loadRecords = () -> loadCached(frame, "payroll records", cache, fetch, records -> {
             model.setRowCount(0);
-            try {
-                if (emp.getRole() != null && emp.getRole().equalsIgnoreCase("admin")) {
-                    title.setText("All Employees Payroll Report");
-                    java.util.List<common.PayrollRecord> records = payrollService.getAllPayrollRecords();
-                    for (common.PayrollRecord rec : records) {
-                        model.addRow(new Object[]{
-                            rec.getEmployeeId(),
-                            rec.getPeriod(),
-                            rec.getBaseSalary(),
-                            rec.getAllowance(),
-                            rec.getGrossPay(),
-                            rec.getDeductions(),
-                            rec.getNetPay()
-                        });
-                    }
-                } else {
-                    title.setText("My Payroll Report");
-                    java.util.List<common.PayrollRecord> records = payrollService.getPayrollRecords(emp.getId());
-                    for (common.PayrollRecord rec : records) {
-                        model.addRow(new Object[]{
-                            emp.getUsername(),
-                            rec.getPeriod(),
-                            rec.getBaseSalary(),
-                            rec.getAllowance(),
-                            rec.getGrossPay(),
-                            rec.getDeductions(),
-                            rec.getNetPay()
-                        });
-                    }
+            java.time.YearMonth now = java.time.YearMonth.now();
+            String fromPeriod;
+            switch (rangeBox.getSelectedIndex()) {
+                case 0: fromPeriod = now.withMonth(1).toString(); break;
+                case 1: fromPeriod = now.minusMonths(11).toString(); break;
+                default: fromPeriod = null;
+            }
+            if (!admin) {
+                records.sort(java.util.Comparator.comparing(common.PayrollRecord::getPeriod).thenComparingInt(common.PayrollRecord::getId));
+            }
+            for (common.PayrollRecord rec : records) {
+                if (fromPeriod != null && rec.getPeriod().compareTo(fromPeriod) < 0) {
+                    continue;
                 }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "Error loading payroll records: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                model.addRow(new Object[]{
+                    admin ? rec.getEmployeeId() : emp.getUsername(),
+                    rec.getPeriod(),
+                    rec.getBaseSalary(),
+                    rec.getAllowance(),
+                    rec.getGrossPay(),
+                    rec.getDeductions(),
+                    rec.getNetPay()
+                });
             }
-        };
+        });
         loadRecords.run();
+        // 服务端推送新工资单时自动刷新
+        subscribeToChanges(frame, ev -> ev.getType() == common.ChangeEvent.Type.RESYNC
+                || (ev.getType() == common.ChangeEvent.Type.PAYROLL_CREATED && (admin || ev.getEmployeeId() == emp.getId()))
+                || (admin && ev.getType() == common.ChangeEvent.Type.EMPLOYEE_DELETED), loadRecords);
 
         refreshBtn.addActionListener(e -> {
             loadRecords.run();
             JOptionPane.showMessageDialog(frame, "Report refreshed.", "Info", JOptionPane.INFORMATION_MESSAGE);
         });
+        rangeBox.addActionListener(e -> loadRecords.run());
 
         // 所有用户都可下载自己的工资单CSV
         JButton csvBtn = new JButton("Download CSV");
@@ -910,6 +927,130 @@ public class PayrollClient {
         frame.setVisible(true);
     }
 
+    /**
+     * Shows net pay distribution (median, p90, p99, histogram) per period or role, with the
+     * month-over-month change of the median when grouped by period. Computed server-side in one call.
+     */
+    private void showStatisticsWindow() {
+        JFrame frame = new JFrame("Payroll Statistics");
+        frame.setSize(820, 460);
+        frame.setLocationRelativeTo(null);
+        frame.setLayout(new BorderLayout());
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        JComboBox<String> groupBox = new JComboBox<>(new String[]{"period", "role"});
+        JComboBox<String> measureBox = new JComboBox<>(new String[]{"netPay", "grossPay", "baseSalary", "deductions"});
+        topPanel.add(new JLabel("Group by:"));
+        topPanel.add(groupBox);
+        topPanel.add(new JLabel("Measure:"));
+        topPanel.add(measureBox);
+        frame.add(topPanel, BorderLayout.NORTH);
+
+        String[] columns = {"Group", "Count", "Total", "Median", "P90", "P99", "Median vs Prev"};
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        JTable table = new JTable(model);
+        table.setRowHeight(26);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 14));
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+        JTextArea histogramArea = new JTextArea(6, 40);
+        histogramArea.setEditable(false);
+        histogramArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        frame.add(new JScrollPane(histogramArea), BorderLayout.SOUTH);
+
+        final java.util.List<common.PayrollDistribution> current = new java.util.ArrayList<>();
+        Runnable load = () -> {
+            model.setRowCount(0);
+            current.clear();
+            histogramArea.setText("");
+            try {
+                String groupBy = (String) groupBox.getSelectedItem();
+                current.addAll(payrollService.getPayrollDistribution(groupBy, (String) measureBox.getSelectedItem()));
+                common.PayrollDistribution previous = null;
+                for (common.PayrollDistribution d : current) {
+                    String change = "-";
+                    if ("period".equals(groupBy) && previous != null && previous.getMedian() != 0) {
+                        change = String.format("%+.1f%%", (d.getMedian() - previous.getMedian()) / previous.getMedian() * 100);
+                    }
+                    model.addRow(new Object[]{
+                        d.getKey(),
+                        d.getCount(),
+                        String.format("%.2f", d.getTotal()),
+                        String.format("%.2f", d.getMedian()),
+                        String.format("%.2f", d.getP90()),
+                        String.format("%.2f", d.getP99()),
+                        change
+                    });
+                    previous = d;
+                }
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(frame, "Error loading statistics: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        };
+        // 选中一行时显示该组的直方图
+        table.getSelectionModel().addListSelectionListener(e -> {
+            int row = table.getSelectedRow();
+            if (e.getValueIsAdjusting() || row < 0 || row >= current.size()) {
+                return;
+            }
+            common.QuantileSketch sketch = current.get(row).getSketch();
+            int buckets = 10;
+            long[] histogram = sketch.getHistogram(buckets);
+            long peak = java.util.Arrays.stream(histogram).max().orElse(1);
+            double width = (sketch.getMax() - sketch.getMin()) / buckets;
+            StringBuilder sb = new StringBuilder();
+            for (int b = 0; b < buckets; b++) {
+                double lo = sketch.getMin() + b * width;
+                sb.append(String.format("%10.2f - %10.2f  %8d  ", lo, lo + width, histogram[b]));
+                sb.append("#".repeat((int) (40 * histogram[b] / Math.max(1, peak)))).append('\n');
+            }
+            histogramArea.setText(sb.toString());
+        });
+        groupBox.addActionListener(e -> load.run());
+        measureBox.addActionListener(e -> load.run());
+        load.run();
+        frame.setVisible(true);
+    }
+
+    /**
+     * Asks for a period and format, then downloads all payslips of that period as one ZIP file.
+     * The download runs on a background thread so the window stays responsive.
+     * @param frame Parent window
+     */
+    private void downloadPayslips(JFrame frame) {
+        String period = JOptionPane.showInputDialog(frame, "Period (yyyy-MM):", java.time.YearMonth.now().toString());
+        if (period == null || period.trim().isEmpty()) {
+            return;
+        }
+        String format = (String) JOptionPane.showInputDialog(frame, "Payslip format:", "Download Payslips",
+                JOptionPane.QUESTION_MESSAGE, null, new String[]{"html", "text"}, "html");
+        if (format == null) {
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new java.io.File("payslips-" + period.trim() + ".zip"));
+        if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File file = fileChooser.getSelectedFile();
+        new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try (java.io.OutputStream out = new java.io.BufferedOutputStream(new java.io.FileOutputStream(file))) {
+                String exportId = payrollService.startPayslipExport(period.trim(), format);
+                byte[] chunk;
+                while ((chunk = payrollService.readExportChunk(exportId)) != null) {
+                    out.write(chunk);
+                }
+                long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, "Payslips saved to " + file.getName() + " (" + seconds + "s)."));
+            } catch (Exception ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, "Error downloading payslips: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+            }
+        }, "payslip-download").start();
+    }
+
     /**
      * Shows the employee management window (admin only).
      */
@@ -938,7 +1079,7 @@ public class PayrollClient {
             public boolean isCellEditable(int row, int column) { return false; }
         };
         JTable table = new JTable(model);
-        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         table.setRowHeight(28);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 15));
         table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 15));
@@ -946,18 +1087,15 @@ public class PayrollClient {
         JScrollPane scrollPane = new JScrollPane(table);
         frame.add(scrollPane, BorderLayout.CENTER);
 
-        Runnable loadEmployees = () -> {
+        // 员工目录先显示本地缓存，再在后台拉取增量
+        Runnable loadEmployees = () -> loadCached(frame, "employees", LocalCache.employees(), employeeService::getChangesSince, employees -> {
             model.setRowCount(0);
-            try {
-                final java.util.List<common.Employee> employees = employeeService.getAllEmployees();
-                for (common.Employee emp : employees) {
-                    model.addRow(new Object[]{emp.getId(), emp.getUsername(), emp.getFirstName(), emp.getLastName(), emp.getIcPassport(), emp.getRole()});
-                }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "Error loading employees: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            for (common.Employee emp : employees) {
+                model.addRow(new Object[]{emp.getId(), emp.getUsername(), emp.getFirstName(), emp.getLastName(), emp.getIcPassport(), emp.getRole()});
             }
-        };
+        });
         loadEmployees.run();
+        subscribeToChanges(frame, ev -> ev.getType() != common.ChangeEvent.Type.PAYROLL_CREATED, loadEmployees);
 
         addBtn.addActionListener(e -> {
             JDialog dialog = new JDialog(frame, "Add Employee", true);
@@ -1045,18 +1183,23 @@ public class PayrollClient {
         });
 
         delBtn.addActionListener(e -> {
-            int row = table.getSelectedRow();
-            if (row == -1) {
+            int[] rows = table.getSelectedRows();
+            if (rows.length == 0) {
                 JOptionPane.showMessageDialog(frame, "Please select an employee to delete.");
                 return;
             }
-            int id = (int) model.getValueAt(row, 0);
-            int confirm = JOptionPane.showConfirmDialog(frame, "Are you sure to delete employee ID " + id + "?", "Confirm", JOptionPane.YES_NO_OPTION);
+            java.util.List<Integer> ids = new java.util.ArrayList<>();
+            for (int row : rows) {
+                ids.add((int) model.getValueAt(row, 0));
+            }
+            String what = ids.size() == 1 ? "employee ID " + ids.get(0) : ids.size() + " employees";
+            int confirm = JOptionPane.showConfirmDialog(frame, "Are you sure to delete " + what + "?", "Confirm", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
                 try {
-                    boolean ok = employeeService.deleteEmployee(id);
-                    if (ok) {
-                        JOptionPane.showMessageDialog(frame, "Employee deleted.");
+                    // 多选时一次调用、一个事务删除
+                    java.util.List<Integer> deleted = employeeService.deleteEmployees(ids);
+                    if (!deleted.isEmpty()) {
+                        JOptionPane.showMessageDialog(frame, deleted.size() == 1 ? "Employee deleted." : deleted.size() + " employees deleted.");
                         loadEmployees.run();
                     } else {
                         JOptionPane.showMessageDialog(frame, "Delete failed!");
@@ -1088,17 +1231,44 @@ public class PayrollClient {
         gbc.fill = GridBagConstraints.HORIZONTAL;
 
         JLabel empLabel = new JLabel("Select Employee:");
+        // 输入用户名、姓名或证件号在服务端搜索，不再加载全部员工
+        JTextField searchField = new JTextField(16);
+        searchField.setToolTipText("Type a username, name or IC/passport");
         JComboBox<String> empBox = new JComboBox<>();
-        final java.util.List<common.Employee> employees;
-        try {
-            employees = employeeService.getAllEmployees();
-            for (common.Employee e : employees) {
-                empBox.addItem(e.getUsername() + " (" + e.getFirstName() + ")");
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(frame, "Error loading employees: " + ex.getMessage());
-            return;
-        }
+        final java.util.List<common.Employee> employees = new java.util.ArrayList<>();
+        final int[] searchSeq = {0};
+        javax.swing.Timer searchTimer = new javax.swing.Timer(150, ev -> {
+            String query = searchField.getText();
+            int seq = ++searchSeq[0];
+            new Thread(() -> {
+                try {
+                    java.util.List<common.Employee> found = employeeService.searchEmployees(query, 20);
+                    SwingUtilities.invokeLater(() -> {
+                        // 只显示最后一次输入的结果
+                        if (seq != searchSeq[0]) {
+                            return;
+                        }
+                        employees.clear();
+                        employees.addAll(found);
+                        empBox.removeAllItems();
+                        for (common.Employee e : found) {
+                            empBox.addItem(e.getUsername() + " (" + e.getFirstName() + " " + e.getLastName() + ")");
+                        }
+                    });
+                } catch (Exception ex) {
+                    System.err.println("[CLIENT] Employee search failed: " + ex.getMessage());
+                }
+            }, "employee-search").start();
+        });
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+        });
+        JPanel empPanel = new JPanel(new GridLayout(2, 1, 0, 6));
+        empPanel.add(searchField);
+        empPanel.add(empBox);
 
         JLabel grossLabel = new JLabel("Gross Pay:");
         JTextField grossField = new JTextField(12);
@@ -1112,7 +1282,7 @@ public class PayrollClient {
         gbc.gridx = 0; gbc.gridy = 0;
         panel.add(empLabel, gbc);
         gbc.gridx = 1;
-        panel.add(empBox, gbc);
+        panel.add(empPanel, gbc);
         gbc.gridx = 0; gbc.gridy = 1;
         panel.add(grossLabel, gbc);
         gbc.gridx = 1;
@@ -1124,6 +1294,11 @@ public class PayrollClient {
         gbc.gridx = 0; gbc.gridy = 3; gbc.gridwidth = 2;
         JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 0));
         btnPanel.add(sendBtn);
+        JButton bulkBtn = new JButton("Bulk Entry...");
+        bulkBtn.setPreferredSize(new Dimension(140, 32));
+        bulkBtn.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        bulkBtn.addActionListener(e -> showBulkPayrollWindow());
+        btnPanel.add(bulkBtn);
         panel.add(btnPanel, gbc);
 
         JScrollPane scrollPane = new JScrollPane(panel);
@@ -1254,6 +1429,317 @@ public class PayrollClient {
         frame.setVisible(true);
     }
 
+    /**
+     * Shows the bulk payroll grid. Rows are typed in, pasted from a spreadsheet or imported from
+     * CSV, checked locally, and sent to the server in batches; each row shows its own result.
+     * Submitting again sends only the rows that have not succeeded yet.
+     */
+    private void showBulkPayrollWindow() {
+        JFrame frame = new JFrame("Bulk Payroll Entry");
+        frame.setSize(900, 550);
+        frame.setLocationRelativeTo(null);
+        frame.setLayout(new BorderLayout());
+
+        String[] columns = {"Employee (username)", "Base Salary", "OT Hours", "OT Rate", "Bonus", "Allowance", "Status"};
+        int statusCol = columns.length - 1;
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column != statusCol;
+            }
+        };
+        JTable table = new JTable(model);
+        table.setCellSelectionEnabled(true);
+        table.getColumnModel().getColumn(statusCol).setPreferredWidth(260);
+        table.getColumnModel().getColumn(statusCol).setCellRenderer(new javax.swing.table.DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable t, Object value, boolean selected, boolean focused, int row, int column) {
+                Component c = super.getTableCellRendererComponent(t, value, selected, focused, row, column);
+                String status = value == null ? "" : value.toString();
+                c.setForeground(status.startsWith("OK") ? new Color(0, 128, 0) : status.isEmpty() ? Color.BLACK : Color.RED);
+                return c;
+            }
+        });
+        // 修改过的行清除上次提交的结果
+        model.addTableModelListener(ev -> {
+            if (ev.getType() == javax.swing.event.TableModelEvent.UPDATE && ev.getColumn() >= 0 && ev.getColumn() != statusCol) {
+                for (int r = ev.getFirstRow(); r <= ev.getLastRow() && r < model.getRowCount(); r++) {
+                    model.setValueAt("", r, statusCol);
+                }
+            }
+        });
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 8));
+        top.add(new JLabel("Period (yyyy-MM):"));
+        JTextField periodField = new JTextField(java.time.YearMonth.now().toString(), 8);
+        top.add(periodField);
+        top.add(new JLabel("Paste rows from a spreadsheet (Ctrl+V) or import a CSV: username, base, OT hours, OT rate, bonus, allowance"));
+        frame.add(top, BorderLayout.NORTH);
+
+        JButton addBtn = new JButton("Add Row");
+        JButton pasteBtn = new JButton("Paste");
+        JButton importBtn = new JButton("Import CSV");
+        JButton clearBtn = new JButton("Clear");
+        JButton submitBtn = new JButton("Submit");
+        JProgressBar progress = new JProgressBar();
+        progress.setStringPainted(true);
+        JLabel summary = new JLabel(" ");
+        JPanel bottom = new JPanel(new BorderLayout());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 8));
+        for (JButton b : new JButton[]{addBtn, pasteBtn, importBtn, clearBtn, submitBtn}) {
+            buttons.add(b);
+        }
+        buttons.add(progress);
+        bottom.add(buttons, BorderLayout.NORTH);
+        summary.setBorder(new EmptyBorder(0, 12, 8, 12));
+        bottom.add(summary, BorderLayout.SOUTH);
+        frame.add(bottom, BorderLayout.SOUTH);
+
+        addBtn.addActionListener(e -> model.addRow(new Object[]{"", "", "", "", "", "", ""}));
+        clearBtn.addActionListener(e -> {
+            model.setRowCount(0);
+            summary.setText(" ");
+            progress.setValue(0);
+        });
+        Action paste = new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    Object text = Toolkit.getDefaultToolkit().getSystemClipboard().getData(java.awt.datatransfer.DataFlavor.stringFlavor);
+                    summary.setText(addBulkRows(model, text.toString()) + " rows pasted");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(frame, "Clipboard does not contain text.");
+                }
+            }
+        };
+        pasteBtn.addActionListener(paste);
+        table.getActionMap().put("paste", paste);
+        importBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                String text = new String(java.nio.file.Files.readAllBytes(chooser.getSelectedFile().toPath()), java.nio.charset.StandardCharsets.UTF_8);
+                summary.setText(addBulkRows(model, text) + " rows imported from " + chooser.getSelectedFile().getName());
+            } catch (java.io.IOException ex) {
+                JOptionPane.showMessageDialog(frame, "Error reading file: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        submitBtn.addActionListener(e -> {
+            if (table.isEditing()) {
+                table.getCellEditor().stopCellEditing();
+            }
+            String period = periodField.getText().trim();
+            if (!period.matches("\\d{4}-\\d{2}")) {
+                JOptionPane.showMessageDialog(frame, "Period must be yyyy-MM.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            // 本地先校验，只提交尚未成功的有效行
+            java.util.List<Integer> rows = new java.util.ArrayList<>();
+            java.util.List<common.PayrollEntry> entries = new java.util.ArrayList<>();
+            int invalid = 0;
+            for (int r = 0; r < model.getRowCount(); r++) {
+                String status = String.valueOf(model.getValueAt(r, statusCol));
+                String username = String.valueOf(model.getValueAt(r, 0)).trim();
+                if (status.startsWith("OK") || isBlankRow(model, r, statusCol)) {
+                    continue;
+                }
+                double[] amounts = new double[5];
+                String error = username.isEmpty() ? "Username is required" : null;
+                for (int c = 0; c < amounts.length && error == null; c++) {
+                    String cell = String.valueOf(model.getValueAt(r, c + 1)).trim();
+                    try {
+                        amounts[c] = cell.isEmpty() ? 0 : Double.parseDouble(cell);
+                        if (amounts[c] < 0) {
+                            error = columns[c + 1] + " cannot be negative";
+                        }
+                    } catch (NumberFormatException ex) {
+                        error = columns[c + 1] + " is not a number: " + cell;
+                    }
+                }
+                if (error != null) {
+                    model.setValueAt(error, r, statusCol);
+                    invalid++;
+                    continue;
+                }
+                rows.add(r);
+                entries.add(new common.PayrollEntry(username, amounts[0], amounts[1], amounts[2], amounts[3], amounts[4]));
+            }
+            if (entries.isEmpty()) {
+                summary.setText(invalid > 0 ? invalid + " rows have errors, nothing to submit" : "Nothing to submit");
+                return;
+            }
+            for (JButton b : new JButton[]{addBtn, pasteBtn, importBtn, clearBtn, submitBtn}) {
+                b.setEnabled(false);
+            }
+            table.setEnabled(false);
+            progress.setMaximum(entries.size());
+            progress.setValue(0);
+            final int invalidRows = invalid;
+            new Thread(() -> {
+                int created = 0;
+                for (int from = 0; from < entries.size(); from += BULK_BATCH_SIZE) {
+                    int to = Math.min(entries.size(), from + BULK_BATCH_SIZE);
+                    java.util.List<Integer> batchRows = rows.subList(from, to);
+                    String[] statuses = new String[to - from];
+                    boolean sent = true;
+                    try {
+                        java.util.List<common.PayrollEntryResult> results = payrollService.calculatePayrollBatch(period, new java.util.ArrayList<>(entries.subList(from, to)));
+                        for (int k = 0; k < statuses.length; k++) {
+                            common.PayrollEntryResult result = results.get(k);
+                            if (result.isSuccess()) {
+                                statuses[k] = "OK #" + result.getRecord().getId() + " net " + String.format("%.2f", result.getRecord().getNetPay());
+                                created++;
+                            } else {
+                                statuses[k] = result.getError();
+                            }
+                        }
+                    } catch (Exception ex) {
+                        String message = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
+                        java.util.Arrays.fill(statuses, "Not sent: " + message);
+                        sent = false;
+                    }
+                    int done = to;
+                    SwingUtilities.invokeLater(() -> {
+                        for (int k = 0; k < statuses.length; k++) {
+                            model.setValueAt(statuses[k], batchRows.get(k), statusCol);
+                        }
+                        progress.setValue(done);
+                    });
+                    if (!sent) {
+                        // 服务端不可用或拒绝整批，后面的批次不再发送
+                        for (int r : rows.subList(to, rows.size())) {
+                            SwingUtilities.invokeLater(() -> model.setValueAt("Not sent", r, statusCol));
+                        }
+                        break;
+                    }
+                }
+                int createdRows = created;
+                SwingUtilities.invokeLater(() -> {
+                    int failed = entries.size() - createdRows + invalidRows;
+                    summary.setText(createdRows + " payrolls created for " + period + (failed > 0 ? ", " + failed + " rows failed - fix them and submit again" : ""));
+                    for (JButton b : new JButton[]{addBtn, pasteBtn, importBtn, clearBtn, submitBtn}) {
+                        b.setEnabled(true);
+                    }
+                    table.setEnabled(true);
+                });
+            }, "bulk-payroll").start();
+        });
+
+        model.addRow(new Object[]{"", "", "", "", "", "", ""});
+        frame.setVisible(true);
+    }
+
+    /**
+     * Appends tab- or comma-separated rows (username, base, OT hours, OT rate, bonus, allowance).
+     * A first line whose base salary is not a number is taken as a header and skipped.
+     * @return Number of rows added
+     */
+    private static int addBulkRows(javax.swing.table.DefaultTableModel model, String text) {
+        // 去掉表格末尾的空行，粘贴内容接在已有数据之后
+        while (model.getRowCount() > 0 && isBlankRow(model, model.getRowCount() - 1, model.getColumnCount() - 1)) {
+            model.removeRow(model.getRowCount() - 1);
+        }
+        String[] lines = text.split("\\r?\\n");
+        int added = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().isEmpty()) {
+                continue;
+            }
+            String[] cells = lines[i].split(lines[i].indexOf('\t') >= 0 ? "\t" : ",", -1);
+            if (i == 0 && cells.length > 1 && !cells[1].trim().isEmpty() && !cells[1].trim().matches("-?[\\d.]+")) {
+                continue;
+            }
+            Object[] row = {"", "", "", "", "", "", ""};
+            for (int c = 0; c < Math.min(cells.length, 6); c++) {
+                row[c] = cells[c].trim();
+            }
+            model.addRow(row);
+            added++;
+        }
+        return added;
+    }
+
+    private static boolean isBlankRow(javax.swing.table.DefaultTableModel model, int row, int statusCol) {
+        for (int c = 0; c < statusCol; c++) {
+            Object value = model.getValueAt(row, c);
+            if (value != null && !value.toString().trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shows a cache's rows at once, then syncs it with the server in the background and shows the
+     * rows again if anything changed. While the server cannot be reached the window keeps the
+     * cached rows and says so in its title; an error dialog is shown only if there is nothing cached.
+     */
+    private <T extends java.io.Serializable> void loadCached(JFrame frame, String what, LocalCache<T> cache, LocalCache.Fetch<T> fetch,
+                                                            java.util.function.Consumer<java.util.List<T>> show) {
+        show.accept(cache.rows());
+        cacheSync.execute(() -> {
+            try {
+                boolean changed = cache.sync(fetch);
+                java.util.List<T> rows = changed ? cache.rows() : null;
+                SwingUtilities.invokeLater(() -> {
+                    frame.setTitle(frame.getTitle().replace(OFFLINE_SUFFIX, ""));
+                    if (rows != null) {
+                        show.accept(rows);
+                    }
+                });
+            } catch (Exception ex) {
+                System.err.println("[CLIENT] Failed to sync " + what + ": " + ex.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    if (cache.isEmpty()) {
+                        JOptionPane.showMessageDialog(frame, "Error loading " + what + ": " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    } else if (!frame.getTitle().endsWith(OFFLINE_SUFFIX)) {
+                        frame.setTitle(frame.getTitle() + OFFLINE_SUFFIX);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Registers a server-push listener for the lifetime of a window.
+     * Matching events re-run the window's loader on the EDT; the listener is removed when the window closes.
+     * @param frame Window that owns the subscription
+     * @param filter Selects the events the window cares about
+     * @param reload Loader to run when a matching event arrives
+     */
+    private void subscribeToChanges(JFrame frame, java.util.function.Predicate<common.ChangeEvent> filter, Runnable reload) {
+        common.PayrollEventListener listener = events -> {
+            for (common.ChangeEvent ev : events) {
+                if (filter.test(ev)) {
+                    SwingUtilities.invokeLater(reload);
+                    return;
+                }
+            }
+        };
+        try {
+            common.PayrollEventListener stub = (common.PayrollEventListener) java.rmi.server.UnicastRemoteObject.exportObject(listener, 0);
+            payrollService.addEventListener(stub);
+            frame.addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override
+                public void windowClosing(java.awt.event.WindowEvent e) {
+                    try {
+                        payrollService.removeEventListener(stub);
+                        java.rmi.server.UnicastRemoteObject.unexportObject(listener, true);
+                    } catch (Exception ex) {
+                        System.err.println("[CLIENT] Failed to remove event listener: " + ex.getMessage());
+                    }
+                }
+            });
+        } catch (Exception ex) {
+            // 推送不可用时退回手动刷新
+            System.err.println("[CLIENT] Change notifications unavailable: " + ex.getMessage());
+        }
+    }
+
     /**
      * Utility method to parse a string to double, returns 0.0 if invalid.
      * @param text Input string
@@ -0,0 +1,389 @@
+package client;
+
+import common.EmployeeService;
+import common.PayrollEventListener;
+import common.PayrollService;
+import common.ServerBusyException;
+import common.TenantDirectory;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.rmi.UnknownHostException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.RMISocketFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServerConnection connects the client to the fastest of several equivalent server endpoints
+ * (single servers or shard routers in front of the same shards) and keeps it connected.
+ * <p>
+ * Endpoints come from -Dpayroll.servers=host:port,host:port. At startup they are probed in
+ * parallel and the healthy one with the lowest lookup latency is used; its stubs are cached.
+ * When a call cannot reach the server or times out, the connection re-probes the endpoints and
+ * switches to the best one still healthy. Calls that never reached the server are retried there;
+ * calls that may have run are retried only if they are idempotent (reads), so a payroll is never
+ * created twice. A call rejected as busy did not run either, but the server is healthy: it is
+ * retried on the same endpoint after an exponential backoff with jitter, without re-probing.
+ * <p>
+ * With -Dpayroll.tenant=ID the stubs are looked up through the server's TenantDirectory, so every
+ * call works on that tenant's database.
+ */
+public class ServerConnection {
+    public static final String DEFAULT_ENDPOINTS = "172.20.10.2:1099";
+    private static final int CONNECT_TIMEOUT_MS = Integer.getInteger("payroll.client.connectTimeoutMs", 2000);
+    private static final long CALL_TIMEOUT_MS = Long.getLong("payroll.client.callTimeoutMs", 30000);
+    private static final int MAX_ATTEMPTS = Integer.getInteger("payroll.client.maxAttempts", 3);
+    private static final long BUSY_BACKOFF_MS = Long.getLong("payroll.client.busyBackoffMs", 200);
+    // 多租户服务器上的租户（公司）ID，未设置时使用服务器的默认数据库
+    private static final String TENANT = System.getProperty("payroll.tenant");
+    private static final Set<String> IDEMPOTENT_PREFIXES = new HashSet<>(Arrays.asList("get", "login", "search"));
+    // calculatePayrollBatch可以重试：服务端拒绝已有该期间工资单的员工，重发不会重复生成
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList("simulatePayroll", "calculatePayrollBatch", "addEventListener", "removeEventListener"));
+
+    /** One server endpoint and its cached stubs. */
+    static final class Endpoint {
+        final String host;
+        final int port;
+        volatile EmployeeService employeeService;
+        volatile PayrollService payrollService;
+        volatile long latencyNanos = Long.MAX_VALUE;
+
+        Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final ExecutorService probeExecutor;
+    private final Set<PayrollEventListener> listeners = ConcurrentHashMap.newKeySet();
+    private volatile Endpoint current;
+    private final EmployeeService employeeService;
+    private final PayrollService payrollService;
+
+    private ServerConnection(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+        this.probeExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "server-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        this.employeeService = proxy(EmployeeService.class, false);
+        this.payrollService = proxy(PayrollService.class, true);
+    }
+
+    /**
+     * Probes the endpoints and connects to the fastest healthy one.
+     * @param endpointList Comma-separated host:port list
+     * @throws RemoteException if no endpoint answers
+     */
+    public static ServerConnection connect(String endpointList) throws RemoteException {
+        installTimeouts();
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String spec : endpointList.split(",")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int colon = spec.lastIndexOf(':');
+            endpoints.add(colon < 0 ? new Endpoint(spec, 1099) : new Endpoint(spec.substring(0, colon), Integer.parseInt(spec.substring(colon + 1))));
+        }
+        if (endpoints.isEmpty()) {
+            throw new RemoteException("No server endpoints configured");
+        }
+        ServerConnection connection = new ServerConnection(endpoints);
+        Endpoint best = connection.probeAll(null);
+        if (best == null) {
+            throw new RemoteException("No server reachable at " + endpointList);
+        }
+        connection.current = best;
+        System.out.println("[CLIENT] Connected to " + best + " (" + best.latencyNanos / 1_000_000 + " ms)");
+        return connection;
+    }
+
+    /**
+     * @return Endpoints from -Dpayroll.servers, or the default server
+     */
+    public static String configuredEndpoints() {
+        return System.getProperty("payroll.servers", DEFAULT_ENDPOINTS);
+    }
+
+    /**
+     * @return Tenant from -Dpayroll.tenant, or null when using the server's default database
+     */
+    public static String configuredTenant() {
+        return TENANT;
+    }
+
+    public EmployeeService getEmployeeService() {
+        return employeeService;
+    }
+
+    public PayrollService getPayrollService() {
+        return payrollService;
+    }
+
+    public String getCurrentEndpoint() {
+        return String.valueOf(current);
+    }
+
+    /**
+     * Probes every endpoint in parallel.
+     * @param exclude Endpoint that just failed, used only if nothing else is healthy
+     * @return The healthy endpoint with the lowest latency, or null if none answers
+     */
+    private Endpoint probeAll(Endpoint exclude) {
+        CompletionService<Endpoint> probes = new ExecutorCompletionService<>(probeExecutor);
+        List<Future<Endpoint>> pending = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            pending.add(probes.submit(() -> probe(endpoint) ? endpoint : null));
+        }
+        List<Endpoint> healthy = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MS * 2L);
+        try {
+            for (int i = 0; i < endpoints.size(); i++) {
+                Future<Endpoint> done = probes.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break;
+                }
+                Endpoint endpoint = done.get();
+                if (endpoint != null && healthy.isEmpty()) {
+                    // 第一个健康的端点返回后，其余端点只再等一小段时间，不必等到连接超时
+                    deadline = Math.min(deadline, System.nanoTime() + Math.max(TimeUnit.MILLISECONDS.toNanos(100), endpoint.latencyNanos * 2));
+                }
+                if (endpoint != null) {
+                    healthy.add(endpoint);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        for (Future<Endpoint> future : pending) {
+            future.cancel(true);
+        }
+        healthy.sort(Comparator.comparingLong(e -> e.latencyNanos));
+        for (Endpoint endpoint : healthy) {
+            if (endpoint != exclude) {
+                return endpoint;
+            }
+        }
+        return healthy.isEmpty() ? null : healthy.get(0);
+    }
+
+    /**
+     * Looks up both services at the endpoint and records how long it took.
+     * @return true if the endpoint is healthy
+     */
+    private boolean probe(Endpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            Registry registry = LocateRegistry.getRegistry(endpoint.host, endpoint.port);
+            EmployeeService employee;
+            PayrollService payroll;
+            if (TENANT != null) {
+                TenantDirectory directory = (TenantDirectory) registry.lookup("TenantDirectory");
+                employee = (EmployeeService) directory.lookup(TENANT, "EmployeeService");
+                payroll = (PayrollService) directory.lookup(TENANT, "PayrollService");
+            } else {
+                employee = (EmployeeService) registry.lookup("EmployeeService");
+                payroll = (PayrollService) registry.lookup("PayrollService");
+            }
+            endpoint.employeeService = employee;
+            endpoint.payrollService = payroll;
+            endpoint.latencyNanos = System.nanoTime() - start;
+            System.out.println("[CLIENT] Server " + endpoint + " healthy, " + endpoint.latencyNanos / 1_000_000 + " ms");
+            return true;
+        } catch (Exception e) {
+            endpoint.latencyNanos = Long.MAX_VALUE;
+            System.out.println("[CLIENT] Server " + endpoint + " unavailable: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> iface, boolean payroll) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(this, args);
+            }
+            return invoke(method, args, payroll);
+        };
+        return (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, handler);
+    }
+
+    private Object invoke(Method method, Object[] args, boolean payroll) throws Throwable {
+        boolean idempotent = isIdempotent(method.getName());
+        for (int attempt = 1; ; attempt++) {
+            Endpoint endpoint = current;
+            try {
+                Object result = method.invoke(payroll ? endpoint.payrollService : endpoint.employeeService, args);
+                trackListener(method.getName(), args);
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (ServerBusyException.isServerBusy(cause)) {
+                    if (attempt >= MAX_ATTEMPTS) {
+                        throw cause;
+                    }
+                    backoff(attempt);
+                    continue;
+                }
+                boolean notDelivered = notDelivered(cause);
+                if (!notDelivered && !connectionLost(cause)) {
+                    throw cause;
+                }
+                System.out.println("[CLIENT] " + method.getName() + " failed on " + endpoint + ": " + cause.getMessage());
+                failover(endpoint);
+                // 请求可能已在服务端执行时，只重试幂等调用
+                if (attempt >= MAX_ATTEMPTS || !(notDelivered || idempotent)) {
+                    throw cause;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits before retrying a call rejected as busy: the base delay doubled per attempt, randomised
+     * between half and the full delay so clients rejected together do not retry together.
+     */
+    private static void backoff(int attempt) throws InterruptedException {
+        long delay = BUSY_BACKOFF_MS << Math.min(attempt - 1, 10);
+        Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    /**
+     * Switches to the best endpoint other than the failed one, re-registering event listeners there.
+     */
+    private synchronized void failover(Endpoint failed) {
+        if (current != failed) {
+            return; // 其他线程已经切换过
+        }
+        Endpoint next = probeAll(failed);
+        if (next == null || next == failed) {
+            return;
+        }
+        current = next;
+        System.out.println("[CLIENT] Failed over from " + failed + " to " + next);
+        for (PayrollEventListener listener : listeners) {
+            try {
+                next.payrollService.addEventListener(listener);
+            } catch (RemoteException e) {
+                System.out.println("[CLIENT] Could not re-register event listener on " + next + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void trackListener(String methodName, Object[] args) {
+        if ("addEventListener".equals(methodName)) {
+            listeners.add((PayrollEventListener) args[0]);
+        } else if ("removeEventListener".equals(methodName)) {
+            listeners.remove((PayrollEventListener) args[0]);
+        }
+    }
+
+    static boolean isIdempotent(String methodName) {
+        if (IDEMPOTENT_METHODS.contains(methodName)) {
+            return true;
+        }
+        for (String prefix : IDEMPOTENT_PREFIXES) {
+            if (methodName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the call certainly did not run because the server could not be reached: no
+     * connection or a stale stub.
+     */
+    static boolean notDelivered(Throwable t) {
+        return t instanceof ConnectException || t instanceof ConnectIOException || t instanceof UnknownHostException
+                || t instanceof NoSuchObjectException;
+    }
+
+    /**
+     * Tells whether the connection broke or timed out after the call was sent.
+     */
+    static boolean connectionLost(Throwable t) {
+        if (!(t instanceof RemoteException) || t instanceof ServerException || t instanceof ServerError) {
+            return false; // 服务端抛出的业务异常原样返回
+        }
+        for (Throwable c = t.getCause(); c != null; c = c.getCause()) {
+            if (c instanceof SocketTimeoutException || c instanceof SocketException || c instanceof EOFException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bounds how long connecting to and waiting for a server may take, so a dead or hung server
+     * fails a call instead of freezing the client.
+     */
+    private static void installTimeouts() {
+        if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+            System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(CALL_TIMEOUT_MS));
+        }
+        // 服务端进程挂起时 TCP 连接仍能建立，但 JRMP 握手不会返回（默认等待60秒）
+        if (System.getProperty("sun.rmi.transport.tcp.handshakeTimeout") == null) {
+            System.setProperty("sun.rmi.transport.tcp.handshakeTimeout", String.valueOf(CONNECT_TIMEOUT_MS));
+        }
+        if (RMISocketFactory.getSocketFactory() != null) {
+            return;
+        }
+        try {
+            RMISocketFactory.setSocketFactory(new RMISocketFactory() {
+                @Override
+                public Socket createSocket(String host, int port) throws IOException {
+                    Socket socket = new Socket();
+                    socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                    return socket;
+                }
+
+                @Override
+                public ServerSocket createServerSocket(int port) throws IOException {
+                    return new ServerSocket(port);
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("[CLIENT] Could not install RMI connect timeout: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BinaryProtocol is the wire format of the optional NIO endpoint, a lighter alternative to RMI for
+ * high-volume integrations. It covers the {@link EmployeeService} and {@link PayrollService}
+ * operations except event listeners, which need RMI callbacks.
+ * <p>
+ * Every frame starts with its length (int, not counting itself) and a request ID chosen by the
+ * client. Request: length, request ID, opcode (short), then the arguments. Response: length,
+ * request ID, status ({@link #OK}, {@link #ERROR} or {@link #BUSY}), then the return value or
+ * the error message. A client may send many requests without waiting; the server answers each as
+ * soon as it is done, so responses can arrive out of order and are matched by request ID.
+ * <p>
+ * Values are tagged. The common rows (Employee, PayrollRecord, payroll entries and results,
+ * ChangeSet) have compact field-by-field encodings; other result types fall back to Java
+ * serialization, restricted to the common package and basic JDK types.
+ * <p>
+ * Opcodes are positions in the operation table below. Only append to it, so older clients keep
+ * working.
+ */
+public final class BinaryProtocol {
+    public static final int MAX_FRAME = 16 << 20;
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+    public static final byte BUSY = 2;
+
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte LIST = 6;
+    private static final byte BYTES = 7;
+    private static final byte EMPLOYEE = 8;
+    private static final byte PAYROLL_RECORD = 9;
+    private static final byte PAYROLL_ENTRY = 10;
+    private static final byte ENTRY_RESULT = 11;
+    private static final byte CHANGE_SET = 12;
+    private static final byte SERIALIZED = 100;
+
+    private static final ObjectInputFilter SERIAL_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=20;common.*;java.lang.*;java.util.*;!*");
+
+    private static final List<Method> OPERATIONS = new ArrayList<>();
+    private static final Map<Method, Integer> OPCODES = new HashMap<>();
+
+    static {
+        op(EmployeeService.class, "register", Employee.class);
+        op(EmployeeService.class, "login", String.class, String.class);
+        op(EmployeeService.class, "updateProfile", Employee.class);
+        op(EmployeeService.class, "getEmployeeByUsername", String.class);
+        op(EmployeeService.class, "getAllEmployees");
+        op(EmployeeService.class, "deleteEmployee", int.class);
+        op(EmployeeService.class, "getChangesSince", long.class);
+        op(EmployeeService.class, "searchEmployees", String.class, int.class);
+        op(EmployeeService.class, "deleteEmployees", List.class);
+        op(PayrollService.class, "calculatePayroll", int.class, String.class);
+        op(PayrollService.class, "calculatePayroll", int.class, String.class, double.class);
+        op(PayrollService.class, "calculatePayroll", int.class, String.class, double.class, double.class, double.class, double.class, double.class);
+        op(PayrollService.class, "calculatePayrollBatch", String.class, List.class);
+        op(PayrollService.class, "getPayrollRecords", int.class);
+        op(PayrollService.class, "getPayrollRecords", int.class, String.class, String.class);
+        op(PayrollService.class, "getPayrollRecordsForPeriod", String.class);
+        op(PayrollService.class, "getAllPayrollRecords");
+        op(PayrollService.class, "getChangesSince", long.class);
+        op(PayrollService.class, "getChangesSince", int.class, long.class);
+        op(PayrollService.class, "getYearToDate", int.class, int.class);
+        op(PayrollService.class, "getPayrollSummary", String.class, String.class);
+        op(PayrollService.class, "getPayrollDistribution", String.class, String.class);
+        op(PayrollService.class, "getPayrollTrend", String.class);
+        op(PayrollService.class, "simulatePayroll", SimulationParameters.class, int.class);
+        op(PayrollService.class, "startRecalculation", String.class, String.class, double.class);
+        op(PayrollService.class, "getRecalculationStatus", String.class);
+        op(PayrollService.class, "startPayslipExport", String.class, String.class);
+        op(PayrollService.class, "readExportChunk", String.class);
+    }
+
+    private BinaryProtocol() {
+    }
+
+    private static void op(Class<?> service, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = service.getMethod(name, parameterTypes);
+            OPCODES.put(method, OPERATIONS.size());
+            OPERATIONS.add(method);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Binary protocol operation missing: " + service.getSimpleName() + "." + name, e);
+        }
+    }
+
+    /**
+     * @return The method for an opcode, or null if the opcode is unknown
+     */
+    public static Method method(int opcode) {
+        return opcode >= 0 && opcode < OPERATIONS.size() ? OPERATIONS.get(opcode) : null;
+    }
+
+    /**
+     * @return The method's opcode, or -1 if it is not available over this protocol
+     */
+    public static int opcode(Method method) {
+        Integer opcode = OPCODES.get(method);
+        return opcode == null ? -1 : opcode;
+    }
+
+    /**
+     * Finds an operation by name and argument count (unique for every overload in the table).
+     * @return The method, or null if there is none
+     */
+    public static Method find(Class<?> service, String name, int argumentCount) {
+        for (Method method : OPERATIONS) {
+            if (method.getDeclaringClass() == service && method.getName().equals(name) && method.getParameterCount() == argumentCount) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the call's arguments, converting numbers to the parameter types (e.g. an int passed
+     * for a long parameter).
+     */
+    public static void writeArguments(DataOutput out, Method method, Object[] args) throws IOException {
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            Object arg = args == null ? null : args[i];
+            if (arg instanceof Number) {
+                if (types[i] == int.class) {
+                    arg = ((Number) arg).intValue();
+                } else if (types[i] == long.class) {
+                    arg = ((Number) arg).longValue();
+                } else if (types[i] == double.class) {
+                    arg = ((Number) arg).doubleValue();
+                }
+            }
+            writeValue(out, arg);
+        }
+    }
+
+    /**
+     * Reads the call's arguments and checks primitive parameters got a value of the right type.
+     */
+    public static Object[] readArguments(DataInput in, Method method) throws IOException {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = readValue(in);
+            boolean valid = types[i] == int.class ? args[i] instanceof Integer
+                    : types[i] == long.class ? args[i] instanceof Long
+                    : types[i] == double.class ? args[i] instanceof Double
+                    : args[i] == null || types[i].isInstance(args[i]);
+            if (!valid) {
+                throw new IOException("Bad argument " + (i + 1) + " for " + method.getName());
+            }
+        }
+        return args;
+    }
+
+    public static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value.getClass() == Employee.class) {
+            Employee e = (Employee) value;
+            out.writeByte(EMPLOYEE);
+            out.writeInt(e.getId());
+            writeNullableString(out, e.getUsername());
+            writeNullableString(out, e.getPassword());
+            writeNullableString(out, e.getFirstName());
+            writeNullableString(out, e.getLastName());
+            writeNullableString(out, e.getIcPassport());
+            writeNullableString(out, e.getRole());
+        } else if (value.getClass() == PayrollRecord.class) {
+            out.writeByte(PAYROLL_RECORD);
+            writeRecord(out, (PayrollRecord) value);
+        } else if (value.getClass() == PayrollEntry.class) {
+            PayrollEntry e = (PayrollEntry) value;
+            out.writeByte(PAYROLL_ENTRY);
+            writeNullableString(out, e.getUsername());
+            out.writeDouble(e.getBaseSalary());
+            out.writeDouble(e.getOvertimeHours());
+            out.writeDouble(e.getOvertimeRate());
+            out.writeDouble(e.getBonus());
+            out.writeDouble(e.getAllowance());
+        } else if (value.getClass() == PayrollEntryResult.class) {
+            PayrollEntryResult r = (PayrollEntryResult) value;
+            out.writeByte(ENTRY_RESULT);
+            out.writeBoolean(r.isSuccess());
+            if (r.isSuccess()) {
+                writeRecord(out, r.getRecord());
+            } else {
+                writeNullableString(out, r.getError());
+            }
+        } else if (value.getClass() == ChangeSet.class) {
+            ChangeSet<?> c = (ChangeSet<?>) value;
+            out.writeByte(CHANGE_SET);
+            out.writeLong(c.getVersion());
+            out.writeInt(c.getUpserts().size());
+            for (Object row : c.getUpserts()) {
+                writeValue(out, row);
+            }
+            out.writeInt(c.getDeletedIds().size());
+            for (int id : c.getDeletedIds()) {
+                out.writeInt(id);
+            }
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(value);
+            }
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        } else {
+            throw new IOException("Cannot encode " + value.getClass().getName());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING:
+                return readString(in);
+            case BYTES: {
+                byte[] bytes = new byte[checkedLength(in.readInt())];
+                in.readFully(bytes);
+                return bytes;
+            }
+            case LIST: {
+                int size = checkedLength(in.readInt());
+                List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case EMPLOYEE: {
+                Employee e = new Employee();
+                e.setId(in.readInt());
+                e.setUsername(readNullableString(in));
+                e.setPassword(readNullableString(in));
+                e.setFirstName(readNullableString(in));
+                e.setLastName(readNullableString(in));
+                e.setIcPassport(readNullableString(in));
+                e.setRole(readNullableString(in));
+                return e;
+            }
+            case PAYROLL_RECORD:
+                return readRecord(in);
+            case PAYROLL_ENTRY:
+                return new PayrollEntry(readNullableString(in), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+            case ENTRY_RESULT:
+                return in.readBoolean() ? PayrollEntryResult.created(readRecord(in)) : PayrollEntryResult.failed(readNullableString(in));
+            case CHANGE_SET: {
+                ChangeSet changes = new ChangeSet();
+                changes.setVersion(in.readLong());
+                int upserts = checkedLength(in.readInt());
+                List rows = new ArrayList<>(Math.min(upserts, 1024));
+                for (int i = 0; i < upserts; i++) {
+                    rows.add(readValue(in));
+                }
+                changes.setUpserts(rows);
+                int deletes = checkedLength(in.readInt());
+                List<Integer> ids = new ArrayList<>(Math.min(deletes, 1024));
+                for (int i = 0; i < deletes; i++) {
+                    ids.add(in.readInt());
+                }
+                changes.setDeletedIds(ids);
+                return changes;
+            }
+            case SERIALIZED: {
+                byte[] bytes = new byte[checkedLength(in.readInt())];
+                in.readFully(bytes);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    ois.setObjectInputFilter(SERIAL_FILTER);
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown class in frame: " + e.getMessage());
+                }
+            }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeRecord(DataOutput out, PayrollRecord r) throws IOException {
+        out.writeInt(r.getId());
+        out.writeInt(r.getEmployeeId());
+        writeNullableString(out, r.getPeriod());
+        out.writeDouble(r.getBaseSalary());
+        out.writeDouble(r.getOvertimeHours());
+        out.writeDouble(r.getOvertimeRate());
+        out.writeDouble(r.getBonus());
+        out.writeDouble(r.getAllowance());
+        out.writeDouble(r.getGrossPay());
+        out.writeDouble(r.getDeductions());
+        out.writeDouble(r.getNetPay());
+    }
+
+    private static PayrollRecord readRecord(DataInput in) throws IOException {
+        PayrollRecord r = new PayrollRecord();
+        r.setId(in.readInt());
+        r.setEmployeeId(in.readInt());
+        r.setPeriod(readNullableString(in));
+        r.setBaseSalary(in.readDouble());
+        r.setOvertimeHours(in.readDouble());
+        r.setOvertimeRate(in.readDouble());
+        r.setBonus(in.readDouble());
+        r.setAllowance(in.readDouble());
+        r.setGrossPay(in.readDouble());
+        r.setDeductions(in.readDouble());
+        r.setNetPay(in.readDouble());
+        return r;
+    }
+
+    // 长度前缀的UTF-8，不受writeUTF的64KB限制
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[checkedLength(in.readInt())];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkedLength(length)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkedLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Bad length " + length);
+        }
+        return length;
+    }
+}
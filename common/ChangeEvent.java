@@ -0,0 +1,67 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * ChangeEvent describes one data change pushed to registered PayrollEventListeners.
+ * Events for the same entity are coalesced on the server, so a listener only sees the latest one.
+ */
+public class ChangeEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        PAYROLL_CREATED,
+        EMPLOYEE_REGISTERED,
+        EMPLOYEE_UPDATED,
+        EMPLOYEE_DELETED,
+        /** The listener fell too far behind and should reload everything. */
+        RESYNC
+    }
+
+    private Type type;
+    private int entityId;
+    private int employeeId;
+    private String period;
+
+    public ChangeEvent() {
+    }
+
+    public ChangeEvent(Type type, int entityId, int employeeId, String period) {
+        this.type = type;
+        this.entityId = entityId;
+        this.employeeId = employeeId;
+        this.period = period;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(int employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+}
@@ -0,0 +1,40 @@
+package common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChangeSet carries the rows inserted, updated or deleted since a client's last sync.
+ * Pass {@link #getVersion()} back on the next getChangesSince call; 0 requests a full snapshot.
+ */
+public class ChangeSet<T extends Serializable> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private long version;
+    private List<T> upserts = new ArrayList<>();
+    private List<Integer> deletedIds = new ArrayList<>();
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<T> getUpserts() {
+        return upserts;
+    }
+
+    public void setUpserts(List<T> upserts) {
+        this.upserts = upserts;
+    }
+
+    public List<Integer> getDeletedIds() {
+        return deletedIds;
+    }
+
+    public void setDeletedIds(List<Integer> deletedIds) {
+        this.deletedIds = deletedIds;
+    }
+}
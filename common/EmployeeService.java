@@ -10,4 +10,7 @@ public interface EmployeeService extends Remote {
     Employee getEmployeeByUsername(String username) throws RemoteException;
     java.util.List<Employee> getAllEmployees() throws RemoteException;
     boolean deleteEmployee(int id) throws RemoteException;
+    java.util.List<Integer> deleteEmployees(java.util.List<Integer> ids) throws RemoteException;
+    ChangeSet<Employee> getChangesSince(long version) throws RemoteException;
+    java.util.List<Employee> searchEmployees(String query, int limit) throws RemoteException;
 }
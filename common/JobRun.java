@@ -0,0 +1,64 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * JobRun is one execution of a scheduled job. Times are epoch milliseconds.
+ */
+public class JobRun implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String jobName;
+    private long startedAt;
+    private long durationMs;
+    private String status;
+    private int attempt;
+    private String message;
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,120 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * JobStatus describes a scheduled server job and the outcome of its last run.
+ * Times are epoch milliseconds, 0 when not set. lastStatus is RUNNING, SUCCEEDED, RETRYING,
+ * FAILED or INTERRUPTED (the server stopped during the run), or null before the first run.
+ */
+public class JobStatus implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String name;
+    private String type;
+    private String schedule;
+    private String parameters;
+    private boolean enabled;
+    private boolean running;
+    private long nextRunAt;
+    private long lastStartedAt;
+    private long lastDurationMs;
+    private String lastStatus;
+    private String lastError;
+    private int attempts;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getSchedule() {
+        return schedule;
+    }
+
+    public void setSchedule(String schedule) {
+        this.schedule = schedule;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public long getNextRunAt() {
+        return nextRunAt;
+    }
+
+    public void setNextRunAt(long nextRunAt) {
+        this.nextRunAt = nextRunAt;
+    }
+
+    public long getLastStartedAt() {
+        return lastStartedAt;
+    }
+
+    public void setLastStartedAt(long lastStartedAt) {
+        this.lastStartedAt = lastStartedAt;
+    }
+
+    public long getLastDurationMs() {
+        return lastDurationMs;
+    }
+
+    public void setLastDurationMs(long lastDurationMs) {
+        this.lastDurationMs = lastDurationMs;
+    }
+
+    public String getLastStatus() {
+        return lastStatus;
+    }
+
+    public void setLastStatus(String lastStatus) {
+        this.lastStatus = lastStatus;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+}
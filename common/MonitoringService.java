@@ -0,0 +1,9 @@
+package common;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Map;
+
+public interface MonitoringService extends Remote {
+    Map<String, Long> getMetrics() throws RemoteException;
+}
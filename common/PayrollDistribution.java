@@ -0,0 +1,65 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * PayrollDistribution is the distribution of one payroll measure within a group (a period or a role).
+ * Percentiles and histograms are read from the sketch, so distributions of the same group
+ * from different shards can be merged before they are queried.
+ */
+public class PayrollDistribution implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String key;
+    private QuantileSketch sketch;
+
+    public PayrollDistribution() {
+    }
+
+    public PayrollDistribution(String key, QuantileSketch sketch) {
+        this.key = key;
+        this.sketch = sketch;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public QuantileSketch getSketch() {
+        return sketch;
+    }
+
+    public void setSketch(QuantileSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    public long getCount() {
+        return sketch.getCount();
+    }
+
+    public double getTotal() {
+        return sketch.getSum();
+    }
+
+    public double getMedian() {
+        return sketch.getMedian();
+    }
+
+    public double getP90() {
+        return sketch.getQuantile(0.9);
+    }
+
+    public double getP99() {
+        return sketch.getQuantile(0.99);
+    }
+
+    /**
+     * @param buckets Number of equal-width buckets between the minimum and maximum
+     */
+    public long[] getHistogram(int buckets) {
+        return sketch.getHistogram(buckets);
+    }
+}
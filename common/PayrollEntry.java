@@ -0,0 +1,77 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * PayrollEntry is one row of a bulk payroll submission: the employee's username and the pay
+ * components for the batch's period.
+ */
+public class PayrollEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String username;
+    private double baseSalary;
+    private double overtimeHours;
+    private double overtimeRate;
+    private double bonus;
+    private double allowance;
+
+    public PayrollEntry() {
+    }
+
+    public PayrollEntry(String username, double baseSalary, double overtimeHours, double overtimeRate, double bonus, double allowance) {
+        this.username = username;
+        this.baseSalary = baseSalary;
+        this.overtimeHours = overtimeHours;
+        this.overtimeRate = overtimeRate;
+        this.bonus = bonus;
+        this.allowance = allowance;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public double getBaseSalary() {
+        return baseSalary;
+    }
+
+    public void setBaseSalary(double baseSalary) {
+        this.baseSalary = baseSalary;
+    }
+
+    public double getOvertimeHours() {
+        return overtimeHours;
+    }
+
+    public void setOvertimeHours(double overtimeHours) {
+        this.overtimeHours = overtimeHours;
+    }
+
+    public double getOvertimeRate() {
+        return overtimeRate;
+    }
+
+    public void setOvertimeRate(double overtimeRate) {
+        this.overtimeRate = overtimeRate;
+    }
+
+    public double getBonus() {
+        return bonus;
+    }
+
+    public void setBonus(double bonus) {
+        this.bonus = bonus;
+    }
+
+    public double getAllowance() {
+        return allowance;
+    }
+
+    public void setAllowance(double allowance) {
+        this.allowance = allowance;
+    }
+}
@@ -0,0 +1,48 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * PayrollEntryResult is the outcome of one {@link PayrollEntry}: the created record, or the
+ * reason the row was rejected.
+ */
+public class PayrollEntryResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private PayrollRecord record;
+    private String error;
+
+    public PayrollEntryResult() {
+    }
+
+    public static PayrollEntryResult created(PayrollRecord record) {
+        PayrollEntryResult result = new PayrollEntryResult();
+        result.record = record;
+        return result;
+    }
+
+    public static PayrollEntryResult failed(String error) {
+        PayrollEntryResult result = new PayrollEntryResult();
+        result.error = error;
+        return result;
+    }
+
+    public boolean isSuccess() {
+        return record != null;
+    }
+
+    public PayrollRecord getRecord() {
+        return record;
+    }
+
+    public void setRecord(PayrollRecord record) {
+        this.record = record;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
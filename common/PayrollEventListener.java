@@ -0,0 +1,12 @@
+package common;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Callback interface exported by clients that want change notifications pushed by the server.
+ */
+public interface PayrollEventListener extends Remote {
+    void onEvents(List<ChangeEvent> events) throws RemoteException;
+}
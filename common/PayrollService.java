@@ -8,6 +8,22 @@ public interface PayrollService extends Remote {
     PayrollRecord calculatePayroll(int employeeId, String period) throws RemoteException;
     PayrollRecord calculatePayroll(int employeeId, String period, double grossPay) throws RemoteException;
     PayrollRecord calculatePayroll(int employeeId, String period, double baseSalary, double overtimeHours, double overtimeRate, double bonus, double allowance) throws RemoteException;
+    List<PayrollEntryResult> calculatePayrollBatch(String period, List<PayrollEntry> entries) throws RemoteException;
     List<PayrollRecord> getPayrollRecords(int employeeId) throws RemoteException;
+    List<PayrollRecord> getPayrollRecords(int employeeId, String fromPeriod, String toPeriod) throws RemoteException;
+    List<PayrollRecord> getPayrollRecordsForPeriod(String period) throws RemoteException;
     List<PayrollRecord> getAllPayrollRecords() throws RemoteException;
+    ChangeSet<PayrollRecord> getChangesSince(long version) throws RemoteException;
+    ChangeSet<PayrollRecord> getChangesSince(int employeeId, long version) throws RemoteException;
+    void addEventListener(PayrollEventListener listener) throws RemoteException;
+    void removeEventListener(PayrollEventListener listener) throws RemoteException;
+    YearToDate getYearToDate(int employeeId, int year) throws RemoteException;
+    List<PayrollSummary> getPayrollSummary(String groupBy, String measure) throws RemoteException;
+    List<PayrollDistribution> getPayrollDistribution(String groupBy, String measure) throws RemoteException;
+    List<PayrollTrend> getPayrollTrend(String measure) throws RemoteException;
+    SimulationResult simulatePayroll(SimulationParameters params, int topN) throws RemoteException;
+    String startRecalculation(String fromPeriod, String toPeriod, double deductionRate) throws RemoteException;
+    RecalculationStatus getRecalculationStatus(String jobId) throws RemoteException;
+    String startPayslipExport(String period, String format) throws RemoteException;
+    byte[] readExportChunk(String exportId) throws RemoteException;
 } 
\ No newline at end of file
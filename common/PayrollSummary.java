@@ -0,0 +1,96 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * PayrollSummary holds count, sum, min and max of one payroll measure for one group
+ * (a period, a role or an employee). Summaries of the same group from different shards
+ * can be combined with {@link #merge}.
+ */
+public class PayrollSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String key;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+
+    public PayrollSummary() {
+    }
+
+    public PayrollSummary(String key, long count, double sum, double min, double max) {
+        this.key = key;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public void setSum(double sum) {
+        this.sum = sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public double getAverage() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Adds another summary of the same group into this one.
+     * @param other Summary to merge
+     */
+    public void merge(PayrollSummary other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        sum += other.sum;
+    }
+
+    @Override
+    public String toString() {
+        return key + ": count=" + count + ", sum=" + sum + ", avg=" + getAverage() + ", min=" + min + ", max=" + max;
+    }
+}
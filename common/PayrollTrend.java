@@ -0,0 +1,66 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * PayrollTrend is one period of a month-over-month trend of a payroll measure.
+ * The change fields are fractions relative to the previous period (0.05 = +5%),
+ * or NaN for the first period.
+ */
+public class PayrollTrend implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String period;
+    private long count;
+    private double total;
+    private double median;
+    private double totalChange = Double.NaN;
+    private double medianChange = Double.NaN;
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public void setTotal(double total) {
+        this.total = total;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public void setMedian(double median) {
+        this.median = median;
+    }
+
+    public double getTotalChange() {
+        return totalChange;
+    }
+
+    public void setTotalChange(double totalChange) {
+        this.totalChange = totalChange;
+    }
+
+    public double getMedianChange() {
+        return medianChange;
+    }
+
+    public void setMedianChange(double medianChange) {
+        this.medianChange = medianChange;
+    }
+}
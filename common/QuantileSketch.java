@@ -0,0 +1,185 @@
+package common;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * QuantileSketch summarises a stream of non-negative amounts in logarithmic buckets, so that any
+ * quantile can be answered within a fixed relative error (1% by default) from a few hundred
+ * counters, however many values were added. Sketches built separately (per shard, per thread)
+ * merge exactly by adding their bucket counts.
+ */
+public class QuantileSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    // counts[i] 对应桶下标 offset + i，覆盖 (gamma^(k-1), gamma^k]
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    public void add(double value) {
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+        if (value <= 0) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        ensure(index, index);
+        counts[index - offset]++;
+    }
+
+    /**
+     * Adds every value of another sketch with the same accuracy into this one.
+     * @param other Sketch to merge
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        if (other.counts.length > 0) {
+            ensure(other.offset, other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getAverage() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param q Quantile between 0 and 1 (0.5 = median, 0.9 = p90)
+     * @return Estimated value at that quantile, within the sketch's relative accuracy
+     */
+    public double getQuantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return Math.max(min, 0);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return Math.max(min, Math.min(max, valueOf(offset + i)));
+            }
+        }
+        return max;
+    }
+
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+
+    /**
+     * Spreads the values over equal-width buckets between min and max.
+     * Bucket b covers [min + b * width, min + (b + 1) * width) with width = (max - min) / buckets;
+     * the last bucket includes max.
+     * @param buckets Number of buckets
+     * @return Count per bucket
+     */
+    public long[] getHistogram(int buckets) {
+        long[] histogram = new long[Math.max(1, buckets)];
+        if (count == 0) {
+            return histogram;
+        }
+        double lo = getMin();
+        double width = (getMax() - lo) / histogram.length;
+        histogram[bucketOf(Math.max(lo, 0), lo, width, histogram.length)] += zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                double value = Math.max(lo, Math.min(getMax(), valueOf(offset + i)));
+                histogram[bucketOf(value, lo, width, histogram.length)] += counts[i];
+            }
+        }
+        return histogram;
+    }
+
+    private static int bucketOf(double value, double lo, double width, int buckets) {
+        if (width <= 0) {
+            return 0;
+        }
+        return Math.min(buckets - 1, (int) ((value - lo) / width));
+    }
+
+    // 桶内代表值，取使相对误差最小的点
+    private double valueOf(int index) {
+        double gamma = Math.exp(logGamma);
+        return 2 * Math.exp(index * logGamma) / (gamma + 1);
+    }
+
+    private void ensure(int lowIndex, int highIndex) {
+        if (counts.length == 0) {
+            counts = new long[highIndex - lowIndex + 1];
+            offset = lowIndex;
+            return;
+        }
+        int newLow = Math.min(offset, lowIndex);
+        int newHigh = Math.max(offset + counts.length - 1, highIndex);
+        if (newLow == offset && newHigh == offset + counts.length - 1) {
+            return;
+        }
+        // 多留一些余量，减少重复扩容
+        int slack = 16;
+        newLow -= newLow < offset ? slack : 0;
+        newHigh += newHigh > offset + counts.length - 1 ? slack : 0;
+        long[] grown = new long[newHigh - newLow + 1];
+        System.arraycopy(counts, 0, grown, offset - newLow, counts.length);
+        counts = grown;
+        offset = newLow;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", median=" + getMedian() + ", p90=" + getQuantile(0.9) + ", p99=" + getQuantile(0.99) + ", min=" + getMin() + ", max=" + getMax()
+                + ", buckets=" + Arrays.stream(counts).filter(c -> c > 0).count();
+    }
+}
@@ -0,0 +1,97 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * RecalculationStatus reports the progress of a retroactive payroll recalculation job.
+ * Status is one of PENDING, RUNNING, COMPLETED or FAILED.
+ */
+public class RecalculationStatus implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String jobId;
+    private String fromPeriod;
+    private String toPeriod;
+    private double deductionRate;
+    private String status;
+    private int totalRows;
+    private int processed;
+    private int updated;
+    private String error;
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getFromPeriod() {
+        return fromPeriod;
+    }
+
+    public void setFromPeriod(String fromPeriod) {
+        this.fromPeriod = fromPeriod;
+    }
+
+    public String getToPeriod() {
+        return toPeriod;
+    }
+
+    public void setToPeriod(String toPeriod) {
+        this.toPeriod = toPeriod;
+    }
+
+    public double getDeductionRate() {
+        return deductionRate;
+    }
+
+    public void setDeductionRate(double deductionRate) {
+        this.deductionRate = deductionRate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(int updated) {
+        this.updated = updated;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return jobId + " " + status + " " + processed + "/" + totalRows + " rows (" + updated + " changed)" + (error != null ? ": " + error : "");
+    }
+}
@@ -0,0 +1,13 @@
+package common;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+public interface SchedulerService extends Remote {
+    List<JobStatus> getJobs() throws RemoteException;
+    List<JobRun> getJobRuns(String name, int limit) throws RemoteException;
+    void scheduleJob(String name, String type, String cron, String parameters) throws RemoteException;
+    boolean removeJob(String name) throws RemoteException;
+    boolean runJobNow(String name) throws RemoteException;
+}
@@ -0,0 +1,29 @@
+package common;
+
+import java.rmi.RemoteException;
+
+/**
+ * Thrown when the server is at its concurrency limit for a kind of call and its wait queue is full.
+ * The call was not executed and can be retried later. RMI delivers it to the client wrapped in a
+ * java.rmi.ServerException, so use {@link #isServerBusy(Throwable)} to detect it.
+ */
+public class ServerBusyException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+
+    /**
+     * Tells whether an exception from a remote call means the server rejected it as busy.
+     */
+    public static boolean isServerBusy(Throwable t) {
+        while (t != null) {
+            if (t instanceof ServerBusyException) {
+                return true;
+            }
+            t = t.getCause();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * SimulationDelta is one employee's net pay before and after a simulated change.
+ */
+public class SimulationDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int employeeId;
+    private String period;
+    private double netPayBefore;
+    private double netPayAfter;
+
+    public SimulationDelta() {
+    }
+
+    public SimulationDelta(int employeeId, String period, double netPayBefore, double netPayAfter) {
+        this.employeeId = employeeId;
+        this.period = period;
+        this.netPayBefore = netPayBefore;
+        this.netPayAfter = netPayAfter;
+    }
+
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(int employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    public double getNetPayBefore() {
+        return netPayBefore;
+    }
+
+    public void setNetPayBefore(double netPayBefore) {
+        this.netPayBefore = netPayBefore;
+    }
+
+    public double getNetPayAfter() {
+        return netPayAfter;
+    }
+
+    public void setNetPayAfter(double netPayAfter) {
+        this.netPayAfter = netPayAfter;
+    }
+
+    public double getChange() {
+        return netPayAfter - netPayBefore;
+    }
+}
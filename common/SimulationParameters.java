@@ -0,0 +1,57 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * SimulationParameters describes a what-if change to payroll inputs.
+ * Factors multiply the corresponding input (1.04 = +4%); the defaults leave pay unchanged.
+ */
+public class SimulationParameters implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private double baseSalaryFactor = 1.0;
+    private double overtimeRateFactor = 1.0;
+    private double bonusFactor = 1.0;
+    private double allowanceFactor = 1.0;
+    // 为null时沿用现行扣款比例
+    private Double deductionRate;
+
+    public double getBaseSalaryFactor() {
+        return baseSalaryFactor;
+    }
+
+    public void setBaseSalaryFactor(double baseSalaryFactor) {
+        this.baseSalaryFactor = baseSalaryFactor;
+    }
+
+    public double getOvertimeRateFactor() {
+        return overtimeRateFactor;
+    }
+
+    public void setOvertimeRateFactor(double overtimeRateFactor) {
+        this.overtimeRateFactor = overtimeRateFactor;
+    }
+
+    public double getBonusFactor() {
+        return bonusFactor;
+    }
+
+    public void setBonusFactor(double bonusFactor) {
+        this.bonusFactor = bonusFactor;
+    }
+
+    public double getAllowanceFactor() {
+        return allowanceFactor;
+    }
+
+    public void setAllowanceFactor(double allowanceFactor) {
+        this.allowanceFactor = allowanceFactor;
+    }
+
+    public Double getDeductionRate() {
+        return deductionRate;
+    }
+
+    public void setDeductionRate(Double deductionRate) {
+        this.deductionRate = deductionRate;
+    }
+}
@@ -0,0 +1,92 @@
+package common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SimulationResult holds the payroll totals before and after a simulated change, over each
+ * employee's latest payroll record, plus the employees whose net pay changes the most.
+ */
+public class SimulationResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int employeeCount;
+    private double grossPayBefore;
+    private double grossPayAfter;
+    private double deductionsBefore;
+    private double deductionsAfter;
+    private double netPayBefore;
+    private double netPayAfter;
+    private List<SimulationDelta> topAffected = new ArrayList<>();
+
+    public int getEmployeeCount() {
+        return employeeCount;
+    }
+
+    public void setEmployeeCount(int employeeCount) {
+        this.employeeCount = employeeCount;
+    }
+
+    public double getGrossPayBefore() {
+        return grossPayBefore;
+    }
+
+    public void setGrossPayBefore(double grossPayBefore) {
+        this.grossPayBefore = grossPayBefore;
+    }
+
+    public double getGrossPayAfter() {
+        return grossPayAfter;
+    }
+
+    public void setGrossPayAfter(double grossPayAfter) {
+        this.grossPayAfter = grossPayAfter;
+    }
+
+    public double getDeductionsBefore() {
+        return deductionsBefore;
+    }
+
+    public void setDeductionsBefore(double deductionsBefore) {
+        this.deductionsBefore = deductionsBefore;
+    }
+
+    public double getDeductionsAfter() {
+        return deductionsAfter;
+    }
+
+    public void setDeductionsAfter(double deductionsAfter) {
+        this.deductionsAfter = deductionsAfter;
+    }
+
+    public double getNetPayBefore() {
+        return netPayBefore;
+    }
+
+    public void setNetPayBefore(double netPayBefore) {
+        this.netPayBefore = netPayBefore;
+    }
+
+    public double getNetPayAfter() {
+        return netPayAfter;
+    }
+
+    public void setNetPayAfter(double netPayAfter) {
+        this.netPayAfter = netPayAfter;
+    }
+
+    public double getNetPayChange() {
+        return netPayAfter - netPayBefore;
+    }
+
+    /**
+     * @return Employees ordered by the size of their net pay change, largest first
+     */
+    public List<SimulationDelta> getTopAffected() {
+        return topAffected;
+    }
+
+    public void setTopAffected(List<SimulationDelta> topAffected) {
+        this.topAffected = topAffected;
+    }
+}
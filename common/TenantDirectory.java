@@ -0,0 +1,19 @@
+package common;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * TenantDirectory is bound as "TenantDirectory" by servers that host several tenants
+ * (-Dpayroll.tenants.dir). It hands out EmployeeService and PayrollService stubs whose calls all
+ * run against one tenant's database.
+ */
+public interface TenantDirectory extends Remote {
+    /**
+     * @param tenantId Tenant (company) ID
+     * @param serviceName "EmployeeService" or "PayrollService"
+     * @return Stub for the service, scoped to the tenant
+     * @throws RemoteException if the tenant or service is unknown
+     */
+    Remote lookup(String tenantId, String serviceName) throws RemoteException;
+}
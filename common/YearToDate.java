@@ -0,0 +1,64 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * YearToDate holds an employee's running payroll totals for one calendar year.
+ */
+public class YearToDate implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int employeeId;
+    private int year;
+    private int periodCount;
+    private double grossPay;
+    private double deductions;
+    private double netPay;
+
+    public int getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(int employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public int getPeriodCount() {
+        return periodCount;
+    }
+
+    public void setPeriodCount(int periodCount) {
+        this.periodCount = periodCount;
+    }
+
+    public double getGrossPay() {
+        return grossPay;
+    }
+
+    public void setGrossPay(double grossPay) {
+        this.grossPay = grossPay;
+    }
+
+    public double getDeductions() {
+        return deductions;
+    }
+
+    public void setDeductions(double deductions) {
+        this.deductions = deductions;
+    }
+
+    public double getNetPay() {
+        return netPay;
+    }
+
+    public void setNetPay(double netPay) {
+        this.netPay = netPay;
+    }
+}
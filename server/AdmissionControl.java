@@ -0,0 +1,180 @@
+package server;
+
+import common.ServerBusyException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AdmissionControl limits how many remote calls of each kind run at once.
+ * RMI runs every call on its own connection thread, so without limits a burst of reports can
+ * starve payroll writes and exhaust database connections. Calls are classified as READ, WRITE,
+ * BULK or STREAM (export chunk reads, which can block while an export is slow); each class has a
+ * concurrency limit and a bounded wait queue, and a call that cannot get in fails fast with
+ * ServerBusyException instead of piling up.
+ *
+ * Limits are configured with -Dpayroll.admission.{read|write|bulk|stream}.{limit|queue|timeoutMs}, and
+ * a method can be moved to another class with -Dpayroll.admission.method.&lt;name&gt;=read|write|bulk|stream.
+ */
+public class AdmissionControl {
+    public enum CallClass {
+        READ(16, 64, 2000),
+        WRITE(8, 32, 5000),
+        BULK(2, 4, 1000),
+        // 读取导出分块可能阻塞到导出产生数据为止，单独限流，不占用批量查询的名额
+        STREAM(8, 16, 1000);
+
+        private final Semaphore permits;
+        private final int limit;
+        private final int queueLimit;
+        private final long timeoutMs;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger maxWaiting = new AtomicInteger();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        CallClass(int limit, int queue, long timeoutMs) {
+            String prefix = "payroll.admission." + name().toLowerCase() + ".";
+            this.limit = Integer.getInteger(prefix + "limit", limit);
+            this.permits = new Semaphore(this.limit, true);
+            this.queueLimit = Integer.getInteger(prefix + "queue", queue);
+            this.timeoutMs = Long.getLong(prefix + "timeoutMs", timeoutMs);
+        }
+    }
+
+    private static final Set<String> BULK_METHODS = new HashSet<>(Arrays.asList(
+        "getAllEmployees", "getAllPayrollRecords", "getPayrollRecordsForPeriod", "simulatePayroll", "startPayslipExport"));
+    private static final Set<String> STREAM_METHODS = new HashSet<>(Arrays.asList("readExportChunk"));
+    private static final Set<String> READ_PREFIXES = new HashSet<>(Arrays.asList("get", "login", "read", "search"));
+
+    private AdmissionControl() {
+    }
+
+    /**
+     * Classifies a remote method by name, honouring per-method overrides.
+     */
+    static CallClass classify(String methodName) {
+        String override = System.getProperty("payroll.admission.method." + methodName);
+        if (override != null) {
+            return CallClass.valueOf(override.trim().toUpperCase());
+        }
+        if (STREAM_METHODS.contains(methodName)) {
+            return CallClass.STREAM;
+        }
+        if (BULK_METHODS.contains(methodName)) {
+            return CallClass.BULK;
+        }
+        for (String prefix : READ_PREFIXES) {
+            if (methodName.startsWith(prefix)) {
+                return CallClass.READ;
+            }
+        }
+        return CallClass.WRITE;
+    }
+
+    /**
+     * Waits for a slot in the call's class.
+     * @throws ServerBusyException if the wait queue is full or no slot frees up in time
+     */
+    static void enter(CallClass callClass, String methodName) throws ServerBusyException {
+        if (callClass.permits.tryAcquire()) {
+            callClass.active.incrementAndGet();
+            callClass.admitted.incrementAndGet();
+            return;
+        }
+        int depth = callClass.waiting.incrementAndGet();
+        try {
+            if (depth > callClass.queueLimit) {
+                callClass.rejected.incrementAndGet();
+                throw new ServerBusyException("Server busy: too many " + callClass.name().toLowerCase() + " requests queued (" + methodName + "). Please retry shortly.");
+            }
+            callClass.maxWaiting.accumulateAndGet(depth, Math::max);
+            if (!callClass.permits.tryAcquire(callClass.timeoutMs, TimeUnit.MILLISECONDS)) {
+                callClass.rejected.incrementAndGet();
+                throw new ServerBusyException("Server busy: timed out waiting for a " + callClass.name().toLowerCase() + " slot (" + methodName + "). Please retry shortly.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callClass.rejected.incrementAndGet();
+            throw new ServerBusyException("Server busy: interrupted while waiting (" + methodName + ").");
+        } finally {
+            callClass.waiting.decrementAndGet();
+        }
+        callClass.active.incrementAndGet();
+        callClass.admitted.incrementAndGet();
+    }
+
+    static void exit(CallClass callClass) {
+        callClass.active.decrementAndGet();
+        callClass.permits.release();
+    }
+
+    /**
+     * Puts admission control in front of a remote service implementation.
+     * The implementation is unexported and the returned proxy is exported in its place,
+     * so the proxy is what gets bound in the registry.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Remote> T wrap(Class<T> iface, T target) throws RemoteException {
+        if (target instanceof UnicastRemoteObject) {
+            UnicastRemoteObject.unexportObject(target, true);
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(target, args);
+            }
+            CallClass callClass = classify(method.getName());
+            enter(callClass, method.getName());
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                exit(callClass);
+            }
+        };
+        T proxy = (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, handler);
+        UnicastRemoteObject.exportObject(proxy, 0);
+        return proxy;
+    }
+
+    /**
+     * @return Number of calls currently waiting for a slot, over all classes
+     */
+    static int waitingCalls() {
+        int total = 0;
+        for (CallClass c : CallClass.values()) {
+            total += c.waiting.get();
+        }
+        return total;
+    }
+
+    /**
+     * Adds per-class queue depth, concurrency and rejection counters to the given metrics map.
+     */
+    public static void collectMetrics(Map<String, Long> metrics) {
+        for (CallClass c : CallClass.values()) {
+            String prefix = "admission." + c.name().toLowerCase() + ".";
+            metrics.put(prefix + "active", (long) c.active.get());
+            metrics.put(prefix + "waiting", (long) c.waiting.get());
+            metrics.put(prefix + "maxWaiting", (long) c.maxWaiting.get());
+            metrics.put(prefix + "admitted", c.admitted.get());
+            metrics.put(prefix + "rejected", c.rejected.get());
+            metrics.put(prefix + "limit", (long) c.limit);
+            metrics.put(prefix + "queueLimit", (long) c.queueLimit);
+        }
+    }
+}
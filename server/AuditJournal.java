@@ -0,0 +1,324 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * AuditJournal is an append-only binary log of every mutation made through the services.
+ * <p>
+ * Records go into fixed-size memory-mapped segment files named after their first sequence
+ * number ({@code audit-00000000000000000001.log}). Each record is
+ * {@code [int length][int crc32c][payload]}; the length is written last, so a record cut short
+ * by a crash is never seen by readers, and a zero length marks the end of a segment's data.
+ * Appends only copy bytes into the mapping; a background task forces dirty pages to disk
+ * every {@code payroll.audit.syncMs} milliseconds.
+ */
+public class AuditJournal {
+    public enum Action {
+        EMPLOYEE_REGISTERED, EMPLOYEE_UPDATED, EMPLOYEE_DELETED, PAYROLL_CREATED, RECALCULATION_STARTED
+    }
+
+    /** One decoded journal record. */
+    public static final class Entry {
+        public final long sequence;
+        public final long timestamp;
+        public final Action action;
+        public final int entityId;
+        public final String actor;
+        public final String detail;
+
+        Entry(long sequence, long timestamp, Action action, int entityId, String actor, String detail) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.action = action;
+            this.entityId = entityId;
+            this.actor = actor;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return sequence + " " + java.time.Instant.ofEpochMilli(timestamp) + " " + action + " id=" + entityId + " by " + actor + (detail.isEmpty() ? "" : " " + detail);
+        }
+    }
+
+    private static final int HEADER = 8;
+    // seq(8) + time(8) + action(1) + entityId(4) + actorLen(2) + detailLen(4)
+    private static final int FIXED_PAYLOAD = 27;
+    private static volatile AuditJournal instance;
+
+    private final File dir;
+    private final int segmentSize;
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService syncer;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+
+    private AuditJournal(File dir, int segmentSize, long syncMillis) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create audit directory " + dir.getAbsolutePath());
+        }
+        recover();
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "audit-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal configured by payroll.audit.dir / segmentMB / syncMs. Called once at startup.
+     */
+    public static synchronized void open() throws IOException {
+        if (instance != null) {
+            return;
+        }
+        File dir = new File(System.getProperty("payroll.audit.dir", System.getProperty("payroll.db", "./payroll") + "-audit"));
+        int segmentSize = Integer.getInteger("payroll.audit.segmentMB", 64) * 1024 * 1024;
+        instance = new AuditJournal(dir, segmentSize, Long.getLong("payroll.audit.syncMs", 1000));
+        System.out.println("[SERVER] Audit journal " + dir.getPath() + " (next sequence " + instance.nextSequence + ")");
+    }
+
+    /**
+     * Records a mutation on behalf of the calling RMI client. Does nothing if the journal is not open.
+     * Journal failures are logged and never fail the caller's operation.
+     */
+    public static void record(Action action, int entityId, String detail) {
+        AuditJournal journal = instance;
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.append(action, entityId, currentActor(), detail == null ? "" : detail);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 二进制协议端点处理请求时设置的客户端地址
+    static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+
+    /**
+     * @return The RMI or binary-protocol client's host, or "local" for calls made inside the server
+     * (jobs, tools); prefixed with "tenant/" for calls made for a hosted tenant
+     */
+    static String currentActor() {
+        String tenant = Tenant.currentId();
+        return tenant == null ? clientHost() : tenant + "/" + clientHost();
+    }
+
+    private static String clientHost() {
+        String client = CLIENT.get();
+        if (client != null) {
+            return client;
+        }
+        try {
+            return RemoteServer.getClientHost();
+        } catch (ServerNotActiveException e) {
+            return "local";
+        }
+    }
+
+    /**
+     * Appends one record.
+     * @return The record's sequence number
+     */
+    public synchronized long append(Action action, int entityId, String actor, String detail) throws IOException {
+        byte[] actorBytes = actor.getBytes(StandardCharsets.UTF_8);
+        byte[] detailBytes = detail.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = FIXED_PAYLOAD + actorBytes.length + detailBytes.length;
+        if (HEADER + payloadLength + 4 > segmentSize) {
+            throw new IOException("Audit record too large: " + payloadLength + " bytes");
+        }
+        // 末尾至少留4字节的0作为段结束标记
+        if (segment.remaining() < HEADER + payloadLength + 4) {
+            roll();
+        }
+        long sequence = nextSequence;
+        int start = segment.position();
+        segment.position(start + HEADER);
+        segment.putLong(sequence);
+        segment.putLong(System.currentTimeMillis());
+        segment.put((byte) action.ordinal());
+        segment.putInt(entityId);
+        segment.putShort((short) actorBytes.length);
+        segment.put(actorBytes);
+        segment.putInt(detailBytes.length);
+        segment.put(detailBytes);
+        int end = segment.position();
+
+        crc.reset();
+        ByteBuffer payload = segment.duplicate();
+        payload.position(start + HEADER).limit(end);
+        crc.update(payload);
+        segment.putInt(start + 4, (int) crc.getValue());
+        // 下一条记录的位置先写0，恢复后残留的旧字节不会被当成记录
+        segment.putInt(end, 0);
+        // 长度最后写入，作为记录完整的标志
+        segment.putInt(start, payloadLength);
+        nextSequence++;
+        return sequence;
+    }
+
+    /**
+     * Visits every valid record with a sequence number of at least fromSequence, in order.
+     * Scanning stops at the first torn or corrupt record.
+     * @return Number of records visited
+     */
+    public static long scan(File dir, long fromSequence, Consumer<Entry> visitor) throws IOException {
+        long visited = 0;
+        List<File> files = segments(dir);
+        for (int i = 0; i < files.size(); i++) {
+            // 下一段的起始序号不大于 fromSequence 时，本段可整段跳过
+            if (i + 1 < files.size() && firstSequence(files.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            ByteBuffer buf = map(files.get(i), FileChannel.MapMode.READ_ONLY, -1);
+            CRC32C check = new CRC32C();
+            while (true) {
+                Entry entry = read(buf, check);
+                if (entry == null) {
+                    if (buf.position() < buf.limit() && buf.getInt(buf.position()) != 0) {
+                        return visited;
+                    }
+                    break;
+                }
+                if (entry.sequence >= fromSequence) {
+                    visitor.accept(entry);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public static AuditJournal getInstance() {
+        return instance;
+    }
+
+    /**
+     * Forces written records to disk.
+     */
+    public synchronized void sync() {
+        segment.force();
+    }
+
+    // 启动时找到最后一个完整记录，之后的残缺内容会被覆盖
+    private void recover() throws IOException {
+        List<File> files = segments(dir);
+        if (files.isEmpty()) {
+            nextSequence = 1;
+            segment = map(segmentFile(1), FileChannel.MapMode.READ_WRITE, segmentSize);
+            return;
+        }
+        File last = files.get(files.size() - 1);
+        MappedByteBuffer buf = map(last, FileChannel.MapMode.READ_WRITE, segmentSize);
+        long sequence = firstSequence(last);
+        CRC32C check = new CRC32C();
+        while (true) {
+            int position = buf.position();
+            Entry entry = read(buf, check);
+            if (entry == null) {
+                buf.position(position);
+                break;
+            }
+            sequence = entry.sequence + 1;
+        }
+        // 清掉残缺记录的长度字段，避免扫描时被误读
+        if (buf.remaining() >= 4) {
+            buf.putInt(buf.position(), 0);
+        }
+        segment = buf;
+        nextSequence = sequence;
+    }
+
+    private void roll() throws IOException {
+        segment.force();
+        segment = map(segmentFile(nextSequence), FileChannel.MapMode.READ_WRITE, segmentSize);
+        System.out.println("[SERVER] Audit journal rolled to segment starting at " + nextSequence);
+    }
+
+    /**
+     * Reads the record at the buffer's position and advances past it.
+     * @return The record, or null at the end of data or at a torn/corrupt record
+     */
+    private static Entry read(ByteBuffer buf, CRC32C check) {
+        int start = buf.position();
+        if (buf.limit() - start < HEADER) {
+            return null;
+        }
+        int length = buf.getInt(start);
+        if (length < FIXED_PAYLOAD || length > buf.limit() - start - HEADER) {
+            return null;
+        }
+        int stored = buf.getInt(start + 4);
+        ByteBuffer payload = buf.duplicate();
+        payload.position(start + HEADER).limit(start + HEADER + length);
+        check.reset();
+        check.update(payload.duplicate());
+        if ((int) check.getValue() != stored) {
+            return null;
+        }
+        long sequence = payload.getLong();
+        long timestamp = payload.getLong();
+        int actionIndex = payload.get();
+        int entityId = payload.getInt();
+        byte[] actor = new byte[payload.getShort() & 0xFFFF];
+        payload.get(actor);
+        byte[] detail = new byte[payload.getInt()];
+        payload.get(detail);
+        buf.position(start + HEADER + length);
+        Action[] actions = Action.values();
+        return new Entry(sequence, timestamp, actionIndex < actions.length ? actions[actionIndex] : null, entityId,
+                new String(actor, StandardCharsets.UTF_8), new String(detail, StandardCharsets.UTF_8));
+    }
+
+    private File segmentFile(long firstSequence) {
+        return new File(dir, String.format("audit-%020d.log", firstSequence));
+    }
+
+    static List<File> segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("audit-") && name.endsWith(".log"));
+        List<File> list = new ArrayList<>(files == null ? List.of() : Arrays.asList(files));
+        list.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return list;
+    }
+
+    private static long firstSequence(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring("audit-".length(), name.length() - ".log".length()));
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode, int size) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        // 映射在通道关闭后仍然有效
+        try (FileChannel channel = FileChannel.open(file.toPath(), options)) {
+            long length = size < 0 ? channel.size() : Math.max(size, channel.size());
+            return channel.map(mode, 0, length);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package server;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.function.Predicate;
+
+/**
+ * AuditTool prints audit journal records, optionally filtered. It reads the segment files
+ * directly and can run while the server is appending.
+ * <pre>
+ * java -cp .:h2-2.3.232.jar server.AuditTool [dir] [--from seq] [--action EMPLOYEE_DELETED]
+ *     [--id entityId] [--actor host] [--since yyyy-MM-dd] [--count]
+ * </pre>
+ */
+public class AuditTool {
+    public static void main(String[] args) {
+        File dir = new File(System.getProperty("payroll.audit.dir", System.getProperty("payroll.db", "./payroll") + "-audit"));
+        long from = 1;
+        boolean countOnly = false;
+        Predicate<AuditJournal.Entry> filter = e -> true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--from":
+                        from = Long.parseLong(args[++i]);
+                        break;
+                    case "--action":
+                        AuditJournal.Action action = AuditJournal.Action.valueOf(args[++i].toUpperCase());
+                        filter = filter.and(e -> e.action == action);
+                        break;
+                    case "--id":
+                        int id = Integer.parseInt(args[++i]);
+                        filter = filter.and(e -> e.entityId == id);
+                        break;
+                    case "--actor":
+                        String actor = args[++i];
+                        filter = filter.and(e -> e.actor.equals(actor));
+                        break;
+                    case "--since":
+                        long since = LocalDate.parse(args[++i]).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                        filter = filter.and(e -> e.timestamp >= since);
+                        break;
+                    case "--count":
+                        countOnly = true;
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            System.err.println("Unknown option " + arg);
+                            return;
+                        }
+                        dir = new File(arg);
+                }
+            }
+            if (!dir.isDirectory()) {
+                System.err.println("No audit journal at " + dir.getPath());
+                return;
+            }
+            Predicate<AuditJournal.Entry> matches = filter;
+            boolean print = !countOnly;
+            long[] matched = new long[1];
+            long start = System.nanoTime();
+            long scanned = AuditJournal.scan(dir, from, e -> {
+                if (matches.test(e)) {
+                    matched[0]++;
+                    if (print) {
+                        System.out.println(e);
+                    }
+                }
+            });
+            System.err.println(matched[0] + " of " + scanned + " records matched in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
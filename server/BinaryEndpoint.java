@@ -0,0 +1,286 @@
+package server;
+
+import common.BinaryProtocol;
+import common.EmployeeService;
+import common.PayrollService;
+import common.ServerBusyException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BinaryEndpoint serves the employee and payroll operations over {@link BinaryProtocol} on a
+ * plain TCP port, next to RMI. One selector thread does all socket I/O; decoded requests run on a
+ * worker pool, so a client can pipeline many requests on one connection and each response is
+ * written as soon as its call finishes.
+ * <p>
+ * Calls go through the same service objects as RMI (including admission control). A connection
+ * with -Dpayroll.binary.maxInFlight requests outstanding (running, or answered but not yet written
+ * to the socket) is not read from until some responses have been sent.
+ */
+public class BinaryEndpoint implements Runnable {
+    private static final int WORKERS = Integer.getInteger("payroll.binary.workers", Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("payroll.binary.maxInFlight", 256);
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final EmployeeService employeeService;
+    private final PayrollService payrollService;
+    private final ExecutorService workers;
+
+    private BinaryEndpoint(int port, EmployeeService employeeService, PayrollService payrollService) throws IOException {
+        this.employeeService = employeeService;
+        this.payrollService = payrollService;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(WORKERS, r -> {
+            Thread t = new Thread(r, "binary-worker-" + workerCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Opens the port and starts the selector thread.
+     */
+    public static BinaryEndpoint start(int port, EmployeeService employeeService, PayrollService payrollService) throws IOException {
+        BinaryEndpoint endpoint = new BinaryEndpoint(port, employeeService, payrollService);
+        Thread t = new Thread(endpoint, "binary-endpoint");
+        t.setDaemon(true);
+        t.start();
+        System.out.println("[SERVER] Binary protocol endpoint listening on port " + port);
+        return endpoint;
+    }
+
+    @Override
+    public void run() {
+        while (serverChannel.isOpen()) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection conn = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            conn.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            conn.flush();
+                        }
+                    } catch (IOException e) {
+                        conn.close(e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection conn = new Connection(channel);
+        conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+    }
+
+    /**
+     * Runs one request on a worker thread and queues its response.
+     */
+    private void handle(Connection conn, byte[] frame) {
+        int requestId = 0;
+        byte status = BinaryProtocol.OK;
+        Object result = null;
+        String error = null;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+            requestId = in.readInt();
+            Method method = BinaryProtocol.method(in.readShort());
+            if (method == null) {
+                throw new RemoteException("Unknown operation");
+            }
+            Object target = method.getDeclaringClass() == EmployeeService.class ? employeeService : payrollService;
+            Object[] args = BinaryProtocol.readArguments(in, method);
+            // 审计记录使用二进制客户端的地址
+            AuditJournal.CLIENT.set(conn.address);
+            try {
+                result = method.invoke(target, args);
+            } finally {
+                AuditJournal.CLIENT.remove();
+            }
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            status = ServerBusyException.isServerBusy(cause) ? BinaryProtocol.BUSY : BinaryProtocol.ERROR;
+            error = cause instanceof RemoteException ? ((RemoteException) cause).getMessage() : String.valueOf(cause);
+            if (!(cause instanceof RemoteException)) {
+                cause.printStackTrace();
+            }
+        } catch (Exception e) {
+            status = BinaryProtocol.ERROR;
+            error = "Bad request: " + e.getMessage();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(requestId);
+            out.writeByte(status);
+            BinaryProtocol.writeValue(out, status == BinaryProtocol.OK ? result : error);
+        } catch (IOException e) {
+            bytes.reset();
+            try {
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(0);
+                out.writeInt(requestId);
+                out.writeByte(BinaryProtocol.ERROR);
+                BinaryProtocol.writeValue(out, "Cannot encode result: " + e.getMessage());
+            } catch (IOException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+        }
+        ByteBuffer response = ByteBuffer.wrap(bytes.toByteArray());
+        response.putInt(0, response.capacity() - 4);
+        conn.send(response);
+    }
+
+    /** Per-connection read buffer and response queue. */
+    private class Connection {
+        private final SocketChannel channel;
+        private final String address;
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+        private SelectionKey key;
+        private boolean paused;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+            this.address = remote.getAddress().getHostAddress();
+        }
+
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                close(null);
+                return;
+            }
+            dispatchFrames();
+        }
+
+        /**
+         * Hands every complete frame in the buffer to the workers, up to the in-flight limit.
+         */
+        private void dispatchFrames() throws IOException {
+            readBuffer.flip();
+            while (readBuffer.remaining() >= 4) {
+                if (inFlight.get() >= MAX_IN_FLIGHT) {
+                    // 未完成的请求过多，暂停读取，等响应发出后继续
+                    paused = true;
+                    key.interestOpsAnd(~SelectionKey.OP_READ);
+                    break;
+                }
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length < 6 || length > BinaryProtocol.MAX_FRAME) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (readBuffer.remaining() < 4 + length) {
+                    if (readBuffer.capacity() < 4 + length) {
+                        ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                        larger.put(readBuffer);
+                        readBuffer = larger;
+                        return;
+                    }
+                    break;
+                }
+                readBuffer.getInt();
+                byte[] frame = new byte[length];
+                readBuffer.get(frame);
+                inFlight.incrementAndGet();
+                workers.execute(() -> handle(this, frame));
+            }
+            readBuffer.compact();
+        }
+
+        /**
+         * Called from worker threads; the selector thread does the actual write.
+         */
+        void send(ByteBuffer response) {
+            responses.add(response);
+            try {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+                selector.wakeup();
+            } catch (java.nio.channels.CancelledKeyException e) {
+                // 连接已关闭，丢弃响应
+            }
+        }
+
+        void flush() throws IOException {
+            ByteBuffer head;
+            while ((head = responses.peek()) != null) {
+                channel.write(head);
+                if (head.hasRemaining()) {
+                    return;
+                }
+                responses.poll();
+                // 响应写出后才算完成：不读取响应的客户端无法让排队的响应无限增长
+                inFlight.decrementAndGet();
+            }
+            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            // 清除写兴趣之后才入队的响应不能漏发
+            if (!responses.isEmpty()) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+            }
+            if (paused && inFlight.get() < MAX_IN_FLIGHT) {
+                paused = false;
+                key.interestOpsOr(SelectionKey.OP_READ);
+                dispatchFrames();
+            }
+        }
+
+        void close(String reason) {
+            if (reason != null) {
+                System.out.println("[SERVER] Binary connection from " + address + " closed: " + reason);
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 连接已断开
+            }
+        }
+    }
+}
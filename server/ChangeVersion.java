@@ -0,0 +1,67 @@
+package server;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * ChangeVersion hands out the monotonically increasing versions stamped on Employee and Payroll
+ * rows (and on tombstones in DeletedRow) for delta sync.
+ * Versions are microsecond-clock based so independent shards advance at the same pace, and writes
+ * still in flight are tracked so {@link #safeVersion()} never runs ahead of an uncommitted row.
+ */
+public class ChangeVersion {
+    private static long last;
+    private static long lastWrite;
+    private static final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    private ChangeVersion() {
+    }
+
+    /**
+     * Makes sure new versions are above anything already stored (called once at startup).
+     * @param maxStoredVersion Largest version found in the database
+     */
+    public static synchronized void seed(long maxStoredVersion) {
+        last = Math.max(last, maxStoredVersion);
+        lastWrite = Math.max(lastWrite, maxStoredVersion);
+    }
+
+    /**
+     * Allocates a version for a write; must be paired with {@link #end(long)}.
+     * @return The new version
+     */
+    public static synchronized long begin() {
+        last = Math.max(last + 1, System.currentTimeMillis() * 1000);
+        lastWrite = last;
+        inFlight.add(last);
+        return last;
+    }
+
+    /**
+     * Marks a write as finished (committed or failed).
+     * @param version Version returned by {@link #begin()}
+     */
+    public static void end(long version) {
+        inFlight.remove(version);
+    }
+
+    /**
+     * Returns the version of the latest write once every write has finished, or -1 while one is
+     * in flight. Unlike {@link #safeVersion()} it does not follow the clock, so it changes only
+     * when data does (used for HTTP ETags).
+     */
+    public static synchronized long lastWriteVersion() {
+        return inFlight.isEmpty() ? lastWrite : -1;
+    }
+
+    /**
+     * Returns the highest version below which every write has finished.
+     * Readers use it as the high-water mark handed back to delta-sync clients.
+     */
+    public static synchronized long safeVersion() {
+        if (inFlight.isEmpty()) {
+            last = Math.max(last, System.currentTimeMillis() * 1000);
+            return last;
+        }
+        return inFlight.first() - 1;
+    }
+}
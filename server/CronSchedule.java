@@ -0,0 +1,139 @@
+package server;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * CronSchedule is a five-field cron expression: minute hour day-of-month month day-of-week.
+ * Each field accepts {@code *}, numbers, ranges ({@code 1-5}), lists ({@code 1,15}) and steps
+ * ({@code *&#47;15}, {@code 0-30/10}); day-of-week is 0-6 with 0 = Sunday (7 is also Sunday).
+ * As in classic cron, when both day fields are restricted a day matches if either one does.
+ * Times are server local time.
+ */
+public final class CronSchedule {
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean domRestricted;
+    private final boolean dowRestricted;
+
+    private CronSchedule(String expression, String[] fields) {
+        this.expression = expression;
+        minutes = parseField(fields[0], 0, 59);
+        hours = parseField(fields[1], 0, 23);
+        daysOfMonth = parseField(fields[2], 1, 31);
+        months = parseField(fields[3], 1, 12);
+        BitSet dow = parseField(fields[4], 0, 7);
+        if (dow.get(7)) {
+            dow.set(0);
+        }
+        daysOfWeek = dow;
+        domRestricted = !fields[2].equals("*");
+        dowRestricted = !fields[4].equals("*");
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not a valid five-field cron expression
+     */
+    public static CronSchedule parse(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Cron expression is required");
+        }
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression must have 5 fields: " + expression);
+        }
+        return new CronSchedule(expression.trim(), fields);
+    }
+
+    /**
+     * @return The first matching minute strictly after the given time
+     */
+    public LocalDateTime next(LocalDateTime after) {
+        LocalDateTime t = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        // 最多向后找五年，防止 2月30日 这类永远不会匹配的表达式死循环
+        LocalDateTime limit = t.plusYears(5);
+        while (t.isBefore(limit)) {
+            if (!months.get(t.getMonthValue())) {
+                t = t.withDayOfMonth(1).withHour(0).withMinute(0).plusMonths(1);
+                continue;
+            }
+            if (!dayMatches(t)) {
+                t = t.withHour(0).withMinute(0).plusDays(1);
+                continue;
+            }
+            if (!hours.get(t.getHour())) {
+                t = t.withMinute(0).plusHours(1);
+                continue;
+            }
+            if (!minutes.get(t.getMinute())) {
+                t = t.plusMinutes(1);
+                continue;
+            }
+            return t;
+        }
+        throw new IllegalStateException("Cron expression never fires: " + expression);
+    }
+
+    private boolean dayMatches(LocalDateTime t) {
+        boolean dom = daysOfMonth.get(t.getDayOfMonth());
+        boolean dow = daysOfWeek.get(t.getDayOfWeek().getValue() % 7);
+        if (domRestricted && dowRestricted) {
+            return dom || dow;
+        }
+        return dom && dow;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max, part);
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if (part.equals("*")) {
+                from = min;
+                to = max;
+            } else if (part.contains("-")) {
+                String[] range = part.split("-", 2);
+                from = parseNumber(range[0], min, max, field);
+                to = parseNumber(range[1], min, max, field);
+            } else {
+                from = parseNumber(part, min, max, field);
+                to = slash >= 0 ? max : from;
+            }
+            if (from > to) {
+                throw new IllegalArgumentException("Invalid cron range: " + field);
+            }
+            for (int i = from; i <= to; i += step) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseNumber(String s, int min, int max, String field) {
+        try {
+            int n = Integer.parseInt(s);
+            if (n < min || n > max) {
+                throw new IllegalArgumentException("Cron value out of range " + min + "-" + max + ": " + field);
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cron field: " + field);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
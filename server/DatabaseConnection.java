@@ -5,11 +5,20 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
-    private static final String URL = "jdbc:h2:./payroll";
+    // 数据库文件路径可通过 -Dpayroll.db=./payroll-shard0 指定（分片部署时每个实例一个文件）
+    private static final String URL = "jdbc:h2:" + System.getProperty("payroll.db", "./payroll");
     private static final String USER = "sa";
     private static final String PASSWORD = "sa";
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        // 在 UnitOfWork 中时所有DAO共用其连接和事务
+        Connection shared = UnitOfWork.currentConnection();
+        return shared != null ? shared : open();
     }
-} 
\ No newline at end of file
+
+    static Connection open() throws SQLException {
+        // 多租户：当前线程在为某个租户工作时使用该租户自己的数据库
+        Tenant tenant = Tenant.current();
+        return tenant != null ? tenant.connection() : DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+}
@@ -4,102 +4,214 @@ import common.Employee;
 import java.sql.*;
 
 public class EmployeeDAO {
+    static final String COLUMNS = "id, username, password, firstName, lastName, icPassport, role";
+
+    // 按 COLUMNS 的列序读取
+    static final RowMapper<Employee> ROW = rs -> {
+        Employee emp = new Employee();
+        emp.setId(rs.getInt(1));
+        emp.setUsername(rs.getString(2));
+        emp.setPassword(rs.getString(3));
+        emp.setFirstName(rs.getString(4));
+        emp.setLastName(rs.getString(5));
+        emp.setIcPassport(rs.getString(6));
+        emp.setRole(rs.getString(7));
+        return emp;
+    };
+
     public boolean insert(Employee employee) {
-        String sql = "INSERT INTO Employee (username, password, firstName, lastName, icPassport, role) VALUES (?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO Employee (username, password, firstName, lastName, icPassport, role, version) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        long version = ChangeVersion.begin();
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, employee.getUsername());
             stmt.setString(2, employee.getPassword());
             stmt.setString(3, employee.getFirstName());
             stmt.setString(4, employee.getLastName());
             stmt.setString(5, employee.getIcPassport());
             stmt.setString(6, employee.getRole());
-            return stmt.executeUpdate() > 0;
+            stmt.setLong(7, version);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    int id = keys.getInt(1);
+                    UnitOfWork.afterCommit(() -> EmployeeSearchIndex.getInstance().add(id, employee));
+                }
+            }
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            ChangeVersion.end(version);
         }
     }
 
     public Employee getByUsername(String username) {
-        String sql = "SELECT * FROM Employee WHERE username = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                Employee emp = new Employee();
-                emp.setId(rs.getInt("id"));
-                emp.setUsername(rs.getString("username"));
-                emp.setPassword(rs.getString("password"));
-                emp.setFirstName(rs.getString("firstName"));
-                emp.setLastName(rs.getString("lastName"));
-                emp.setIcPassport(rs.getString("icPassport"));
-                emp.setRole(rs.getString("role"));
-                return emp;
-            }
+        String sql = "SELECT " + COLUMNS + " FROM Employee WHERE username = ?";
+        try {
+            return Rows.first(sql, stmt -> stmt.setString(1, username), ROW);
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return null;
+    }
+
+    /**
+     * Resolves usernames to employee IDs in one query; unknown usernames are absent from the map.
+     */
+    public java.util.Map<String, Integer> getIdsByUsername(java.util.Collection<String> usernames) {
+        java.util.Map<String, Integer> ids = new java.util.HashMap<>();
+        String sql = "SELECT username, id FROM Employee WHERE username = ANY(?)";
+        try {
+            Rows.forEach(sql, stmt -> stmt.setObject(1, usernames.toArray(new String[0])),
+                    rs -> java.util.Map.entry(rs.getString(1), rs.getInt(2)), e -> ids.put(e.getKey(), e.getValue()));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return ids;
     }
 
     public boolean update(Employee employee) {
-        String sql = "UPDATE Employee SET firstName = ?, lastName = ?, icPassport = ?, password = ? WHERE id = ?";
+        String sql = "UPDATE Employee SET firstName = ?, lastName = ?, icPassport = ?, password = ?, version = ? WHERE id = ?";
+        long version = ChangeVersion.begin();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, employee.getFirstName());
             stmt.setString(2, employee.getLastName());
             stmt.setString(3, employee.getIcPassport());
             stmt.setString(4, employee.getPassword());
-            stmt.setInt(5, employee.getId());
-            return stmt.executeUpdate() > 0;
+            stmt.setLong(5, version);
+            stmt.setInt(6, employee.getId());
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+            UnitOfWork.afterCommit(() -> EmployeeSearchIndex.getInstance().update(employee));
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            ChangeVersion.end(version);
         }
     }
 
     public java.util.List<Employee> getAll() {
         java.util.List<Employee> list = new java.util.ArrayList<>();
-        String sql = "SELECT * FROM Employee";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                Employee emp = new Employee();
-                emp.setId(rs.getInt("id"));
-                emp.setUsername(rs.getString("username"));
-                emp.setPassword(rs.getString("password"));
-                emp.setFirstName(rs.getString("firstName"));
-                emp.setLastName(rs.getString("lastName"));
-                emp.setIcPassport(rs.getString("icPassport"));
-                emp.setRole(rs.getString("role"));
-                list.add(emp);
-            }
+        forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Streams every employee to the visitor without materialising the whole table.
+     * @return Number of employees visited, or -1 if the query failed
+     */
+    public int forEach(java.util.function.Consumer<? super Employee> visitor) {
+        String sql = "SELECT " + COLUMNS + " FROM Employee";
+        try {
+            return Rows.forEach(sql, Rows.Binder.NONE, ROW, visitor);
         } catch (SQLException e) {
             e.printStackTrace();
+            return -1;
         }
-        return list;
     }
 
     public boolean delete(int id) {
-        String deletePayroll = "DELETE FROM Payroll WHERE employeeId = ?";
-        String deleteEmployee = "DELETE FROM Employee WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            // 先删工资单
-            try (PreparedStatement stmt1 = conn.prepareStatement(deletePayroll)) {
-                stmt1.setInt(1, id);
-                stmt1.executeUpdate();
+        return deleteAll(java.util.Collections.singletonList(id)).contains(id);
+    }
+
+    /**
+     * Deletes employees with their payroll (live and archived) and year-to-date rows in one
+     * transaction. Each step is a single set-based statement over all IDs, so the cost does not
+     * grow with the number of statements; tombstones are written first for delta sync.
+     * Joins the caller's {@link UnitOfWork} if one is active.
+     * @return IDs that existed and were deleted, or an empty list on failure
+     */
+    public java.util.List<Integer> deleteAll(java.util.Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new java.util.ArrayList<>();
+        }
+        Integer[] idArray = ids.toArray(new Integer[0]);
+        String[] cascade = {
+            // 先记录墓碑，供增量同步的客户端删除本地副本
+            "INSERT INTO DeletedRow (tableName, rowId, version) SELECT 'Payroll', id, ? FROM Payroll WHERE employeeId = ANY(?)",
+            "INSERT INTO DeletedRow (tableName, rowId, version) SELECT 'Payroll', id, ? FROM PayrollArchive WHERE employeeId = ANY(?)",
+            "INSERT INTO DeletedRow (tableName, rowId, version) SELECT 'Employee', id, ? FROM Employee WHERE id = ANY(?)",
+            // 先删工资单和年度累计，再删员工
+            "DELETE FROM Payroll WHERE employeeId = ANY(?)",
+            "DELETE FROM PayrollArchive WHERE employeeId = ANY(?)",
+            "DELETE FROM PayrollYtd WHERE employeeId = ANY(?)",
+            "DELETE FROM PayrollPeriodClaim WHERE employeeId = ANY(?)",
+            "DELETE FROM Employee WHERE id = ANY(?)"
+        };
+        long version = ChangeVersion.begin();
+        try (UnitOfWork work = UnitOfWork.begin()) {
+            java.util.List<Integer> deleted = Rows.list("SELECT id FROM Employee WHERE id = ANY(?) ORDER BY id",
+                    stmt -> stmt.setObject(1, idArray), rs -> rs.getInt(1));
+            // 单元内的连接由 UnitOfWork 关闭
+            Connection conn = DatabaseConnection.getConnection();
+            for (String sql : cascade) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    if (sql.startsWith("INSERT")) {
+                        stmt.setLong(index++, version);
+                    }
+                    stmt.setObject(index, idArray);
+                    stmt.executeUpdate();
+                }
             }
-            // 再删员工
-            try (PreparedStatement stmt2 = conn.prepareStatement(deleteEmployee)) {
-                stmt2.setInt(1, id);
-                return stmt2.executeUpdate() > 0;
+            UnitOfWork.afterCommit(() -> {
+                for (int id : deleted) {
+                    PayrollColumnStore.getInstance().removeEmployee(id);
+                    EmployeeSearchIndex.getInstance().remove(id);
+                }
+            });
+            work.commit();
+            return deleted;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new java.util.ArrayList<>();
+        } finally {
+            ChangeVersion.end(version);
+        }
+    }
+
+    /**
+     * Returns employees inserted or updated in the version range (since, upTo].
+     */
+    public java.util.List<Employee> getChangedSince(long since, long upTo) {
+        String sql = "SELECT " + COLUMNS + " FROM Employee WHERE version > ? AND version <= ? ORDER BY version";
+        try {
+            return Rows.list(sql, stmt -> {
+                stmt.setLong(1, since);
+                stmt.setLong(2, upTo);
+            }, ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new java.util.ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns IDs of rows of the given table deleted in the version range (since, upTo].
+     */
+    public static java.util.List<Integer> getDeletedSince(String table, long since, long upTo) {
+        java.util.List<Integer> ids = new java.util.ArrayList<>();
+        String sql = "SELECT rowId FROM DeletedRow WHERE tableName = ? AND version > ? AND version <= ? ORDER BY version";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setLong(2, since);
+            stmt.setLong(3, upTo);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
         }
+        return ids;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,466 @@
+package server;
+
+import common.Employee;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * EmployeeSearchIndex answers employee look-ups by username, first name, last name or
+ * IC/passport from memory, so pickers in the client need not load the whole directory.
+ * <p>
+ * Field values are lower-cased and split into terms (usernames also at '.', '_' and '@';
+ * IC/passport without separators). Each query word matches the terms it is a prefix of, allowing
+ * one typo from 4 characters and two from 8 (inserted, missing, wrong or swapped characters). Terms are kept in one sorted array, which is
+ * walked like a trie: ranges sharing a prefix carry one edit-distance row per character and are
+ * dropped as soon as no extension can match.
+ * <p>
+ * Writes from {@link EmployeeDAO} do not re-sort the terms: new and changed employees go to a
+ * small delta that is scored directly, their old entries are masked, and the delta is merged into
+ * the sorted terms once it holds payroll.search.deltaLimit employees. Readers use an immutable
+ * {@link Snapshot} and never block.
+ */
+public class EmployeeSearchIndex {
+    private static final EmployeeSearchIndex INSTANCE = new EmployeeSearchIndex();
+    private static final int DELTA_LIMIT = Integer.getInteger("payroll.search.deltaLimit", 1024);
+    public static final int MAX_RESULTS = 100;
+    // 同分时按ID排序，分片合并后的顺序与单机一致
+    private static final Comparator<Scored> RANK = Comparator.comparingInt((Scored s) -> -s.score).thenComparingInt(s -> s.employee.getId());
+
+    private static final class Snapshot {
+        final String[] terms;
+        final int[][] postings;
+        final Employee[] employees;
+        final Map<Integer, Integer> slotById;
+        final boolean[] masked;
+        final Employee[] delta;
+
+        Snapshot(String[] terms, int[][] postings, Employee[] employees, Map<Integer, Integer> slotById, boolean[] masked, Employee[] delta) {
+            this.terms = terms;
+            this.postings = postings;
+            this.employees = employees;
+            this.slotById = slotById;
+            this.masked = masked;
+            this.delta = delta;
+        }
+
+        Snapshot with(boolean[] masked, Employee[] delta) {
+            return new Snapshot(terms, postings, employees, slotById, masked, delta);
+        }
+    }
+
+    private static final class Scored {
+        final Employee employee;
+        final int score;
+
+        Scored(Employee employee, int score) {
+            this.employee = employee;
+            this.score = score;
+        }
+    }
+
+    private volatile Snapshot snapshot = build(new ArrayList<>());
+    // 启动加载前（如离线工具）不维护索引
+    private boolean loaded;
+
+    EmployeeSearchIndex() {
+    }
+
+    public static EmployeeSearchIndex getInstance() {
+        Tenant tenant = Tenant.current();
+        return tenant != null ? tenant.searchIndex() : INSTANCE;
+    }
+
+    /**
+     * (Re)builds the index from the Employee table.
+     * @return Number of employees indexed
+     */
+    public synchronized int load() {
+        List<Employee> all = new ArrayList<>();
+        new EmployeeDAO().forEach(e -> all.add(entry(e.getId(), e)));
+        snapshot = build(all);
+        loaded = true;
+        return all.size();
+    }
+
+    /**
+     * Indexes a newly inserted employee.
+     */
+    public synchronized void add(int id, Employee employee) {
+        if (loaded) {
+            replace(id, entry(id, employee));
+        }
+    }
+
+    /**
+     * Re-indexes an employee after a profile update. Username and role are not updatable, so they
+     * are kept from the indexed entry.
+     */
+    public synchronized void update(Employee employee) {
+        Employee current = loaded ? find(employee.getId()) : null;
+        if (current == null) {
+            return;
+        }
+        Employee updated = entry(employee.getId(), employee);
+        updated.setUsername(current.getUsername());
+        updated.setRole(current.getRole());
+        replace(employee.getId(), updated);
+    }
+
+    public synchronized void remove(int id) {
+        if (loaded) {
+            replace(id, null);
+        }
+    }
+
+    /**
+     * Finds employees matching every word of the query, best matches first: whole-term matches
+     * before prefixes, prefixes before typos, shorter completions first, then by ID.
+     * Returned employees carry no password.
+     */
+    public List<Employee> search(String query, int limit) {
+        String[] tokens = tokens(query);
+        if (tokens.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        Snapshot s = snapshot;
+        int mainCount = s.employees.length;
+        int[] total = null;
+        for (String token : tokens) {
+            int[] scores = new int[mainCount + s.delta.length];
+            walk(s, token, scores);
+            for (int i = 0; i < s.delta.length; i++) {
+                scores[mainCount + i] = score(token, s.delta[i]);
+            }
+            if (total == null) {
+                total = scores;
+            } else {
+                for (int i = 0; i < total.length; i++) {
+                    total[i] = total[i] > 0 && scores[i] > 0 ? total[i] + scores[i] : 0;
+                }
+            }
+        }
+        PriorityQueue<Scored> top = new PriorityQueue<>(RANK.reversed());
+        for (int i = 0; i < total.length; i++) {
+            if (total[i] == 0 || (i < mainCount && s.masked[i])) {
+                continue;
+            }
+            Scored candidate = new Scored(i < mainCount ? s.employees[i] : s.delta[i - mainCount], total[i]);
+            if (top.size() < limit) {
+                top.add(candidate);
+            } else if (RANK.compare(candidate, top.peek()) < 0) {
+                top.poll();
+                top.add(candidate);
+            }
+        }
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(RANK);
+        List<Employee> result = new ArrayList<>(ranked.size());
+        for (Scored scored : ranked) {
+            result.add(copy(scored.employee));
+        }
+        return result;
+    }
+
+    /**
+     * Orders employees gathered from several shards the same way {@link #search} orders one
+     * shard's results, keeping the best limit.
+     */
+    public static List<Employee> rank(String query, List<Employee> employees, int limit) {
+        String[] tokens = tokens(query);
+        List<Scored> scored = new ArrayList<>();
+        for (Employee employee : employees) {
+            int total = 0;
+            for (String token : tokens) {
+                int score = score(token, employee);
+                if (score == 0) {
+                    total = 0;
+                    break;
+                }
+                total += score;
+            }
+            if (total > 0) {
+                scored.add(new Scored(employee, total));
+            }
+        }
+        scored.sort(RANK);
+        List<Employee> result = new ArrayList<>();
+        for (int i = 0; i < scored.size() && i < limit; i++) {
+            result.add(scored.get(i).employee);
+        }
+        return result;
+    }
+
+    private Employee find(int id) {
+        Snapshot s = snapshot;
+        for (Employee e : s.delta) {
+            if (e.getId() == id) {
+                return e;
+            }
+        }
+        Integer slot = s.slotById.get(id);
+        return slot == null || s.masked[slot] ? null : s.employees[slot];
+    }
+
+    // 旧条目屏蔽，新条目进入增量；增量满了就整体重建
+    private void replace(int id, Employee entry) {
+        Snapshot s = snapshot;
+        boolean[] masked = s.masked;
+        Integer slot = s.slotById.get(id);
+        if (slot != null && !masked[slot]) {
+            masked = masked.clone();
+            masked[slot] = true;
+        }
+        List<Employee> delta = new ArrayList<>(s.delta.length + 1);
+        for (Employee e : s.delta) {
+            if (e.getId() != id) {
+                delta.add(e);
+            }
+        }
+        if (entry != null) {
+            delta.add(entry);
+        }
+        if (delta.size() < DELTA_LIMIT) {
+            snapshot = s.with(masked, delta.toArray(new Employee[0]));
+            return;
+        }
+        List<Employee> all = new ArrayList<>(s.employees.length + delta.size());
+        for (int i = 0; i < s.employees.length; i++) {
+            if (!masked[i]) {
+                all.add(s.employees[i]);
+            }
+        }
+        all.addAll(delta);
+        snapshot = build(all);
+    }
+
+    private static Snapshot build(List<Employee> employees) {
+        Map<String, List<Integer>> slotsByTerm = new HashMap<>();
+        Map<Integer, Integer> slotById = new HashMap<>();
+        for (int slot = 0; slot < employees.size(); slot++) {
+            Employee e = employees.get(slot);
+            slotById.put(e.getId(), slot);
+            for (String term : terms(e)) {
+                slotsByTerm.computeIfAbsent(term, t -> new ArrayList<>()).add(slot);
+            }
+        }
+        String[] terms = slotsByTerm.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[][] postings = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            postings[i] = slotsByTerm.get(terms[i]).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new Snapshot(terms, postings, employees.toArray(new Employee[0]), slotById, new boolean[employees.size()], new Employee[0]);
+    }
+
+    private static void walk(Snapshot s, String token, int[] scores) {
+        int[] row = new int[token.length() + 1];
+        for (int j = 0; j < row.length; j++) {
+            row[j] = j;
+        }
+        descend(s, token, maxEdits(token.length()), 0, s.terms.length, 0, row, null, (char) 0, Integer.MAX_VALUE, scores);
+    }
+
+    /**
+     * Visits terms[lo, hi), which all start with the same depth characters.
+     * @param row Edit distances between that prefix and each prefix of the token
+     * @param best Smallest distance between the whole token and any shorter prefix on this path
+     */
+    private static void descend(Snapshot s, String token, int maxEdits, int lo, int hi, int depth,
+                                int[] row, int[] previousRow, char previousChar, int best, int[] scores) {
+        best = Math.min(best, row[token.length()]);
+        // 距离不会再变小，整个区间按当前距离命中
+        if (best <= maxEdits && min(row) >= best) {
+            report(s, token, lo, hi, best, scores);
+            return;
+        }
+        int i = lo;
+        while (i < hi && s.terms[i].length() == depth) {
+            if (best <= maxEdits) {
+                report(s, token, i, i + 1, best, scores);
+            }
+            i++;
+        }
+        while (i < hi) {
+            char c = s.terms[i].charAt(depth);
+            int end = rangeEnd(s.terms, i, hi, depth, c);
+            int[] next = nextRow(token, row, previousRow, previousChar, c, depth + 1);
+            if (min(next) <= maxEdits) {
+                descend(s, token, maxEdits, i, end, depth + 1, next, row, c, best, scores);
+            } else if (best <= maxEdits) {
+                report(s, token, i, end, best, scores);
+            }
+            i = end;
+        }
+    }
+
+    private static void report(Snapshot s, String token, int lo, int hi, int distance, int[] scores) {
+        for (int i = lo; i < hi; i++) {
+            int score = score(token.length(), s.terms[i].length(), distance);
+            for (int slot : s.postings[i]) {
+                if (score > scores[slot]) {
+                    scores[slot] = score;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return First index in [from, hi) whose character at depth is greater than c
+     */
+    private static int rangeEnd(String[] terms, int from, int hi, int depth, char c) {
+        int lo = from + 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (terms[mid].charAt(depth) <= c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Extends the edit-distance row by one term character (optimal string alignment, so a swap of
+     * neighbouring characters costs one edit).
+     */
+    private static int[] nextRow(String token, int[] row, int[] previousRow, char previousChar, char c, int depth) {
+        int[] next = new int[row.length];
+        next[0] = depth;
+        for (int j = 1; j < next.length; j++) {
+            char q = token.charAt(j - 1);
+            int d = Math.min(row[j] + 1, next[j - 1] + 1);
+            d = Math.min(d, row[j - 1] + (q == c ? 0 : 1));
+            if (previousRow != null && j > 1 && q == previousChar && token.charAt(j - 2) == c) {
+                d = Math.min(d, previousRow[j - 2] + 1);
+            }
+            next[j] = d;
+        }
+        return next;
+    }
+
+    /**
+     * Scores one query word against an employee without the index (delta entries, shard merges).
+     * @return Best score over the employee's terms, or 0 if none matches
+     */
+    private static int score(String token, Employee employee) {
+        int maxEdits = maxEdits(token.length());
+        int best = 0;
+        for (String term : terms(employee)) {
+            int[] previousRow = null;
+            int[] row = new int[token.length() + 1];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = j;
+            }
+            int distance = row[token.length()];
+            for (int i = 0; i < term.length() && min(row) <= maxEdits; i++) {
+                int[] next = nextRow(token, row, previousRow, i == 0 ? 0 : term.charAt(i - 1), term.charAt(i), i + 1);
+                previousRow = row;
+                row = next;
+                distance = Math.min(distance, row[token.length()]);
+            }
+            if (distance <= maxEdits) {
+                best = Math.max(best, score(token.length(), term.length(), distance));
+            }
+        }
+        return best;
+    }
+
+    private static int score(int tokenLength, int termLength, int distance) {
+        if (distance == 0 && tokenLength == termLength) {
+            return 100;
+        }
+        return Math.max(1, 90 - 25 * distance - Math.min(30, Math.max(0, termLength - tokenLength)));
+    }
+
+    private static int maxEdits(int length) {
+        return length >= 8 ? 2 : length >= 4 ? 1 : 0;
+    }
+
+    private static int min(int[] row) {
+        int m = row[0];
+        for (int v : row) {
+            m = Math.min(m, v);
+        }
+        return m;
+    }
+
+    private static Set<String> terms(Employee e) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (e.getUsername() != null) {
+            // 用户名如 jane.doe 也按各部分索引
+            for (String part : e.getUsername().split("[._@]+")) {
+                String term = normalize(part);
+                if (!term.isEmpty()) {
+                    terms.add(term);
+                }
+            }
+        }
+        for (String field : new String[]{e.getUsername(), e.getFirstName(), e.getLastName()}) {
+            if (field != null) {
+                for (String word : field.split("\\s+")) {
+                    String term = normalize(word);
+                    if (!term.isEmpty()) {
+                        terms.add(term);
+                    }
+                }
+            }
+        }
+        if (e.getIcPassport() != null) {
+            String ic = normalize(e.getIcPassport());
+            if (!ic.isEmpty()) {
+                terms.add(ic);
+            }
+        }
+        return terms;
+    }
+
+    private static String[] tokens(String query) {
+        List<String> tokens = new ArrayList<>();
+        if (query != null) {
+            for (String word : query.trim().split("\\s+")) {
+                String token = normalize(word);
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    // 小写，去掉分隔符（身份证号常带 - 或空格）
+    private static String normalize(String word) {
+        StringBuilder sb = new StringBuilder(word.length());
+        for (char c : word.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '@') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Employee entry(int id, Employee e) {
+        Employee entry = copy(e);
+        entry.setId(id);
+        return entry;
+    }
+
+    private static Employee copy(Employee e) {
+        Employee c = new Employee();
+        c.setId(e.getId());
+        c.setUsername(e.getUsername());
+        c.setFirstName(e.getFirstName());
+        c.setLastName(e.getLastName());
+        c.setIcPassport(e.getIcPassport());
+        c.setRole(e.getRole());
+        return c;
+    }
+}
@@ -1,5 +1,7 @@
 package server;
 
+import common.ChangeEvent;
+import common.ChangeSet;
 import common.Employee;
 import common.EmployeeService;
 import java.rmi.RemoteException;
@@ -27,9 +29,9 @@ public class EmployeeServiceImpl extends UnicastRemoteObject implements Employee
         System.out.println("[SERVER] User registration: " + employee.getUsername());
         // 多线程演示：用Thread异步执行插入操作
         final boolean[] result = new boolean[1];
-        Thread t = new Thread(() -> {
+        Thread t = new Thread(Tenant.propagate(() -> {
             result[0] = employeeDAO.insert(employee);
-        });
+        }));
         t.start();
         try {
             t.join(); // 等待线程执行完毕（演示用，实际可用更高级的异步方式）
@@ -38,6 +40,13 @@ public class EmployeeServiceImpl extends UnicastRemoteObject implements Employee
             return false;
         }
         System.out.println("[SERVER] Registration result: " + (result[0] ? "Success" : "Fail"));
+        if (result[0]) {
+            Employee stored = employeeDAO.getByUsername(employee.getUsername());
+            if (stored != null) {
+                EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.EMPLOYEE_REGISTERED, stored.getId(), stored.getId(), null));
+                AuditJournal.record(AuditJournal.Action.EMPLOYEE_REGISTERED, stored.getId(), "username=" + stored.getUsername() + " role=" + stored.getRole());
+            }
+        }
         return result[0];
     }
 
@@ -77,6 +86,10 @@ public class EmployeeServiceImpl extends UnicastRemoteObject implements Employee
         // 这里只做最小实现，假设有 update 方法
         boolean ok = employeeDAO.update(employee);
         System.out.println("[SERVER] Update result: " + (ok ? "Success" : "Fail"));
+        if (ok) {
+            EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.EMPLOYEE_UPDATED, employee.getId(), employee.getId(), null));
+            AuditJournal.record(AuditJournal.Action.EMPLOYEE_UPDATED, employee.getId(), "username=" + employee.getUsername());
+        }
         return ok;
     }
 
@@ -111,6 +124,67 @@ public class EmployeeServiceImpl extends UnicastRemoteObject implements Employee
         System.out.println("[SERVER] Delete employee: " + id);
         boolean ok = employeeDAO.delete(id);
         System.out.println("[SERVER] Delete result: " + (ok ? "Success" : "Fail"));
+        if (ok) {
+            EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.EMPLOYEE_DELETED, id, id, null));
+            AuditJournal.record(AuditJournal.Action.EMPLOYEE_DELETED, id, "");
+        }
         return ok;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Deletes several employees, with their payroll and year-to-date rows, in one transaction.
+     * @param ids Employee IDs; unknown IDs are skipped
+     * @return IDs that were deleted
+     */
+    @Override
+    public java.util.List<Integer> deleteEmployees(java.util.List<Integer> ids) throws RemoteException {
+        validateDeletion(ids);
+        long start = System.nanoTime();
+        java.util.List<Integer> deleted = employeeDAO.deleteAll(new java.util.LinkedHashSet<>(ids));
+        System.out.println("[SERVER] Delete employees: " + deleted.size() + " of " + ids.size() + " deleted in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        for (int id : deleted) {
+            EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.EMPLOYEE_DELETED, id, id, null));
+            AuditJournal.record(AuditJournal.Action.EMPLOYEE_DELETED, id, "");
+        }
+        return deleted;
+    }
+
+    static void validateDeletion(java.util.List<Integer> ids) throws RemoteException {
+        if (ids == null || ids.isEmpty()) throw new RemoteException("No employees selected.");
+        if (ids.contains(null)) throw new RemoteException("Employee ID is required.");
+        if (ids.size() > PayrollServiceImpl.MAX_BATCH_ROWS) throw new RemoteException("At most " + PayrollServiceImpl.MAX_BATCH_ROWS + " employees per call.");
+    }
+
+    /**
+     * Returns employees inserted, updated or deleted after the given version.
+     * @param version Version from the client's previous ChangeSet, or 0 for a full snapshot
+     * @return ChangeSet with the new high-water version
+     */
+    @Override
+    public ChangeSet<Employee> getChangesSince(long version) throws RemoteException {
+        long upTo = ChangeVersion.safeVersion();
+        ChangeSet<Employee> changes = new ChangeSet<>();
+        changes.setVersion(upTo);
+        changes.setUpserts(employeeDAO.getChangedSince(version, upTo));
+        changes.setDeletedIds(EmployeeDAO.getDeletedSince("Employee", version, upTo));
+        System.out.println("[SERVER] Employee changes since " + version + ": " + changes.getUpserts().size() + " upserted, " + changes.getDeletedIds().size() + " deleted");
+        return changes;
+    }
+
+    /**
+     * Searches employees by username, name or IC/passport prefix, tolerating typos.
+     * @param query One or more words; every word must match
+     * @param limit Maximum number of results (capped at {@link EmployeeSearchIndex#MAX_RESULTS})
+     * @return Best matches first, without passwords
+     */
+    @Override
+    public java.util.List<Employee> searchEmployees(String query, int limit) throws RemoteException {
+        if (limit <= 0) {
+            throw new RemoteException("Limit must be positive.");
+        }
+        long start = System.nanoTime();
+        java.util.List<Employee> result = EmployeeSearchIndex.getInstance().search(query, Math.min(limit, EmployeeSearchIndex.MAX_RESULTS));
+        System.out.println("[SERVER] Search employees: \"" + query + "\" -> " + result.size() + " in " + (System.nanoTime() - start) / 1000 + " us");
+        return result;
+    }
+}
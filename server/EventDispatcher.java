@@ -0,0 +1,153 @@
+package server;
+
+import common.ChangeEvent;
+import common.PayrollEventListener;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventDispatcher pushes change events to registered client listeners.
+ * Each listener has its own bounded queue that coalesces events per entity; queues are drained
+ * in batches on a small dispatcher pool, so publishing never blocks the RMI threads doing writes.
+ * A listener that falls behind gets a single RESYNC event instead of the backlog, and a dead
+ * listener is dropped after repeated failures.
+ */
+public class EventDispatcher {
+    private static final EventDispatcher INSTANCE = new EventDispatcher();
+
+    private final int queueCapacity = Integer.getInteger("payroll.events.queue", 1000);
+    private final int maxBatch = Integer.getInteger("payroll.events.batch", 200);
+    private final long lingerMillis = Long.getLong("payroll.events.lingerMs", 50);
+    private final int maxFailures = Integer.getInteger("payroll.events.maxFailures", 3);
+    private final Map<PayrollEventListener, ListenerQueue> listeners = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(Integer.getInteger("payroll.events.threads", 4), r -> {
+        Thread t = new Thread(r, "event-dispatch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private EventDispatcher() {
+    }
+
+    public static EventDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(PayrollEventListener listener) {
+        listeners.computeIfAbsent(listener, ListenerQueue::new);
+        System.out.println("[SERVER] Event listener registered (" + listeners.size() + " active)");
+    }
+
+    public void removeListener(PayrollEventListener listener) {
+        if (listeners.remove(listener) != null) {
+            System.out.println("[SERVER] Event listener removed (" + listeners.size() + " active)");
+        }
+    }
+
+    /**
+     * Queues an event for every listener of the same tenant. Never blocks on the network.
+     * @param event Event to publish
+     */
+    public void publish(ChangeEvent event) {
+        String tenant = Tenant.currentId();
+        for (ListenerQueue queue : listeners.values()) {
+            if (Objects.equals(queue.tenant, tenant)) {
+                queue.offer(event);
+            }
+        }
+    }
+
+    private static String coalesceKey(ChangeEvent event) {
+        switch (event.getType()) {
+            case PAYROLL_CREATED:
+                return "P" + event.getEntityId();
+            default:
+                return "E" + event.getEntityId();
+        }
+    }
+
+    private class ListenerQueue {
+        private final PayrollEventListener listener;
+        // 监听器只接收注册时所在租户的事件
+        private final String tenant = Tenant.currentId();
+        private final LinkedHashMap<String, ChangeEvent> pending = new LinkedHashMap<>();
+        private boolean overflowed;
+        private boolean scheduled;
+        private int failures;
+
+        ListenerQueue(PayrollEventListener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void offer(ChangeEvent event) {
+            if (overflowed) {
+                return;
+            }
+            String key = coalesceKey(event);
+            pending.remove(key);
+            pending.put(key, event);
+            if (pending.size() > queueCapacity) {
+                // 积压过多：丢弃明细，只通知客户端全量重新同步
+                pending.clear();
+                overflowed = true;
+            }
+            if (!scheduled) {
+                scheduled = true;
+                executor.schedule(this::drain, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void drain() {
+            List<ChangeEvent> batch = new ArrayList<>();
+            synchronized (this) {
+                if (overflowed) {
+                    batch.add(new ChangeEvent(ChangeEvent.Type.RESYNC, 0, 0, null));
+                    overflowed = false;
+                } else {
+                    Iterator<ChangeEvent> it = pending.values().iterator();
+                    while (it.hasNext() && batch.size() < maxBatch) {
+                        batch.add(it.next());
+                        it.remove();
+                    }
+                }
+            }
+            try {
+                listener.onEvents(batch);
+                failures = 0;
+            } catch (RemoteException e) {
+                failures++;
+                if (e instanceof NoSuchObjectException || e instanceof ConnectException || failures >= maxFailures) {
+                    System.out.println("[SERVER] Dropping unreachable event listener: " + e.getMessage());
+                    removeListener(listener);
+                    return;
+                }
+                synchronized (this) {
+                    // 本批次已丢失，下次改发RESYNC
+                    pending.clear();
+                    overflowed = true;
+                }
+            }
+            synchronized (this) {
+                if (!listeners.containsKey(listener)) {
+                    return;
+                }
+                if (overflowed || !pending.isEmpty()) {
+                    executor.execute(this::drain);
+                } else {
+                    scheduled = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ExportChannel carries a server-side export to an RMI client in fixed-size chunks.
+ * The producer writes to it as an OutputStream; the client pulls chunks by export ID.
+ * The chunk queue is bounded, so a slow client throttles the producer instead of the
+ * export piling up in memory, and an abandoned export fails after a timeout. An export whose
+ * client stops reading is dropped by a periodic sweep once it has not been read for the same
+ * timeout, even if the producer has already finished.
+ */
+public class ExportChannel extends OutputStream {
+    private static final Map<String, ExportChannel> ACTIVE = new ConcurrentHashMap<>();
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final long STALL_TIMEOUT_SECONDS = Long.getLong("payroll.export.stallTimeoutSeconds", 300);
+    private static final byte[] END = new byte[0];
+
+    static {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "export-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, Math.min(STALL_TIMEOUT_SECONDS, 60));
+        sweeper.scheduleWithFixedDelay(ExportChannel::expireIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    private final String id;
+    // 客户端最后一次读取的时间；正在等待数据的读取不算空闲
+    private volatile long lastTouched = System.currentTimeMillis();
+    private final AtomicInteger readers = new AtomicInteger();
+    private volatile boolean expired;
+    private final BlockingQueue<Object> chunks = new ArrayBlockingQueue<>(Integer.getInteger("payroll.export.queueChunks", 8));
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int count;
+    private long bytesWritten;
+    private boolean closed;
+
+    private ExportChannel(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Opens a new channel and registers it under a fresh export ID.
+     */
+    public static ExportChannel open() {
+        ExportChannel channel = new ExportChannel(UUID.randomUUID().toString());
+        ACTIVE.put(channel.id, channel);
+        return channel;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the next chunk of an export, or null when it is complete.
+     * @param exportId ID returned when the export was started
+     */
+    public static byte[] read(String exportId) throws RemoteException {
+        ExportChannel channel = ACTIVE.get(exportId);
+        if (channel == null) {
+            throw new RemoteException("Unknown or finished export: " + exportId);
+        }
+        Object next;
+        channel.readers.incrementAndGet();
+        try {
+            next = channel.chunks.poll(STALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while reading export " + exportId, e);
+        } finally {
+            channel.lastTouched = System.currentTimeMillis();
+            channel.readers.decrementAndGet();
+        }
+        if (next == null) {
+            ACTIVE.remove(exportId);
+            throw new RemoteException("Export " + exportId + " stalled.");
+        }
+        if (next instanceof Throwable) {
+            ACTIVE.remove(exportId);
+            throw new RemoteException("Export failed: " + ((Throwable) next).getMessage(), (Throwable) next);
+        }
+        if (next == END) {
+            ACTIVE.remove(exportId);
+            return null;
+        }
+        return (byte[]) next;
+    }
+
+    /**
+     * Drops exports that no client has read for the stall timeout, freeing their queued chunks.
+     */
+    private static void expireIdle() {
+        long cutoff = System.currentTimeMillis() - STALL_TIMEOUT_SECONDS * 1000;
+        for (ExportChannel channel : ACTIVE.values()) {
+            if (channel.readers.get() == 0 && channel.lastTouched < cutoff && ACTIVE.remove(channel.id, channel)) {
+                channel.expired = true;
+                channel.chunks.clear();
+                System.out.println("[SERVER] Export " + channel.id + " expired, not read for " + STALL_TIMEOUT_SECONDS + "s");
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void flushChunk() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        byte[] chunk = count == buffer.length ? buffer : java.util.Arrays.copyOf(buffer, count);
+        enqueue(chunk);
+        bytesWritten += count;
+        buffer = new byte[CHUNK_SIZE];
+        count = 0;
+    }
+
+    private void enqueue(Object item) throws IOException {
+        if (expired) {
+            throw new IOException("Export " + id + " abandoned by client.");
+        }
+        try {
+            if (!chunks.offer(item, STALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                ACTIVE.remove(id);
+                throw new IOException("Export " + id + " abandoned by client.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing export " + id, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flushChunk();
+        enqueue(END);
+    }
+
+    /**
+     * Ends the export with an error that the reading client will receive.
+     */
+    public void fail(Throwable error) {
+        closed = true;
+        chunks.clear();
+        chunks.offer(error);
+    }
+}
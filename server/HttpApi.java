@@ -0,0 +1,372 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.Employee;
+import common.EmployeeService;
+import common.MonitoringService;
+import common.PayrollRecord;
+import common.PayrollService;
+import common.PayrollSummary;
+import common.ServerBusyException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HttpApi is a read-only JSON API for dashboards and other tools that cannot speak RMI, served by
+ * the JDK's built-in HTTP server:
+ * <pre>
+ * GET /api/employees                       all employees (streamed; never includes passwords)
+ * GET /api/employees?q=ali&amp;limit=20        employee search
+ * GET /api/payroll                         all payroll records, archived ones included (streamed)
+ * GET /api/payroll?employeeId=7[&amp;from=2026-01&amp;to=2026-06]
+ * GET /api/payroll?period=2026-06
+ * GET /api/summary?groupBy=period&amp;measure=netPay
+ * GET /api/metrics
+ * </pre>
+ * Data responses carry an ETag made from the latest change version, so a poll with If-None-Match
+ * gets 304 without touching the database while nothing has changed. Full listings are written
+ * row by row as they are read (gzip when the client accepts it). Requests pass through the same
+ * admission control as the RMI calls they mirror.
+ * <p>
+ * On JDK 21+ each request runs on a virtual thread; on older JDKs on a pool of
+ * -Dpayroll.http.threads threads. Binds to -Dpayroll.http.bind (default 127.0.0.1); if
+ * -Dpayroll.http.token is set, requests must send "Authorization: Bearer &lt;token&gt;".
+ */
+public class HttpApi {
+    private static final int THREADS = Integer.getInteger("payroll.http.threads", 32);
+    private static final String TOKEN = System.getProperty("payroll.http.token");
+    // 大量看板同时轮询时，连接请求在内核中排队而不是被拒绝重试
+    private static final int BACKLOG = Integer.getInteger("payroll.http.backlog", 1024);
+
+    /** Writes the rows of a response; returns how many, or -1 if reading them failed. */
+    @FunctionalInterface
+    private interface RowSource {
+        int write(Consumer<String> out);
+    }
+
+    private final EmployeeService employeeService;
+    private final PayrollService payrollService;
+    private final MonitoringService monitoringService;
+    private final EmployeeDAO employeeDAO = new EmployeeDAO();
+    private final PayrollDAO payrollDAO = new PayrollDAO();
+
+    private HttpApi(EmployeeService employeeService, PayrollService payrollService, MonitoringService monitoringService) {
+        this.employeeService = employeeService;
+        this.payrollService = payrollService;
+        this.monitoringService = monitoringService;
+    }
+
+    /**
+     * Starts the HTTP server.
+     */
+    public static void start(int port, EmployeeService employeeService, PayrollService payrollService, MonitoringService monitoringService) throws IOException {
+        String bind = System.getProperty("payroll.http.bind", "127.0.0.1");
+        HttpServer server = HttpServer.create(new InetSocketAddress(bind, port), BACKLOG);
+        HttpApi api = new HttpApi(employeeService, payrollService, monitoringService);
+        server.createContext("/api/", api::handle);
+        String executor;
+        try {
+            // JDK 21+ 每个请求一个虚拟线程；JDK 17 上回退到固定线程池
+            server.setExecutor((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+            executor = "virtual threads";
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            server.setExecutor(Executors.newFixedThreadPool(THREADS, r -> {
+                Thread t = new Thread(r, "http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }));
+            executor = THREADS + " threads";
+        }
+        server.start();
+        System.out.println("[SERVER] HTTP API listening on " + bind + ":" + port + " (" + executor + ")");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                error(exchange, 405, "Only GET is supported");
+                return;
+            }
+            if (TOKEN != null && !("Bearer " + TOKEN).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                error(exchange, 401, "Missing or wrong bearer token");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (exchange.getRequestURI().getPath()) {
+                case "/api/employees":
+                    employees(exchange, query);
+                    break;
+                case "/api/payroll":
+                    payroll(exchange, query);
+                    break;
+                case "/api/summary":
+                    summary(exchange, query);
+                    break;
+                case "/api/metrics":
+                    metrics(exchange);
+                    break;
+                default:
+                    error(exchange, 404, "Unknown resource " + exchange.getRequestURI().getPath());
+            }
+        } catch (ServerBusyException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            error(exchange, 503, e.getMessage());
+        } catch (RemoteException | IllegalArgumentException e) {
+            // 服务端的校验错误（如期间格式）原样返回
+            error(exchange, 400, e instanceof RemoteException ? ((RemoteException) e).getMessage() : e.getMessage());
+        } catch (UncheckedIOException e) {
+            // 客户端在流式输出中途断开
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void employees(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long tag = notModified(exchange);
+        if (tag == 0) {
+            return;
+        }
+        if (query.containsKey("q")) {
+            List<Employee> found = employeeService.searchEmployees(query.get("q"), intParam(query, "limit", 20));
+            stream(exchange, tag, out -> {
+                found.forEach(e -> out.accept(employeeJson(e)));
+                return found.size();
+            });
+            return;
+        }
+        streamWithAdmission(exchange, tag, "getAllEmployees", out -> employeeDAO.forEach(e -> out.accept(employeeJson(e))));
+    }
+
+    private void payroll(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long tag = notModified(exchange);
+        if (tag == 0) {
+            return;
+        }
+        List<PayrollRecord> records;
+        if (query.containsKey("employeeId")) {
+            int employeeId = intParam(query, "employeeId", 0);
+            records = query.containsKey("from") || query.containsKey("to")
+                    ? payrollService.getPayrollRecords(employeeId, query.getOrDefault("from", "0000-01"), query.getOrDefault("to", "9999-12"))
+                    : payrollService.getPayrollRecords(employeeId);
+        } else if (query.containsKey("period")) {
+            records = payrollService.getPayrollRecordsForPeriod(query.get("period"));
+        } else {
+            streamWithAdmission(exchange, tag, "getAllPayrollRecords", out -> payrollDAO.forEach(r -> out.accept(payrollJson(r))));
+            return;
+        }
+        stream(exchange, tag, out -> {
+            records.forEach(r -> out.accept(payrollJson(r)));
+            return records.size();
+        });
+    }
+
+    private void summary(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long tag = notModified(exchange);
+        if (tag == 0) {
+            return;
+        }
+        List<PayrollSummary> groups = payrollService.getPayrollSummary(query.getOrDefault("groupBy", "period"), query.getOrDefault("measure", "netPay"));
+        stream(exchange, tag, out -> {
+            for (PayrollSummary g : groups) {
+                out.accept("{\"key\":" + quote(g.getKey()) + ",\"count\":" + g.getCount() + ",\"sum\":" + number(g.getSum())
+                        + ",\"min\":" + number(g.getMin()) + ",\"max\":" + number(g.getMax()) + "}");
+            }
+            return groups.size();
+        });
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        Map<String, Long> metrics = monitoringService.getMetrics();
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Long> metric : metrics.entrySet()) {
+            json.append(json.length() > 1 ? "," : "").append(quote(metric.getKey())).append(':').append(metric.getValue());
+        }
+        byte[] body = json.append("}\n").toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Answers 304 if the client's ETag is current.
+     * @return 0 if the response was sent, -1 if no ETag can be given (a write is in flight),
+     *         otherwise the version to use as ETag
+     */
+    private static long notModified(HttpExchange exchange) throws IOException {
+        long version = ChangeVersion.lastWriteVersion();
+        if (version <= 0) {
+            return -1;
+        }
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag(version)) || ifNoneMatch.trim().equals("*"))) {
+            exchange.getResponseHeaders().set("ETag", etag(version));
+            exchange.sendResponseHeaders(304, -1);
+            return 0;
+        }
+        return version;
+    }
+
+    private static String etag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Writes the rows as a JSON array while they are produced. If reading fails midway the array
+     * is left unterminated, so the client sees invalid JSON rather than a silently short list.
+     */
+    private static void stream(HttpExchange exchange, long tag, RowSource rows) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (tag > 0) {
+            exchange.getResponseHeaders().set("ETag", etag(tag));
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        }
+        boolean gzip = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        // 长度0表示分块传输，边查询边输出
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192) : exchange.getResponseBody();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 16 * 1024)) {
+            out.write('[');
+            boolean[] first = {true};
+            int count = rows.write(row -> {
+                try {
+                    if (!first[0]) {
+                        out.write(',');
+                    }
+                    first[0] = false;
+                    out.write('\n');
+                    out.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (count < 0) {
+                System.err.println("[SERVER] HTTP " + exchange.getRequestURI() + " failed while streaming");
+                return;
+            }
+            out.write("\n]\n");
+        }
+    }
+
+    /** Streams a database listing, holding an admission slot of the matching RMI call's class. */
+    private static void streamWithAdmission(HttpExchange exchange, long tag, String rmiMethod, RowSource rows) throws IOException {
+        AdmissionControl.CallClass callClass = AdmissionControl.classify(rmiMethod);
+        AdmissionControl.enter(callClass, rmiMethod);
+        try {
+            stream(exchange, tag, rows);
+        } finally {
+            AdmissionControl.exit(callClass);
+        }
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = ("{\"error\":" + quote(message) + "}\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static String employeeJson(Employee e) {
+        return "{\"id\":" + e.getId() + ",\"username\":" + quote(e.getUsername()) + ",\"firstName\":" + quote(e.getFirstName())
+                + ",\"lastName\":" + quote(e.getLastName()) + ",\"icPassport\":" + quote(e.getIcPassport()) + ",\"role\":" + quote(e.getRole()) + "}";
+    }
+
+    private static String payrollJson(PayrollRecord r) {
+        return "{\"id\":" + r.getId() + ",\"employeeId\":" + r.getEmployeeId() + ",\"period\":" + quote(r.getPeriod())
+                + ",\"baseSalary\":" + number(r.getBaseSalary()) + ",\"overtimeHours\":" + number(r.getOvertimeHours())
+                + ",\"overtimeRate\":" + number(r.getOvertimeRate()) + ",\"bonus\":" + number(r.getBonus())
+                + ",\"allowance\":" + number(r.getAllowance()) + ",\"grossPay\":" + number(r.getGrossPay())
+                + ",\"deductions\":" + number(r.getDeductions()) + ",\"netPay\":" + number(r.getNetPay()) + "}";
+    }
+
+    // JSON 不支持 NaN/Infinity
+    private static String number(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "null";
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+}
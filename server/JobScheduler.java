@@ -0,0 +1,437 @@
+package server;
+
+import common.ChangeEvent;
+import common.JobRun;
+import common.JobStatus;
+import common.PayrollRecord;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobScheduler runs payroll, payslip export, archival and backup jobs on cron schedules.
+ * Job definitions and their last outcome live in the ScheduledJob table, every execution is
+ * recorded in JobRun, so schedules survive restarts and history can be read over RMI.
+ * <p>
+ * A ticker checks for due jobs and hands them to a small worker pool. A job never runs twice
+ * at the same time; a failed run is retried with exponential backoff before the job falls back
+ * to its normal schedule.
+ */
+public class JobScheduler {
+    private static final JobScheduler INSTANCE = new JobScheduler();
+
+    public enum JobType { PAYROLL_RUN, PAYSLIP_EXPORT, ARCHIVE, BACKUP }
+
+    private final long tickSeconds = Long.getLong("payroll.scheduler.tickSeconds", 30);
+    private final int maxRetries = Integer.getInteger("payroll.scheduler.maxRetries", 3);
+    private final long retryBaseSeconds = Long.getLong("payroll.scheduler.retryBaseSeconds", 60);
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "job-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService workers = Executors.newFixedThreadPool(Integer.getInteger("payroll.scheduler.threads", 2), r -> {
+        Thread t = new Thread(r, "job-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private JobScheduler() {
+    }
+
+    public static JobScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Marks runs cut short by the previous shutdown and starts checking for due jobs.
+     */
+    public void start() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE ScheduledJob SET lastStatus = 'INTERRUPTED' WHERE lastStatus = 'RUNNING'")) {
+            stmt.executeUpdate();
+        }
+        ticker.scheduleWithFixedDelay(this::tick, 0, tickSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates or replaces a job. Its first run is at the next time matching the schedule.
+     * @param parameters "key=value" pairs separated by ';', e.g. "period=previous;format=html"
+     * @throws IllegalArgumentException if the type or schedule is invalid
+     */
+    public void schedule(String name, JobType type, String cron, String parameters) throws SQLException {
+        CronSchedule schedule = CronSchedule.parse(cron);
+        String sql = "MERGE INTO ScheduledJob (name, jobType, schedule, parameters, enabled, nextRunAt, attempts) KEY (name) VALUES (?, ?, ?, ?, TRUE, ?, 0)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            stmt.setString(2, type.name());
+            stmt.setString(3, schedule.toString());
+            stmt.setString(4, parameters);
+            stmt.setTimestamp(5, Timestamp.valueOf(schedule.next(LocalDateTime.now())));
+            stmt.executeUpdate();
+        }
+        System.out.println("[SERVER] Scheduled job " + name + " (" + type + ") at '" + cron + "'");
+    }
+
+    /**
+     * Keeps a job defined by startup properties in line with them: creates it due immediately,
+     * or updates its type, schedule and parameters and re-enables it when any of them changed.
+     * Run state and history are kept; a changed schedule takes effect from now.
+     */
+    public void ensureJob(String name, JobType type, String cron, String parameters) throws SQLException {
+        CronSchedule schedule = CronSchedule.parse(cron);
+        Timestamp next = Timestamp.valueOf(schedule.next(LocalDateTime.now()));
+        String update = "UPDATE ScheduledJob SET jobType = ?, parameters = ?, enabled = TRUE, "
+                + "nextRunAt = CASE WHEN schedule = ? THEN nextRunAt ELSE ? END, schedule = ? "
+                + "WHERE name = ? AND (jobType <> ? OR schedule <> ? OR parameters IS DISTINCT FROM ? OR NOT enabled)";
+        String insert = "INSERT INTO ScheduledJob (name, jobType, schedule, parameters, enabled, nextRunAt, attempts) "
+                + "SELECT ?, ?, ?, ?, TRUE, CURRENT_TIMESTAMP, 0 WHERE NOT EXISTS (SELECT 1 FROM ScheduledJob WHERE name = ?)";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(update)) {
+                stmt.setString(1, type.name());
+                stmt.setString(2, parameters);
+                stmt.setString(3, schedule.toString());
+                stmt.setTimestamp(4, next);
+                stmt.setString(5, schedule.toString());
+                stmt.setString(6, name);
+                stmt.setString(7, type.name());
+                stmt.setString(8, schedule.toString());
+                stmt.setString(9, parameters);
+                if (stmt.executeUpdate() > 0) {
+                    System.out.println("[SERVER] Updated job " + name + " (" + type + ") to '" + cron + "' with " + parameters);
+                    return;
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+                stmt.setString(1, name);
+                stmt.setString(2, type.name());
+                stmt.setString(3, schedule.toString());
+                stmt.setString(4, parameters);
+                stmt.setString(5, name);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Stops a job from running on its schedule, keeping its definition and history.
+     * @return false if there is no such enabled job
+     */
+    public boolean disable(String name) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE ScheduledJob SET enabled = FALSE WHERE name = ? AND enabled")) {
+            stmt.setString(1, name);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        System.out.println("[SERVER] Disabled job " + name);
+        return true;
+    }
+
+    public boolean remove(String name) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM ScheduledJob WHERE name = ?")) {
+            stmt.setString(1, name);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Starts a job now, outside its schedule.
+     * @return false if the job is already running
+     */
+    public boolean trigger(String name) {
+        if (!running.add(name)) {
+            return false;
+        }
+        workers.submit(() -> {
+            try {
+                execute(name);
+            } finally {
+                running.remove(name);
+            }
+        });
+        return true;
+    }
+
+    public List<JobStatus> getJobs() throws SQLException {
+        List<JobStatus> jobs = new ArrayList<>();
+        String sql = "SELECT name, jobType, schedule, parameters, enabled, nextRunAt, lastStartedAt, lastDurationMs, lastStatus, lastError, attempts FROM ScheduledJob ORDER BY name";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                JobStatus job = new JobStatus();
+                job.setName(rs.getString(1));
+                job.setType(rs.getString(2));
+                job.setSchedule(rs.getString(3));
+                job.setParameters(rs.getString(4));
+                job.setEnabled(rs.getBoolean(5));
+                job.setNextRunAt(millis(rs.getTimestamp(6)));
+                job.setLastStartedAt(millis(rs.getTimestamp(7)));
+                job.setLastDurationMs(rs.getLong(8));
+                job.setLastStatus(rs.getString(9));
+                job.setLastError(rs.getString(10));
+                job.setAttempts(rs.getInt(11));
+                job.setRunning(running.contains(job.getName()));
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * @return The job's most recent runs, newest first
+     */
+    public List<JobRun> getRuns(String name, int limit) throws SQLException {
+        List<JobRun> runs = new ArrayList<>();
+        String sql = "SELECT jobName, startedAt, durationMs, status, attempt, message FROM JobRun WHERE jobName = ? ORDER BY id DESC LIMIT ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                JobRun run = new JobRun();
+                run.setJobName(rs.getString(1));
+                run.setStartedAt(millis(rs.getTimestamp(2)));
+                run.setDurationMs(rs.getLong(3));
+                run.setStatus(rs.getString(4));
+                run.setAttempt(rs.getInt(5));
+                run.setMessage(rs.getString(6));
+                runs.add(run);
+            }
+        }
+        return runs;
+    }
+
+    private void tick() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT name FROM ScheduledJob WHERE enabled AND nextRunAt <= CURRENT_TIMESTAMP")) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                trigger(rs.getString(1));
+            }
+        } catch (Exception e) {
+            // 定时线程不能因异常退出
+            e.printStackTrace();
+        }
+    }
+
+    private void execute(String name) {
+        JobType type;
+        CronSchedule schedule;
+        String parameters;
+        int attempt;
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT jobType, schedule, parameters, attempts FROM ScheduledJob WHERE name = ?")) {
+            stmt.setString(1, name);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return;
+            }
+            type = JobType.valueOf(rs.getString(1));
+            schedule = CronSchedule.parse(rs.getString(2));
+            parameters = rs.getString(3);
+            attempt = rs.getInt(4) + 1;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        String status;
+        String message;
+        LocalDateTime nextRunAt;
+        int attempts;
+        try {
+            update(name, "UPDATE ScheduledJob SET lastStatus = 'RUNNING', lastStartedAt = ?, lastError = NULL WHERE name = ?", Timestamp.valueOf(startedAt));
+            System.out.println("[SERVER] Job " + name + " started (" + type + ", attempt " + attempt + ")");
+            message = run(type, parseParameters(parameters));
+            status = "SUCCEEDED";
+            attempts = 0;
+            nextRunAt = schedule.next(LocalDateTime.now());
+        } catch (Exception e) {
+            e.printStackTrace();
+            message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (attempt <= maxRetries) {
+                // 指数退避：1、2、4 倍基础间隔
+                status = "RETRYING";
+                attempts = attempt;
+                nextRunAt = LocalDateTime.now().plusSeconds(retryBaseSeconds << (attempt - 1));
+            } else {
+                status = "FAILED";
+                attempts = 0;
+                nextRunAt = schedule.next(LocalDateTime.now());
+            }
+        }
+        long duration = System.currentTimeMillis() - start;
+        System.out.println("[SERVER] Job " + name + " " + status + " in " + duration + " ms: " + message);
+        String error = "SUCCEEDED".equals(status) ? null : truncate(message);
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE ScheduledJob SET lastStatus = ?, lastDurationMs = ?, lastError = ?, attempts = ?, nextRunAt = ? WHERE name = ?")) {
+                stmt.setString(1, status);
+                stmt.setLong(2, duration);
+                stmt.setString(3, error);
+                stmt.setInt(4, attempts);
+                stmt.setTimestamp(5, Timestamp.valueOf(nextRunAt));
+                stmt.setString(6, name);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO JobRun (jobName, startedAt, durationMs, status, attempt, message) VALUES (?, ?, ?, ?, ?, ?)")) {
+                stmt.setString(1, name);
+                stmt.setTimestamp(2, Timestamp.valueOf(startedAt));
+                stmt.setLong(3, duration);
+                stmt.setString(4, status);
+                stmt.setInt(5, attempt);
+                stmt.setString(6, truncate(message));
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs one job.
+     * @return Summary message for the run history
+     */
+    private String run(JobType type, Map<String, String> params) throws Exception {
+        switch (type) {
+            case PAYROLL_RUN:
+                return runPayroll(resolvePeriod(params.getOrDefault("period", "current")));
+            case PAYSLIP_EXPORT:
+                return exportPayslips(resolvePeriod(params.getOrDefault("period", "previous")),
+                        params.getOrDefault("format", "html"), params.getOrDefault("dir", "exports"));
+            case ARCHIVE:
+                int horizonMonths = Integer.parseInt(params.getOrDefault("horizonMonths", "24"));
+                return new PayrollArchiver().archiveOlderThan(horizonMonths) + " rows archived";
+            case BACKUP:
+                return PayrollBackup.backup(new File(params.getOrDefault("dir", "backups")),
+                        Integer.parseInt(params.getOrDefault("fullEvery", "7")));
+            default:
+                throw new IllegalArgumentException("Unknown job type: " + type);
+        }
+    }
+
+    /**
+     * Creates the period's payroll for every employee from the inputs of their latest record.
+     * Employees who already have a record for the period (or a later one) are skipped, so a
+     * retried or repeated run does not create duplicates.
+     */
+    private static String runPayroll(String period) {
+        PayrollDAO payrollDAO = new PayrollDAO();
+        int created = 0;
+        int failed = 0;
+        for (PayrollRecord latest : payrollDAO.getLatestPerEmployee()) {
+            if (latest.getPeriod().compareTo(period) >= 0) {
+                continue;
+            }
+            PayrollRecord record = PayrollCalculator.hasComponents(latest)
+                    ? PayrollCalculator.calculate(latest.getEmployeeId(), period, latest.getBaseSalary(), latest.getOvertimeHours(),
+                            latest.getOvertimeRate(), latest.getBonus(), latest.getAllowance(), PayrollCalculator.DEDUCTION_RATE)
+                    : PayrollCalculator.fromGross(latest.getEmployeeId(), period, latest.getGrossPay(), PayrollCalculator.DEDUCTION_RATE);
+            if (payrollDAO.insert(record)) {
+                EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.PAYROLL_CREATED, record.getId(), record.getEmployeeId(), period));
+                AuditJournal.record(AuditJournal.Action.PAYROLL_CREATED, record.getId(), PayrollServiceImpl.auditDetail(record));
+                created++;
+            } else {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " payroll inserts failed for " + period + " (" + created + " created)");
+        }
+        return created + " payroll records created for " + period;
+    }
+
+    /**
+     * Writes the period's payslips to dir/payslips-period.zip, via a temporary file so a
+     * failed run never leaves a truncated archive behind.
+     */
+    private static String exportPayslips(String period, String format, String dir) throws Exception {
+        File folder = new File(dir);
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IllegalStateException("Cannot create export directory " + folder.getAbsolutePath());
+        }
+        File target = new File(folder, "payslips-" + period + ".zip");
+        File temp = new File(folder, target.getName() + ".tmp");
+        int count;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            count = new PayslipExporter(PayslipTemplate.forFormat(format)).export(period, out);
+        } catch (Exception e) {
+            temp.delete();
+            throw e;
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return count + " payslips written to " + target.getPath();
+    }
+
+    /**
+     * Accepts "current", "previous" or a literal "yyyy-MM".
+     */
+    static String resolvePeriod(String spec) {
+        if ("current".equalsIgnoreCase(spec)) {
+            return YearMonth.now().toString();
+        }
+        if ("previous".equalsIgnoreCase(spec)) {
+            return YearMonth.now().minusMonths(1).toString();
+        }
+        return YearMonth.parse(spec).toString();
+    }
+
+    static Map<String, String> parseParameters(String parameters) {
+        Map<String, String> map = new HashMap<>();
+        if (parameters == null) {
+            return map;
+        }
+        for (String pair : parameters.split(";")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                map.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+            }
+        }
+        return map;
+    }
+
+    private static void update(String name, String sql, Timestamp time) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, time);
+            stmt.setString(2, name);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static long millis(Timestamp ts) {
+        return ts == null ? 0 : ts.getTime();
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+}
@@ -0,0 +1,33 @@
+package server;
+
+import common.MonitoringService;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MonitoringServiceImpl exposes server counters (admission control, tenants, JVM) over RMI.
+ */
+public class MonitoringServiceImpl extends UnicastRemoteObject implements MonitoringService {
+
+    public MonitoringServiceImpl() throws RemoteException {
+        super();
+    }
+
+    /**
+     * Returns a snapshot of all server metrics, sorted by name.
+     * @return Map of metric name to value
+     */
+    @Override
+    public Map<String, Long> getMetrics() throws RemoteException {
+        Map<String, Long> metrics = new TreeMap<>();
+        AdmissionControl.collectMetrics(metrics);
+        TenantManager.collectMetrics(metrics);
+        Runtime rt = Runtime.getRuntime();
+        metrics.put("jvm.heap.used", rt.totalMemory() - rt.freeMemory());
+        metrics.put("jvm.heap.max", rt.maxMemory());
+        metrics.put("jvm.threads", (long) Thread.activeCount());
+        return metrics;
+    }
+}
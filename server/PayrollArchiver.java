@@ -0,0 +1,103 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+
+/**
+ * PayrollArchiver moves closed payroll periods out of the hot Payroll table into PayrollArchive.
+ * Periods are "yyyy-MM" strings, so everything strictly before the cutoff is archived in one
+ * transaction and the cutoff is remembered in ArchiveState. Readers consult {@link #includesArchive}
+ * to decide whether a query's period range needs the archive at all.
+ */
+public class PayrollArchiver {
+    private static volatile String cutoffPeriod;
+
+    /**
+     * Loads the last archive cutoff (called once at startup after the schema exists).
+     */
+    public static void init() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT cutoffPeriod FROM ArchiveState WHERE id = 1")) {
+            setCutoff(rs.next() ? rs.getString(1) : null);
+        }
+    }
+
+    /**
+     * @return Periods strictly before this one live in PayrollArchive, or null if nothing was archived
+     */
+    public static String getCutoffPeriod() {
+        Tenant tenant = Tenant.current();
+        return tenant != null ? tenant.archiveCutoff : cutoffPeriod;
+    }
+
+    // 多租户时每个租户库有自己的归档截止期间
+    private static void setCutoff(String period) {
+        Tenant tenant = Tenant.current();
+        if (tenant != null) {
+            tenant.archiveCutoff = period;
+        } else {
+            cutoffPeriod = period;
+        }
+    }
+
+    public static boolean hasArchive() {
+        return getCutoffPeriod() != null;
+    }
+
+    /**
+     * Tells whether a query starting at fromPeriod has to read archived rows.
+     * @param fromPeriod First period of the query range, or null for an open range
+     */
+    public static boolean includesArchive(String fromPeriod) {
+        String cutoff = getCutoffPeriod();
+        return cutoff != null && (fromPeriod == null || fromPeriod.compareTo(cutoff) < 0);
+    }
+
+    /**
+     * Archives every period older than the given number of months.
+     * @param horizonMonths Number of recent months to keep in the hot table
+     * @return Number of rows moved
+     */
+    public int archiveOlderThan(int horizonMonths) throws SQLException {
+        return archiveBefore(YearMonth.now().minusMonths(horizonMonths).toString());
+    }
+
+    /**
+     * Moves all rows with period &lt; cutoff into PayrollArchive in a single transaction.
+     * Rows keep their id and version, so delta-sync clients see no change.
+     * @param cutoff First period that stays hot ("yyyy-MM")
+     * @return Number of rows moved
+     */
+    public synchronized int archiveBefore(String cutoff) throws SQLException {
+        // 删除与复制在同一条语句中完成：两条语句之间提交的插入或重算不会被删掉而未归档
+        String move = "INSERT INTO PayrollArchive (" + PayrollDAO.COLUMNS + ") SELECT " + PayrollDAO.COLUMNS
+                + " FROM OLD TABLE (DELETE FROM Payroll WHERE period < ?)";
+        String state = "MERGE INTO ArchiveState (id, cutoffPeriod) KEY (id) VALUES (1, ?)";
+        String previous = getCutoffPeriod();
+        String newCutoff = previous != null && previous.compareTo(cutoff) > 0 ? previous : cutoff;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            // 先公布新的截止期间：移动期间及提交后读者都会同时查询归档表，不会漏掉刚移动的行
+            setCutoff(newCutoff);
+            try (PreparedStatement moveStmt = conn.prepareStatement(move);
+                 PreparedStatement stateStmt = conn.prepareStatement(state)) {
+                moveStmt.setString(1, cutoff);
+                int moved = moveStmt.executeUpdate();
+                stateStmt.setString(1, newCutoff);
+                stateStmt.executeUpdate();
+                conn.commit();
+                System.out.println("[SERVER] Archived " + moved + " payroll rows before " + cutoff);
+                return moved;
+            } catch (SQLException e) {
+                conn.rollback();
+                setCutoff(previous);
+                throw e;
+            }
+        }
+    }
+}
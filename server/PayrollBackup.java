@@ -0,0 +1,357 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PayrollBackup takes online backups of the server's database into a backup directory.
+ * <p>
+ * A full backup is H2's {@code BACKUP TO}: a consistent copy of the database file, taken while
+ * writers keep running. An incremental backup holds only the Employee, Payroll, PayrollArchive
+ * and DeletedRow rows whose change version is above the previous backup's, read in one SNAPSHOT
+ * transaction, plus the small state tables in full. Derived data (PayrollYtd) is rebuilt on
+ * restore. {@code backup-manifest.txt} lists the chain; {@link RestoreTool} replays it.
+ */
+public class PayrollBackup {
+    static final String MANIFEST = "backup-manifest.txt";
+    private static final int MAGIC = 0x50494E31; // "PIN1"
+    private static final int BATCH_SIZE = 1000;
+
+    /** A table captured by an incremental backup, with the columns identifying a row. */
+    private static final class TableSpec {
+        final String name;
+        final String key;
+        final boolean versioned;
+
+        TableSpec(String name, String key, boolean versioned) {
+            this.name = name;
+            this.key = key;
+            this.versioned = versioned;
+        }
+    }
+
+    // 顺序即恢复顺序：Employee 必须在 Payroll 之前（外键）
+    private static final TableSpec[] TABLES = {
+        new TableSpec("Employee", "id", true),
+        new TableSpec("Payroll", "id", true),
+        new TableSpec("PayrollArchive", "id", true),
+        new TableSpec("DeletedRow", "tableName, rowId, version", true),
+        new TableSpec("ArchiveState", "id", false),
+        new TableSpec("ScheduledJob", "name", false),
+        new TableSpec("RecalcJob", "id", false),
+    };
+
+    /** One line of the manifest. */
+    static final class Entry {
+        final int sequence;
+        final boolean full;
+        final String file;
+        final long fromVersion;
+        final long toVersion;
+        final long createdAt;
+        final long bytes;
+
+        Entry(int sequence, boolean full, String file, long fromVersion, long toVersion, long createdAt, long bytes) {
+            this.sequence = sequence;
+            this.full = full;
+            this.file = file;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.createdAt = createdAt;
+            this.bytes = bytes;
+        }
+
+        static Entry parse(String line) {
+            String[] f = line.split("\\|");
+            return new Entry(Integer.parseInt(f[0]), "full".equals(f[1]), f[2], Long.parseLong(f[3]), Long.parseLong(f[4]), Long.parseLong(f[5]), Long.parseLong(f[6]));
+        }
+
+        String format() {
+            return sequence + "|" + (full ? "full" : "incr") + "|" + file + "|" + fromVersion + "|" + toVersion + "|" + createdAt + "|" + bytes;
+        }
+    }
+
+    private PayrollBackup() {
+    }
+
+    /**
+     * Takes the next backup in dir: a full backup if there is none yet or fullEvery backups have
+     * been incremental since the last full one, otherwise an incremental backup.
+     * @param fullEvery Take a full backup after this many incrementals (1 = always full)
+     * @return Summary message for the job history
+     */
+    public static synchronized String backup(File dir, int fullEvery) throws SQLException, IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create backup directory " + dir.getAbsolutePath());
+        }
+        List<Entry> chain = readManifest(dir);
+        int sinceFull = 0;
+        for (int i = chain.size() - 1; i >= 0 && !chain.get(i).full; i--) {
+            sinceFull++;
+        }
+        boolean full = chain.isEmpty() || sinceFull + 1 >= fullEvery;
+        int sequence = chain.isEmpty() ? 1 : chain.get(chain.size() - 1).sequence + 1;
+        long fromVersion = full ? 0 : chain.get(chain.size() - 1).toVersion;
+        // 版本上限在读取之前确定：此后提交的行会再次出现在下一个增量中，恢复时按主键合并
+        long toVersion = ChangeVersion.safeVersion();
+        long start = System.currentTimeMillis();
+        String name = String.format("%05d-%s", sequence, full ? "full.zip" : "incr.gz");
+        File target = new File(dir, name);
+        File temp = new File(dir, name + ".tmp");
+        long rows = 0;
+        try {
+            if (full) {
+                try (Connection conn = DatabaseConnection.getConnection();
+                     Statement stmt = conn.createStatement()) {
+                    stmt.execute("BACKUP TO '" + temp.getAbsolutePath().replace("'", "''") + "'");
+                }
+            } else {
+                rows = writeIncrement(temp, fromVersion, toVersion);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (SQLException | IOException e) {
+            temp.delete();
+            throw e;
+        }
+        Entry entry = new Entry(sequence, full, name, fromVersion, toVersion, start, target.length());
+        // 清单最后追加，未写入清单的备份文件不会被恢复工具使用
+        Files.write(new File(dir, MANIFEST).toPath(), (entry.format() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        long ms = System.currentTimeMillis() - start;
+        String summary = (full ? "Full" : "Incremental") + " backup " + name + ": " + (full ? "" : rows + " rows, ") + target.length() / 1024 + " KB in " + ms + " ms";
+        System.out.println("[SERVER] " + summary);
+        return summary;
+    }
+
+    static List<Entry> readManifest(File dir) throws IOException {
+        File manifest = new File(dir, MANIFEST);
+        List<Entry> entries = new ArrayList<>();
+        if (!manifest.exists()) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                entries.add(Entry.parse(line.trim()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the changed rows of every captured table, read from one consistent snapshot.
+     * @return Number of rows written
+     */
+    private static long writeIncrement(File file, long fromVersion, long toVersion) throws SQLException, IOException {
+        long rows = 0;
+        try (Connection conn = DatabaseConnection.getConnection();
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), 1 << 16)))) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL SNAPSHOT");
+            }
+            conn.setAutoCommit(false);
+            out.writeInt(MAGIC);
+            out.writeLong(fromVersion);
+            out.writeLong(toVersion);
+            for (TableSpec table : TABLES) {
+                String sql = "SELECT * FROM " + table.name + (table.versioned ? " WHERE version > ?" : "");
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    if (table.versioned) {
+                        stmt.setLong(1, fromVersion);
+                    }
+                    stmt.setFetchSize(Integer.getInteger("payroll.jdbc.fetchSize", 1000));
+                    rows += writeTable(out, table, stmt.executeQuery());
+                }
+            }
+            out.writeUTF("");
+            conn.commit();
+        }
+        return rows;
+    }
+
+    private static long writeTable(DataOutputStream out, TableSpec table, ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        char[] types = new char[columns];
+        out.writeUTF(table.name);
+        out.writeUTF(table.key);
+        out.writeShort(columns);
+        for (int c = 0; c < columns; c++) {
+            types[c] = typeOf(meta.getColumnType(c + 1));
+            out.writeUTF(meta.getColumnName(c + 1));
+            out.writeByte(types[c]);
+        }
+        long rows = 0;
+        while (rs.next()) {
+            out.writeBoolean(true);
+            for (int c = 0; c < columns; c++) {
+                writeValue(out, types[c], rs, c + 1);
+            }
+            rows++;
+        }
+        out.writeBoolean(false);
+        return rows;
+    }
+
+    /**
+     * Merges every row of an increment into the database in one transaction.
+     * @return Number of rows applied
+     */
+    static long applyIncrement(File file, Connection conn) throws SQLException, IOException {
+        long rows = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an incremental backup: " + file);
+            }
+            in.readLong();
+            in.readLong();
+            conn.setAutoCommit(false);
+            try {
+                for (String table = in.readUTF(); !table.isEmpty(); table = in.readUTF()) {
+                    rows += applyTable(in, table, conn);
+                }
+                conn.commit();
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return rows;
+    }
+
+    private static long applyTable(DataInputStream in, String table, Connection conn) throws SQLException, IOException {
+        String key = in.readUTF();
+        int columns = in.readShort();
+        char[] types = new char[columns];
+        StringBuilder names = new StringBuilder();
+        StringBuilder params = new StringBuilder();
+        for (int c = 0; c < columns; c++) {
+            names.append(c == 0 ? "" : ", ").append(in.readUTF());
+            params.append(c == 0 ? "?" : ", ?");
+            types[c] = (char) in.readByte();
+        }
+        String sql = "MERGE INTO " + table + " (" + names + ") KEY (" + key + ") VALUES (" + params + ")";
+        long rows = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            while (in.readBoolean()) {
+                for (int c = 0; c < columns; c++) {
+                    readValue(in, types[c], stmt, c + 1);
+                }
+                stmt.addBatch();
+                if (++rows % BATCH_SIZE == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        return rows;
+    }
+
+    private static char typeOf(int sqlType) {
+        switch (sqlType) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return 'I';
+            case Types.BIGINT:
+                return 'J';
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+                return 'D';
+            case Types.BOOLEAN:
+                return 'Z';
+            case Types.TIMESTAMP:
+                return 'T';
+            default:
+                return 'S';
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, char type, ResultSet rs, int column) throws SQLException, IOException {
+        switch (type) {
+            case 'I': {
+                int v = rs.getInt(column);
+                out.writeBoolean(!rs.wasNull());
+                if (!rs.wasNull()) out.writeInt(v);
+                break;
+            }
+            case 'J': {
+                long v = rs.getLong(column);
+                out.writeBoolean(!rs.wasNull());
+                if (!rs.wasNull()) out.writeLong(v);
+                break;
+            }
+            case 'D': {
+                double v = rs.getDouble(column);
+                out.writeBoolean(!rs.wasNull());
+                if (!rs.wasNull()) out.writeDouble(v);
+                break;
+            }
+            case 'Z': {
+                boolean v = rs.getBoolean(column);
+                out.writeBoolean(!rs.wasNull());
+                if (!rs.wasNull()) out.writeBoolean(v);
+                break;
+            }
+            case 'T': {
+                Timestamp v = rs.getTimestamp(column);
+                out.writeBoolean(v != null);
+                if (v != null) out.writeLong(v.getTime());
+                break;
+            }
+            default: {
+                String v = rs.getString(column);
+                out.writeBoolean(v != null);
+                if (v != null) out.writeUTF(v);
+            }
+        }
+    }
+
+    private static void readValue(DataInputStream in, char type, PreparedStatement stmt, int column) throws SQLException, IOException {
+        if (!in.readBoolean()) {
+            stmt.setObject(column, null);
+            return;
+        }
+        switch (type) {
+            case 'I':
+                stmt.setInt(column, in.readInt());
+                break;
+            case 'J':
+                stmt.setLong(column, in.readLong());
+                break;
+            case 'D':
+                stmt.setDouble(column, in.readDouble());
+                break;
+            case 'Z':
+                stmt.setBoolean(column, in.readBoolean());
+                break;
+            case 'T':
+                stmt.setTimestamp(column, new Timestamp(in.readLong()));
+                break;
+            default:
+                stmt.setString(column, in.readUTF());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package server;
+
+import common.PayrollRecord;
+
+/**
+ * PayrollCalculator holds the payroll formula shared by live calculation and simulation.
+ * It only computes; validation and persistence stay with the callers.
+ */
+public final class PayrollCalculator {
+    // 扣款比例（公积金等），总工资的11%
+    public static final double DEDUCTION_RATE = 0.11;
+
+    private PayrollCalculator() {
+    }
+
+    /**
+     * Builds a record from pay components: gross = base + overtime hours * rate + bonus + allowance.
+     * @param deductionRate Fraction of gross pay deducted
+     */
+    public static PayrollRecord calculate(int employeeId, String period, double baseSalary, double overtimeHours,
+                                          double overtimeRate, double bonus, double allowance, double deductionRate) {
+        double overtimePay = overtimeHours * overtimeRate;
+        double grossPay = baseSalary + overtimePay + bonus + allowance;
+        PayrollRecord record = fromGross(employeeId, period, grossPay, deductionRate);
+        record.setBaseSalary(baseSalary);
+        record.setOvertimeHours(overtimeHours);
+        record.setOvertimeRate(overtimeRate);
+        record.setBonus(bonus);
+        record.setAllowance(allowance);
+        return record;
+    }
+
+    /**
+     * @return true if the record was entered from pay components, false for a lump-sum gross pay
+     */
+    public static boolean hasComponents(PayrollRecord r) {
+        return r.getBaseSalary() != 0 || r.getOvertimeHours() != 0 || r.getBonus() != 0 || r.getAllowance() != 0;
+    }
+
+    /**
+     * Builds a record from a lump-sum gross pay.
+     * @param deductionRate Fraction of gross pay deducted
+     */
+    public static PayrollRecord fromGross(int employeeId, String period, double grossPay, double deductionRate) {
+        double deductions = grossPay * deductionRate;
+        PayrollRecord record = new PayrollRecord();
+        record.setEmployeeId(employeeId);
+        record.setPeriod(period);
+        record.setGrossPay(grossPay);
+        record.setDeductions(deductions);
+        record.setNetPay(grossPay - deductions);
+        return record;
+    }
+}
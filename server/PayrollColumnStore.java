@@ -0,0 +1,463 @@
+package server;
+
+import common.Employee;
+import common.PayrollDistribution;
+import common.PayrollRecord;
+import common.PayrollSummary;
+import common.PayrollTrend;
+import common.QuantileSketch;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * PayrollColumnStore keeps an in-memory, column-oriented copy of every payroll record
+ * (archived ones included) for aggregate queries.
+ * Each measure is a primitive double[] column; period, employee and role are dictionary-encoded
+ * as int codes, so a group-by is a tight loop over primitive arrays that the JIT can unroll and
+ * vectorise, split across the common fork-join pool for large stores.
+ * <p>
+ * Writers (load, append, removeEmployee) are serialised; readers work on an immutable
+ * {@link Snapshot} and never block. Appends write past the published row count and then publish
+ * a new snapshot, so readers only ever see fully written rows.
+ */
+public class PayrollColumnStore {
+    private static final PayrollColumnStore INSTANCE = new PayrollColumnStore();
+    // 每个并行分块至少处理的行数，太小时线程调度的开销大于收益
+    private static final int MIN_CHUNK_ROWS = Integer.getInteger("payroll.analytics.chunkRows", 1 << 16);
+    private static final String NO_ROLE = "(none)";
+
+    public enum GroupBy { PERIOD, ROLE, EMPLOYEE }
+
+    public enum Measure {
+        BASE_SALARY("baseSalary"), GROSS_PAY("grossPay"), DEDUCTIONS("deductions"), NET_PAY("netPay");
+
+        private final String field;
+
+        Measure(String field) {
+            this.field = field;
+        }
+
+        /**
+         * Accepts either the PayrollRecord field name ("netPay") or the constant name ("NET_PAY").
+         */
+        public static Measure of(String name) {
+            for (Measure m : values()) {
+                if (m.field.equalsIgnoreCase(name) || m.name().equalsIgnoreCase(name)) {
+                    return m;
+                }
+            }
+            throw new IllegalArgumentException("Unknown measure: " + name);
+        }
+    }
+
+    /**
+     * An immutable view of the first {@code count} rows.
+     */
+    private static final class Snapshot {
+        final int count;
+        final int[] periodCode;
+        final int[] employeeCode;
+        final double[][] measures;
+        final String[] periods;
+        final int periodCount;
+        final int[] employeeIds;
+        final int[] employeeRole;
+        final int employeeCount;
+        final String[] roles;
+        final int roleCount;
+
+        Snapshot(int count, int[] periodCode, int[] employeeCode, double[][] measures,
+                 String[] periods, int periodCount, int[] employeeIds, int[] employeeRole, int employeeCount,
+                 String[] roles, int roleCount) {
+            this.count = count;
+            this.periodCode = periodCode;
+            this.employeeCode = employeeCode;
+            this.measures = measures;
+            this.periods = periods;
+            this.periodCount = periodCount;
+            this.employeeIds = employeeIds;
+            this.employeeRole = employeeRole;
+            this.employeeCount = employeeCount;
+            this.roles = roles;
+            this.roleCount = roleCount;
+        }
+    }
+
+    // 以下字段只在持有锁时修改
+    private int count;
+    private int[] periodCode = new int[1024];
+    private int[] employeeCode = new int[1024];
+    private double[][] measures = new double[Measure.values().length][1024];
+    private final Map<String, Integer> periodDict = new HashMap<>();
+    private String[] periods = new String[64];
+    private final Map<Integer, Integer> employeeDict = new HashMap<>();
+    private int[] employeeIds = new int[256];
+    private int[] employeeRole = new int[256];
+    private final Map<String, Integer> roleDict = new HashMap<>();
+    private String[] roles = new String[8];
+    private boolean loaded;
+
+    private volatile Snapshot snapshot = new Snapshot(0, periodCode, employeeCode, measures, periods, 0, employeeIds, employeeRole, 0, roles, 0);
+
+    PayrollColumnStore() {
+    }
+
+    public static PayrollColumnStore getInstance() {
+        Tenant tenant = Tenant.current();
+        return tenant != null ? tenant.columnStore() : INSTANCE;
+    }
+
+    /**
+     * (Re)builds the store from the database, streaming employees and payroll rows.
+     * @return Number of payroll rows loaded
+     */
+    public synchronized int load() {
+        // 重新分配数组，旧快照的读者不受影响
+        count = 0;
+        periodCode = new int[1024];
+        employeeCode = new int[1024];
+        measures = new double[Measure.values().length][1024];
+        periods = new String[64];
+        employeeIds = new int[256];
+        employeeRole = new int[256];
+        roles = new String[8];
+        periodDict.clear();
+        employeeDict.clear();
+        roleDict.clear();
+        new EmployeeDAO().forEach(this::putEmployee);
+        new PayrollDAO().forEach(this::appendRow);
+        loaded = true;
+        publish();
+        return count;
+    }
+
+    /**
+     * Adds a newly committed payroll record. Ignored until {@link #load} has run.
+     */
+    public synchronized void append(PayrollRecord record) {
+        if (!loaded) {
+            return;
+        }
+        if (!employeeDict.containsKey(record.getEmployeeId())) {
+            // 新员工的第一张工资单，按需查出其角色
+            putEmployee(record.getEmployeeId(), lookupRole(record.getEmployeeId()));
+        }
+        appendRow(record);
+        publish();
+    }
+
+    /**
+     * Drops every row of a deleted employee. Rows are compacted into new arrays so that
+     * readers holding the previous snapshot are unaffected.
+     */
+    public synchronized void removeEmployee(int employeeId) {
+        Integer code = employeeDict.get(employeeId);
+        if (!loaded || code == null) {
+            return;
+        }
+        int capacity = periodCode.length;
+        int[] newPeriodCode = new int[capacity];
+        int[] newEmployeeCode = new int[capacity];
+        double[][] newMeasures = new double[measures.length][capacity];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (employeeCode[i] == code) {
+                continue;
+            }
+            newPeriodCode[kept] = periodCode[i];
+            newEmployeeCode[kept] = employeeCode[i];
+            for (int m = 0; m < measures.length; m++) {
+                newMeasures[m][kept] = measures[m][i];
+            }
+            kept++;
+        }
+        periodCode = newPeriodCode;
+        employeeCode = newEmployeeCode;
+        measures = newMeasures;
+        count = kept;
+        publish();
+    }
+
+    public int size() {
+        return snapshot.count;
+    }
+
+    /**
+     * Computes count/sum/min/max of a measure per group. Groups without rows are omitted.
+     * @return One summary per period, role or employee ID, ordered by key
+     */
+    public List<PayrollSummary> aggregate(GroupBy groupBy, Measure measure) {
+        Snapshot s = snapshot;
+        int groups;
+        switch (groupBy) {
+            case PERIOD: groups = s.periodCount; break;
+            case ROLE: groups = s.roleCount; break;
+            default: groups = s.employeeCount;
+        }
+        double[] values = s.measures[measure.ordinal()];
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), s.count / MIN_CHUNK_ROWS));
+        int chunkSize = (s.count + chunks - 1) / Math.max(1, chunks);
+        int groupCount = groups;
+        Partial total = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> scan(s, groupBy, values, groupCount, c * chunkSize, Math.min(s.count, (c + 1) * chunkSize)))
+                .reduce(Partial::merge)
+                .orElse(new Partial(groups));
+
+        List<PayrollSummary> result = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            if (total.counts[g] == 0) {
+                continue;
+            }
+            String key;
+            switch (groupBy) {
+                case PERIOD: key = s.periods[g]; break;
+                case ROLE: key = s.roles[g]; break;
+                default: key = String.valueOf(s.employeeIds[g]);
+            }
+            result.add(new PayrollSummary(key, total.counts[g], total.sums[g], total.mins[g], total.maxs[g]));
+        }
+        if (groupBy == GroupBy.EMPLOYEE) {
+            result.sort((a, b) -> Integer.compare(Integer.parseInt(a.getKey()), Integer.parseInt(b.getKey())));
+        } else {
+            result.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * Builds one quantile sketch per period or role in a single pass over the measure column.
+     * @return One distribution per group, ordered by key
+     */
+    public List<PayrollDistribution> distribution(GroupBy groupBy, Measure measure) {
+        if (groupBy == GroupBy.EMPLOYEE) {
+            throw new IllegalArgumentException("Distributions are grouped by period or role");
+        }
+        Snapshot s = snapshot;
+        int groups = groupBy == GroupBy.PERIOD ? s.periodCount : s.roleCount;
+        double[] values = s.measures[measure.ordinal()];
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), s.count / MIN_CHUNK_ROWS));
+        int chunkSize = (s.count + chunks - 1) / chunks;
+        QuantileSketch[] total = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> {
+                    QuantileSketch[] sketches = newSketches(groups);
+                    int to = Math.min(s.count, (c + 1) * chunkSize);
+                    if (groupBy == GroupBy.PERIOD) {
+                        for (int i = c * chunkSize; i < to; i++) {
+                            sketches[s.periodCode[i]].add(values[i]);
+                        }
+                    } else {
+                        for (int i = c * chunkSize; i < to; i++) {
+                            sketches[s.employeeRole[s.employeeCode[i]]].add(values[i]);
+                        }
+                    }
+                    return sketches;
+                })
+                .reduce((a, b) -> {
+                    for (int g = 0; g < a.length; g++) {
+                        a[g].merge(b[g]);
+                    }
+                    return a;
+                })
+                .orElse(newSketches(groups));
+
+        List<PayrollDistribution> result = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            if (total[g].getCount() > 0) {
+                result.add(new PayrollDistribution(groupBy == GroupBy.PERIOD ? s.periods[g] : s.roles[g], total[g]));
+            }
+        }
+        result.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        return result;
+    }
+
+    /**
+     * Turns per-period distributions, ordered by period, into a month-over-month trend.
+     */
+    static List<PayrollTrend> trend(List<PayrollDistribution> byPeriod) {
+        List<PayrollTrend> trend = new ArrayList<>();
+        PayrollTrend previous = null;
+        for (PayrollDistribution d : byPeriod) {
+            PayrollTrend point = new PayrollTrend();
+            point.setPeriod(d.getKey());
+            point.setCount(d.getCount());
+            point.setTotal(d.getTotal());
+            point.setMedian(d.getMedian());
+            if (previous != null) {
+                point.setTotalChange(previous.getTotal() == 0 ? Double.NaN : (point.getTotal() - previous.getTotal()) / previous.getTotal());
+                point.setMedianChange(previous.getMedian() == 0 ? Double.NaN : (point.getMedian() - previous.getMedian()) / previous.getMedian());
+            }
+            trend.add(point);
+            previous = point;
+        }
+        return trend;
+    }
+
+    private static QuantileSketch[] newSketches(int groups) {
+        QuantileSketch[] sketches = new QuantileSketch[groups];
+        for (int g = 0; g < groups; g++) {
+            sketches[g] = new QuantileSketch();
+        }
+        return sketches;
+    }
+
+    private static Partial scan(Snapshot s, GroupBy groupBy, double[] values, int groups, int from, int to) {
+        Partial p = new Partial(groups);
+        long[] counts = p.counts;
+        double[] sums = p.sums;
+        double[] mins = p.mins;
+        double[] maxs = p.maxs;
+        // 分组编码的查找放在循环外分支，循环体只做数组读写
+        if (groupBy == GroupBy.PERIOD) {
+            int[] codes = s.periodCode;
+            for (int i = from; i < to; i++) {
+                int g = codes[i];
+                double v = values[i];
+                counts[g]++;
+                sums[g] += v;
+                mins[g] = Math.min(mins[g], v);
+                maxs[g] = Math.max(maxs[g], v);
+            }
+        } else if (groupBy == GroupBy.EMPLOYEE) {
+            int[] codes = s.employeeCode;
+            for (int i = from; i < to; i++) {
+                int g = codes[i];
+                double v = values[i];
+                counts[g]++;
+                sums[g] += v;
+                mins[g] = Math.min(mins[g], v);
+                maxs[g] = Math.max(maxs[g], v);
+            }
+        } else {
+            int[] codes = s.employeeCode;
+            int[] roleOf = s.employeeRole;
+            for (int i = from; i < to; i++) {
+                int g = roleOf[codes[i]];
+                double v = values[i];
+                counts[g]++;
+                sums[g] += v;
+                mins[g] = Math.min(mins[g], v);
+                maxs[g] = Math.max(maxs[g], v);
+            }
+        }
+        return p;
+    }
+
+    private static final class Partial {
+        final long[] counts;
+        final double[] sums;
+        final double[] mins;
+        final double[] maxs;
+
+        Partial(int groups) {
+            counts = new long[groups];
+            sums = new double[groups];
+            mins = new double[groups];
+            maxs = new double[groups];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+        }
+
+        Partial merge(Partial other) {
+            for (int g = 0; g < counts.length; g++) {
+                counts[g] += other.counts[g];
+                sums[g] += other.sums[g];
+                mins[g] = Math.min(mins[g], other.mins[g]);
+                maxs[g] = Math.max(maxs[g], other.maxs[g]);
+            }
+            return this;
+        }
+    }
+
+    private void putEmployee(Employee emp) {
+        putEmployee(emp.getId(), emp.getRole());
+    }
+
+    private void putEmployee(int employeeId, String role) {
+        int roleCode = code(roleDict, role == null || role.isEmpty() ? NO_ROLE : role.toLowerCase(), true);
+        Integer existing = employeeDict.get(employeeId);
+        if (existing != null) {
+            employeeRole[existing] = roleCode;
+            return;
+        }
+        int code = employeeDict.size();
+        if (code == employeeIds.length) {
+            employeeIds = Arrays.copyOf(employeeIds, code * 2);
+            employeeRole = Arrays.copyOf(employeeRole, code * 2);
+        }
+        employeeIds[code] = employeeId;
+        employeeRole[code] = roleCode;
+        employeeDict.put(employeeId, code);
+    }
+
+    private void appendRow(PayrollRecord record) {
+        if (count == periodCode.length) {
+            int capacity = count * 2;
+            periodCode = Arrays.copyOf(periodCode, capacity);
+            employeeCode = Arrays.copyOf(employeeCode, capacity);
+            double[][] grown = new double[measures.length][];
+            for (int m = 0; m < measures.length; m++) {
+                grown[m] = Arrays.copyOf(measures[m], capacity);
+            }
+            measures = grown;
+        }
+        Integer emp = employeeDict.get(record.getEmployeeId());
+        if (emp == null) {
+            putEmployee(record.getEmployeeId(), null);
+            emp = employeeDict.get(record.getEmployeeId());
+        }
+        periodCode[count] = code(periodDict, record.getPeriod(), false);
+        employeeCode[count] = emp;
+        measures[Measure.BASE_SALARY.ordinal()][count] = record.getBaseSalary();
+        measures[Measure.GROSS_PAY.ordinal()][count] = record.getGrossPay();
+        measures[Measure.DEDUCTIONS.ordinal()][count] = record.getDeductions();
+        measures[Measure.NET_PAY.ordinal()][count] = record.getNetPay();
+        count++;
+    }
+
+    private int code(Map<String, Integer> dict, String value, boolean role) {
+        Integer code = dict.get(value);
+        if (code != null) {
+            return code;
+        }
+        code = dict.size();
+        if (role) {
+            if (code == roles.length) {
+                roles = Arrays.copyOf(roles, code * 2);
+            }
+            roles[code] = value;
+        } else {
+            if (code == periods.length) {
+                periods = Arrays.copyOf(periods, code * 2);
+            }
+            periods[code] = value;
+        }
+        dict.put(value, code);
+        return code;
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(count, periodCode, employeeCode, measures, periods, periodDict.size(),
+                employeeIds, employeeRole, employeeDict.size(), roles, roleDict.size());
+    }
+
+    private static String lookupRole(int employeeId) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT role FROM Employee WHERE id = ?")) {
+            stmt.setInt(1, employeeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
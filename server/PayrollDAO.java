@@ -3,82 +3,309 @@ package server;
 import common.PayrollRecord;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class PayrollDAO {
+    // 主键冲突的SQLState
+    private static final String DUPLICATE_KEY = "23505";
+
+    static final String COLUMNS = "id, employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance, grossPay, deductions, netPay, version";
+
+    // 按 COLUMNS 的列序读取，避免每行按列名查找
+    static final RowMapper<PayrollRecord> ROW = rs -> {
+        PayrollRecord record = new PayrollRecord();
+        record.setId(rs.getInt(1));
+        record.setEmployeeId(rs.getInt(2));
+        record.setPeriod(rs.getString(3));
+        record.setBaseSalary(rs.getDouble(4));
+        record.setOvertimeHours(rs.getDouble(5));
+        record.setOvertimeRate(rs.getDouble(6));
+        record.setBonus(rs.getDouble(7));
+        record.setAllowance(rs.getDouble(8));
+        record.setGrossPay(rs.getDouble(9));
+        record.setDeductions(rs.getDouble(10));
+        record.setNetPay(rs.getDouble(11));
+        return record;
+    };
+
+    /**
+     * Builds a SELECT over the hot Payroll table, unioned with PayrollArchive when the caller's
+     * range reaches into archived periods. The WHERE clause is repeated per branch, so its
+     * parameters must be bound once for each branch (see {@link #bind}).
+     */
+    static String select(String where, boolean includeArchive) {
+        String hot = "SELECT " + COLUMNS + " FROM Payroll" + where;
+        if (!includeArchive) {
+            return hot;
+        }
+        return hot + " UNION ALL SELECT " + COLUMNS + " FROM PayrollArchive" + where;
+    }
+
+    /**
+     * Binds the same parameter values for every branch of a query built by {@link #select}.
+     */
+    static void bind(PreparedStatement stmt, boolean includeArchive, Object... params) throws SQLException {
+        int branches = includeArchive ? 2 : 1;
+        int index = 1;
+        for (int b = 0; b < branches; b++) {
+            for (Object param : params) {
+                stmt.setObject(index++, param);
+            }
+        }
+    }
+
     public boolean insert(PayrollRecord record) {
-        String sql = "INSERT INTO Payroll (employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance, grossPay, deductions, netPay) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, record.getEmployeeId());
-            stmt.setString(2, record.getPeriod());
-            stmt.setDouble(3, record.getBaseSalary());
-            stmt.setDouble(4, record.getOvertimeHours());
-            stmt.setDouble(5, record.getOvertimeRate());
-            stmt.setDouble(6, record.getBonus());
-            stmt.setDouble(7, record.getAllowance());
-            stmt.setDouble(8, record.getGrossPay());
-            stmt.setDouble(9, record.getDeductions());
-            stmt.setDouble(10, record.getNetPay());
-            return stmt.executeUpdate() > 0;
+        String sql = "INSERT INTO Payroll (employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance, grossPay, deductions, netPay, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        long version = ChangeVersion.begin();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            // 工资单与年度累计在同一事务中提交
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, record.getEmployeeId());
+                stmt.setString(2, record.getPeriod());
+                stmt.setDouble(3, record.getBaseSalary());
+                stmt.setDouble(4, record.getOvertimeHours());
+                stmt.setDouble(5, record.getOvertimeRate());
+                stmt.setDouble(6, record.getBonus());
+                stmt.setDouble(7, record.getAllowance());
+                stmt.setDouble(8, record.getGrossPay());
+                stmt.setDouble(9, record.getDeductions());
+                stmt.setDouble(10, record.getNetPay());
+                stmt.setLong(11, version);
+                if (stmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        record.setId(keys.getInt(1));
+                    }
+                }
+                YearToDateDAO.accumulate(conn, record);
+                conn.commit();
+                UnitOfWork.afterCommit(() -> PayrollColumnStore.getInstance().append(record));
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            ChangeVersion.end(version);
         }
     }
 
-    public List<PayrollRecord> getByEmployeeId(int employeeId) {
-        List<PayrollRecord> list = new ArrayList<>();
-        String sql = "SELECT * FROM Payroll WHERE employeeId = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, employeeId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                PayrollRecord record = new PayrollRecord();
-                record.setId(rs.getInt("id"));
-                record.setEmployeeId(rs.getInt("employeeId"));
-                record.setPeriod(rs.getString("period"));
-                record.setBaseSalary(rs.getDouble("baseSalary"));
-                record.setOvertimeHours(rs.getDouble("overtimeHours"));
-                record.setOvertimeRate(rs.getDouble("overtimeRate"));
-                record.setBonus(rs.getDouble("bonus"));
-                record.setAllowance(rs.getDouble("allowance"));
-                record.setGrossPay(rs.getDouble("grossPay"));
-                record.setDeductions(rs.getDouble("deductions"));
-                record.setNetPay(rs.getDouble("netPay"));
-                list.add(record);
+    /**
+     * Inserts one period's records in one transaction (with their year-to-date updates), so a bulk
+     * submission costs one commit. Each employee's (employeeId, period) key is claimed in
+     * PayrollPeriodClaim inside the same transaction; a key already claimed by a committed batch,
+     * or a record already in Payroll, makes the row be skipped, so concurrent or resubmitted batches
+     * never store a period twice. Stored records have their ID set.
+     * @return IDs of the employees skipped because their record already exists, or null if nothing
+     * was stored because of a database error
+     */
+    public Set<Integer> insertAll(String period, List<PayrollRecord> records) {
+        String sql = "INSERT INTO Payroll (employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance, grossPay, deductions, netPay, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        Integer[] employeeIds = new Integer[records.size()];
+        for (int i = 0; i < employeeIds.length; i++) {
+            employeeIds[i] = records.get(i).getEmployeeId();
+        }
+        Set<Integer> existing = new HashSet<>();
+        List<PayrollRecord> stored = new ArrayList<>();
+        long version = ChangeVersion.begin();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement check = conn.prepareStatement("SELECT DISTINCT employeeId FROM Payroll WHERE period = ? AND employeeId = ANY(?)");
+                 PreparedStatement claim = conn.prepareStatement("INSERT INTO PayrollPeriodClaim (employeeId, period) VALUES (?, ?)");
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                check.setString(1, period);
+                check.setObject(2, employeeIds);
+                try (ResultSet rs = check.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getInt(1));
+                    }
+                }
+                for (PayrollRecord record : records) {
+                    if (existing.contains(record.getEmployeeId())) {
+                        continue;
+                    }
+                    // 另一批次未提交时这里等待其提交；已被认领则主键冲突，只跳过这一行
+                    claim.setInt(1, record.getEmployeeId());
+                    claim.setString(2, period);
+                    try {
+                        claim.executeUpdate();
+                    } catch (SQLException e) {
+                        if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                            throw e;
+                        }
+                        existing.add(record.getEmployeeId());
+                        continue;
+                    }
+                    stmt.setInt(1, record.getEmployeeId());
+                    stmt.setString(2, record.getPeriod());
+                    stmt.setDouble(3, record.getBaseSalary());
+                    stmt.setDouble(4, record.getOvertimeHours());
+                    stmt.setDouble(5, record.getOvertimeRate());
+                    stmt.setDouble(6, record.getBonus());
+                    stmt.setDouble(7, record.getAllowance());
+                    stmt.setDouble(8, record.getGrossPay());
+                    stmt.setDouble(9, record.getDeductions());
+                    stmt.setDouble(10, record.getNetPay());
+                    stmt.setLong(11, version);
+                    stmt.executeUpdate();
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            record.setId(keys.getInt(1));
+                        }
+                    }
+                    YearToDateDAO.accumulate(conn, record);
+                    stored.add(record);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
+            UnitOfWork.afterCommit(() -> {
+                for (PayrollRecord record : stored) {
+                    PayrollColumnStore.getInstance().append(record);
+                }
+            });
+            return existing;
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
+        } finally {
+            ChangeVersion.end(version);
+        }
+    }
+
+    /**
+     * @return IDs of employees that already have a record for the period (archived periods excluded)
+     */
+    public Set<Integer> getEmployeesWithPeriod(String period) {
+        Set<Integer> ids = new HashSet<>();
+        try {
+            Rows.forEach("SELECT DISTINCT employeeId FROM Payroll WHERE period = ?", stmt -> stmt.setString(1, period), rs -> rs.getInt(1), ids::add);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return ids;
+    }
+
+    public List<PayrollRecord> getByEmployeeId(int employeeId) {
+        // 查询完整历史，已归档的期间也要包含
+        boolean includeArchive = PayrollArchiver.hasArchive();
+        String sql = select(" WHERE employeeId = ?", includeArchive) + " ORDER BY id";
+        try {
+            return Rows.list(sql, stmt -> bind(stmt, includeArchive, employeeId), ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns an employee's records with fromPeriod &lt;= period &lt;= toPeriod ("yyyy-MM", inclusive;
+     * null means unbounded), as a range scan on (employeeId, period).
+     */
+    public List<PayrollRecord> getByEmployeeIdAndPeriodRange(int employeeId, String fromPeriod, String toPeriod) {
+        // 只有范围的起点早于归档分界时才读取归档表
+        boolean includeArchive = PayrollArchiver.includesArchive(fromPeriod);
+        String sql = select(" WHERE employeeId = ? AND period >= ? AND period <= ?", includeArchive) + " ORDER BY period, id";
+        String from = fromPeriod == null ? "" : fromPeriod;
+        String to = toPeriod == null ? "\uffff" : toPeriod;
+        try {
+            return Rows.list(sql, stmt -> bind(stmt, includeArchive, employeeId, from, to), ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns every record of one period, as an index lookup on period.
+     */
+    public List<PayrollRecord> getByPeriod(String period) {
+        boolean includeArchive = PayrollArchiver.includesArchive(period);
+        String sql = select(" WHERE period = ?", includeArchive) + " ORDER BY id";
+        try {
+            return Rows.list(sql, stmt -> bind(stmt, includeArchive, period), ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns each employee's most recent record (highest period, then highest id).
+     * Only the hot table is read: an employee's latest period is never archived while
+     * the archive horizon is measured in months.
+     */
+    public List<PayrollRecord> getLatestPerEmployee() {
+        String sql = "SELECT " + COLUMNS + " FROM Payroll WHERE id IN (SELECT MAX(p.id) FROM Payroll p"
+                + " JOIN (SELECT employeeId, MAX(period) AS period FROM Payroll GROUP BY employeeId) l"
+                + " ON p.employeeId = l.employeeId AND p.period = l.period GROUP BY p.employeeId) ORDER BY employeeId";
+        try {
+            return Rows.list(sql, Rows.Binder.NONE, ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
         }
-        return list;
     }
 
     public List<PayrollRecord> getAll() {
         List<PayrollRecord> list = new ArrayList<>();
-        String sql = "SELECT * FROM Payroll";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                PayrollRecord record = new PayrollRecord();
-                record.setId(rs.getInt("id"));
-                record.setEmployeeId(rs.getInt("employeeId"));
-                record.setPeriod(rs.getString("period"));
-                record.setBaseSalary(rs.getDouble("baseSalary"));
-                record.setOvertimeHours(rs.getDouble("overtimeHours"));
-                record.setOvertimeRate(rs.getDouble("overtimeRate"));
-                record.setBonus(rs.getDouble("bonus"));
-                record.setAllowance(rs.getDouble("allowance"));
-                record.setGrossPay(rs.getDouble("grossPay"));
-                record.setDeductions(rs.getDouble("deductions"));
-                record.setNetPay(rs.getDouble("netPay"));
-                list.add(record);
-            }
+        forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Streams every record, archived ones included, to the visitor in id order without
+     * materialising the whole table.
+     * @return Number of records visited, or -1 if the query failed
+     */
+    public int forEach(Consumer<? super PayrollRecord> visitor) {
+        String sql = select("", PayrollArchiver.hasArchive()) + " ORDER BY id";
+        try {
+            return Rows.forEach(sql, Rows.Binder.NONE, ROW, visitor);
         } catch (SQLException e) {
             e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Returns payroll records inserted or updated in the version range (since, upTo].
+     */
+    public List<PayrollRecord> getChangedSince(long since, long upTo) {
+        // 全量同步（since=0）需要包含已归档的行；归档行的版本号不变，增量同步时索引扫描为空
+        boolean includeArchive = PayrollArchiver.hasArchive();
+        String sql = select(" WHERE version > ? AND version <= ?", includeArchive) + " ORDER BY version";
+        try {
+            return Rows.list(sql, stmt -> bind(stmt, includeArchive, since, upTo), ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Same as {@link #getChangedSince(long, long)}, limited to one employee's rows.
+     */
+    public List<PayrollRecord> getChangedSince(int employeeId, long since, long upTo) {
+        boolean includeArchive = PayrollArchiver.hasArchive();
+        String sql = select(" WHERE employeeId = ? AND version > ? AND version <= ?", includeArchive) + " ORDER BY version";
+        try {
+            return Rows.list(sql, stmt -> bind(stmt, includeArchive, employeeId, since, upTo), ROW);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
         }
-        return list;
     }
-} 
\ No newline at end of file
+}
@@ -1,17 +1,37 @@
 package server;
 
+import common.ChangeEvent;
+import common.ChangeSet;
+import common.PayrollDistribution;
+import common.PayrollEntry;
+import common.PayrollEntryResult;
+import common.PayrollEventListener;
 import common.PayrollRecord;
 import common.PayrollService;
+import common.PayrollSummary;
+import common.PayrollTrend;
+import common.RecalculationStatus;
+import common.SimulationParameters;
+import common.SimulationResult;
+import common.YearToDate;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class PayrollServiceImpl extends UnicastRemoteObject implements PayrollService {
+    static final int MAX_BATCH_ROWS = Integer.getInteger("payroll.batch.maxRows", 1000);
     private PayrollDAO payrollDAO;
+    private YearToDateDAO yearToDateDAO;
 
     public PayrollServiceImpl() throws RemoteException {
         super();
         payrollDAO = new PayrollDAO();
+        yearToDateDAO = new YearToDateDAO();
     }
 
     @Override
@@ -28,16 +48,13 @@ public class PayrollServiceImpl extends UnicastRemoteObject implements PayrollSe
         if (grossPay < 0) {
             throw new RemoteException("Gross pay cannot be negative.");
         }
+        rejectArchived(period);
         // 原有实现
-        double deductions = grossPay * 0.11;
-        double netPay = grossPay - deductions;
-        PayrollRecord record = new PayrollRecord();
-        record.setEmployeeId(employeeId);
-        record.setPeriod(period);
-        record.setGrossPay(grossPay);
-        record.setDeductions(deductions);
-        record.setNetPay(netPay);
-        payrollDAO.insert(record);
+        PayrollRecord record = PayrollCalculator.fromGross(employeeId, period, grossPay, PayrollCalculator.DEDUCTION_RATE);
+        if (payrollDAO.insert(record)) {
+            EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.PAYROLL_CREATED, record.getId(), employeeId, period));
+            AuditJournal.record(AuditJournal.Action.PAYROLL_CREATED, record.getId(), auditDetail(record));
+        }
         System.out.println("[SERVER] Payroll calculation result: " + (record != null ? "Success" : "Fail"));
         return record;
     }
@@ -51,43 +68,355 @@ public class PayrollServiceImpl extends UnicastRemoteObject implements PayrollSe
         if (overtimeRate < 0) throw new RemoteException("Overtime rate cannot be negative.");
         if (bonus < 0) throw new RemoteException("Bonus cannot be negative.");
         if (allowance < 0) throw new RemoteException("Allowance cannot be negative.");
+        rejectArchived(period);
 
         // 修复：正确计算总工资，包含所有组件
-        double overtimePay = overtimeHours * overtimeRate;
-        double grossPay = baseSalary + overtimePay + bonus + allowance;
-        if (grossPay < 0) {
+        PayrollRecord record = PayrollCalculator.calculate(employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance, PayrollCalculator.DEDUCTION_RATE);
+        if (record.getGrossPay() < 0) {
             throw new RemoteException("Calculated gross pay cannot be negative.");
         }
-        double deductions = grossPay * 0.11;
-        double netPay = grossPay - deductions;
         
-        System.out.println("[SERVER] Calculation details: baseSalary=" + baseSalary + ", overtimePay=" + overtimePay + ", bonus=" + bonus + ", allowance=" + allowance + ", grossPay=" + grossPay + ", deductions=" + deductions + ", netPay=" + netPay);
+        System.out.println("[SERVER] Calculation details: baseSalary=" + baseSalary + ", overtimePay=" + (overtimeHours * overtimeRate) + ", bonus=" + bonus + ", allowance=" + allowance + ", grossPay=" + record.getGrossPay() + ", deductions=" + record.getDeductions() + ", netPay=" + record.getNetPay());
         
-        PayrollRecord record = new PayrollRecord();
-        record.setEmployeeId(employeeId);
-        record.setPeriod(period);
-        record.setBaseSalary(baseSalary);
-        record.setOvertimeHours(overtimeHours);
-        record.setOvertimeRate(overtimeRate);
-        record.setBonus(bonus);
-        record.setAllowance(allowance);
-        record.setGrossPay(grossPay);
-        record.setDeductions(deductions);
-        record.setNetPay(netPay);
-        payrollDAO.insert(record);
+        if (payrollDAO.insert(record)) {
+            EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.PAYROLL_CREATED, record.getId(), employeeId, period));
+            AuditJournal.record(AuditJournal.Action.PAYROLL_CREATED, record.getId(), auditDetail(record));
+        }
         System.out.println("[SERVER] Payroll calculation result: " + (record != null ? "Success" : "Fail"));
         return record;
     }
 
+    /**
+     * Creates the period's payroll for many employees in one call. Each row is checked on its own
+     * and the valid ones are stored in a single transaction; results come back in entry order.
+     * Rows for employees who already have a record for the period are rejected (checked again
+     * inside the insert transaction), so a resubmitted or concurrent batch never creates duplicates.
+     */
+    @Override
+    public List<PayrollEntryResult> calculatePayrollBatch(String period, List<PayrollEntry> entries) throws RemoteException {
+        validateBatch(period, entries);
+        rejectArchived(period);
+        long start = System.nanoTime();
+        Set<String> usernames = new HashSet<>();
+        for (PayrollEntry entry : entries) {
+            if (entry != null && entry.getUsername() != null) {
+                usernames.add(entry.getUsername());
+            }
+        }
+        Map<String, Integer> ids = new EmployeeDAO().getIdsByUsername(usernames);
+        Set<Integer> existing = payrollDAO.getEmployeesWithPeriod(period);
+        Set<Integer> inBatch = new HashSet<>();
+        PayrollEntryResult[] results = new PayrollEntryResult[entries.size()];
+        List<PayrollRecord> records = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            PayrollEntry entry = entries.get(i);
+            String error = validateEntry(entry, ids);
+            Integer employeeId = error == null ? ids.get(entry.getUsername()) : null;
+            if (error == null && existing.contains(employeeId)) {
+                error = "Payroll for " + period + " already exists";
+            } else if (error == null && !inBatch.add(employeeId)) {
+                error = "Duplicate row for " + entry.getUsername();
+            }
+            if (error != null) {
+                results[i] = PayrollEntryResult.failed(error);
+                continue;
+            }
+            records.add(PayrollCalculator.calculate(employeeId, period, entry.getBaseSalary(), entry.getOvertimeHours(),
+                    entry.getOvertimeRate(), entry.getBonus(), entry.getAllowance(), PayrollCalculator.DEDUCTION_RATE));
+            rows.add(i);
+        }
+        Set<Integer> skipped = records.isEmpty() ? new HashSet<>() : payrollDAO.insertAll(period, records);
+        int created = 0;
+        for (int k = 0; k < records.size(); k++) {
+            PayrollRecord record = records.get(k);
+            if (skipped == null) {
+                results[rows.get(k)] = PayrollEntryResult.failed("Database error, please retry");
+            } else if (skipped.contains(record.getEmployeeId())) {
+                // 另一个（或重发的）批次已先提交了该员工本期工资单
+                results[rows.get(k)] = PayrollEntryResult.failed("Payroll for " + period + " already exists");
+            } else {
+                results[rows.get(k)] = PayrollEntryResult.created(record);
+                EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.PAYROLL_CREATED, record.getId(), record.getEmployeeId(), period));
+                AuditJournal.record(AuditJournal.Action.PAYROLL_CREATED, record.getId(), auditDetail(record));
+                created++;
+            }
+        }
+        System.out.println("[SERVER] Payroll batch for " + period + ": " + created + " created, "
+                + (entries.size() - created) + " rejected in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return Arrays.asList(results);
+    }
+
     @Override
     public List<PayrollRecord> getPayrollRecords(int employeeId) throws RemoteException {
         System.out.println("[SERVER] Query payroll records for employeeId=" + employeeId);
         return payrollDAO.getByEmployeeId(employeeId);
     }
 
+    /**
+     * Returns an employee's records within an inclusive period range.
+     * @param fromPeriod First period ("yyyy-MM"), or null for no lower bound
+     * @param toPeriod Last period ("yyyy-MM"), or null for no upper bound
+     */
+    @Override
+    public List<PayrollRecord> getPayrollRecords(int employeeId, String fromPeriod, String toPeriod) throws RemoteException {
+        System.out.println("[SERVER] Query payroll records for employeeId=" + employeeId + ", periods " + fromPeriod + ".." + toPeriod);
+        return payrollDAO.getByEmployeeIdAndPeriodRange(employeeId, fromPeriod, toPeriod);
+    }
+
+    @Override
+    public List<PayrollRecord> getPayrollRecordsForPeriod(String period) throws RemoteException {
+        System.out.println("[SERVER] Query payroll records for period=" + period);
+        return payrollDAO.getByPeriod(period);
+    }
+
     @Override
     public List<PayrollRecord> getAllPayrollRecords() throws RemoteException {
         System.out.println("[SERVER] Query all payroll records");
         return payrollDAO.getAll();
     }
-} 
\ No newline at end of file
+
+    @Override
+    public ChangeSet<PayrollRecord> getChangesSince(long version) throws RemoteException {
+        long upTo = ChangeVersion.safeVersion();
+        ChangeSet<PayrollRecord> changes = new ChangeSet<>();
+        changes.setVersion(upTo);
+        changes.setUpserts(payrollDAO.getChangedSince(version, upTo));
+        changes.setDeletedIds(EmployeeDAO.getDeletedSince("Payroll", version, upTo));
+        System.out.println("[SERVER] Payroll changes since " + version + ": " + changes.getUpserts().size() + " upserted, " + changes.getDeletedIds().size() + " deleted");
+        return changes;
+    }
+
+    /**
+     * Returns one employee's payroll changes for the client's local cache. Deleted IDs are not
+     * filtered by employee (tombstones do not record it); the client ignores IDs it does not hold.
+     */
+    @Override
+    public ChangeSet<PayrollRecord> getChangesSince(int employeeId, long version) throws RemoteException {
+        long upTo = ChangeVersion.safeVersion();
+        ChangeSet<PayrollRecord> changes = new ChangeSet<>();
+        changes.setVersion(upTo);
+        changes.setUpserts(payrollDAO.getChangedSince(employeeId, version, upTo));
+        changes.setDeletedIds(EmployeeDAO.getDeletedSince("Payroll", version, upTo));
+        System.out.println("[SERVER] Payroll changes for employeeId=" + employeeId + " since " + version + ": " + changes.getUpserts().size() + " upserted");
+        return changes;
+    }
+
+    @Override
+    public void addEventListener(PayrollEventListener listener) throws RemoteException {
+        EventDispatcher.getInstance().addListener(listener);
+    }
+
+    @Override
+    public void removeEventListener(PayrollEventListener listener) throws RemoteException {
+        EventDispatcher.getInstance().removeListener(listener);
+    }
+
+    @Override
+    public YearToDate getYearToDate(int employeeId, int year) throws RemoteException {
+        System.out.println("[SERVER] Query year-to-date: employeeId=" + employeeId + ", year=" + year);
+        return yearToDateDAO.get(employeeId, year);
+    }
+
+    /**
+     * Aggregates a payroll measure over the in-memory column store.
+     * @param groupBy "period", "role" or "employee"
+     * @param measure "baseSalary", "grossPay", "deductions" or "netPay"
+     * @return Count, sum, min and max per group
+     */
+    @Override
+    public List<PayrollSummary> getPayrollSummary(String groupBy, String measure) throws RemoteException {
+        PayrollColumnStore.GroupBy by;
+        PayrollColumnStore.Measure m;
+        try {
+            by = PayrollColumnStore.GroupBy.valueOf(String.valueOf(groupBy).toUpperCase());
+            m = PayrollColumnStore.Measure.of(measure);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException("Invalid summary request: groupBy=" + groupBy + ", measure=" + measure);
+        }
+        long start = System.nanoTime();
+        List<PayrollSummary> result = PayrollColumnStore.getInstance().aggregate(by, m);
+        System.out.println("[SERVER] Payroll summary by " + by + " of " + m + ": " + result.size() + " groups in " + (System.nanoTime() - start) / 1000 + " us");
+        return result;
+    }
+
+    /**
+     * Returns percentile sketches of a payroll measure per period or per role.
+     * @param groupBy "period" or "role"
+     * @param measure "baseSalary", "grossPay", "deductions" or "netPay"
+     */
+    @Override
+    public List<PayrollDistribution> getPayrollDistribution(String groupBy, String measure) throws RemoteException {
+        PayrollColumnStore.GroupBy by;
+        PayrollColumnStore.Measure m;
+        try {
+            by = PayrollColumnStore.GroupBy.valueOf(String.valueOf(groupBy).toUpperCase());
+            m = PayrollColumnStore.Measure.of(measure);
+            if (by == PayrollColumnStore.GroupBy.EMPLOYEE) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException("Invalid distribution request: groupBy=" + groupBy + ", measure=" + measure);
+        }
+        long start = System.nanoTime();
+        List<PayrollDistribution> result = PayrollColumnStore.getInstance().distribution(by, m);
+        System.out.println("[SERVER] Payroll distribution by " + by + " of " + m + ": " + result.size() + " groups in " + (System.nanoTime() - start) / 1000 + " us");
+        return result;
+    }
+
+    /**
+     * Returns the month-over-month trend of a payroll measure, one entry per period.
+     */
+    @Override
+    public List<PayrollTrend> getPayrollTrend(String measure) throws RemoteException {
+        return PayrollColumnStore.trend(getPayrollDistribution("period", measure));
+    }
+
+    /**
+     * Replays each employee's latest payroll record under changed parameters. Nothing is saved.
+     * @param params Factors and deduction rate to apply
+     * @param topN Number of most affected employees to return (0-1000)
+     * @return Totals before and after, and the employees whose net pay changes most
+     */
+    @Override
+    public SimulationResult simulatePayroll(SimulationParameters params, int topN) throws RemoteException {
+        validateSimulation(params, topN);
+        long start = System.currentTimeMillis();
+        List<PayrollRecord> inputs = payrollDAO.getLatestPerEmployee();
+        SimulationResult result = PayrollSimulator.simulate(inputs, params, topN);
+        System.out.println("[SERVER] Payroll simulation over " + result.getEmployeeCount() + " employees: net pay " + result.getNetPayBefore() + " -> " + result.getNetPayAfter() + " (" + (System.currentTimeMillis() - start) + " ms)");
+        return result;
+    }
+
+    /**
+     * Starts a background job that recalculates existing payroll rows of a period range in place.
+     * @param fromPeriod First period ("yyyy-MM")
+     * @param toPeriod Last period ("yyyy-MM")
+     * @param deductionRate Corrected deduction rate (0-1)
+     * @return Job ID for getRecalculationStatus
+     */
+    @Override
+    public String startRecalculation(String fromPeriod, String toPeriod, double deductionRate) throws RemoteException {
+        validateRecalculation(fromPeriod, toPeriod, deductionRate);
+        rejectArchived(fromPeriod);
+        try {
+            String jobId = RecalculationJob.start(fromPeriod, toPeriod, deductionRate);
+            AuditJournal.record(AuditJournal.Action.RECALCULATION_STARTED, 0, "job=" + jobId + " periods=" + fromPeriod + ".." + toPeriod + " deductionRate=" + deductionRate);
+            return jobId;
+        } catch (java.sql.SQLException e) {
+            e.printStackTrace();
+            throw new RemoteException("Failed to start recalculation: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public RecalculationStatus getRecalculationStatus(String jobId) throws RemoteException {
+        try {
+            RecalculationStatus status = RecalculationJob.status(jobId);
+            if (status == null) {
+                throw new RemoteException("Unknown recalculation job: " + jobId);
+            }
+            return status;
+        } catch (java.sql.SQLException e) {
+            e.printStackTrace();
+            throw new RemoteException("Failed to read recalculation status: " + e.getMessage());
+        }
+    }
+
+    static void validateRecalculation(String fromPeriod, String toPeriod, double deductionRate) throws RemoteException {
+        if (fromPeriod == null || !fromPeriod.matches("\\d{4}-\\d{2}")) throw new RemoteException("fromPeriod must be yyyy-MM.");
+        if (toPeriod == null || !toPeriod.matches("\\d{4}-\\d{2}")) throw new RemoteException("toPeriod must be yyyy-MM.");
+        if (fromPeriod.compareTo(toPeriod) > 0) throw new RemoteException("fromPeriod must not be after toPeriod.");
+        if (deductionRate < 0 || deductionRate > 1) throw new RemoteException("Deduction rate must be between 0 and 1.");
+    }
+
+    /**
+     * Rejects writes to periods that have been moved to the archive.
+     */
+    static void rejectArchived(String period) throws RemoteException {
+        if (PayrollArchiver.includesArchive(period)) {
+            throw new RemoteException("Periods before " + PayrollArchiver.getCutoffPeriod() + " are archived and closed.");
+        }
+    }
+
+    static void validateExport(String period, String format) throws RemoteException {
+        if (period == null || !period.matches("\\d{4}-\\d{2}")) throw new RemoteException("Period must be yyyy-MM.");
+        if (!PayslipTemplate.isFormat(format)) throw new RemoteException("Format must be text or html.");
+    }
+
+    static void validateBatch(String period, List<PayrollEntry> entries) throws RemoteException {
+        if (period == null || !period.matches("\\d{4}-\\d{2}")) throw new RemoteException("Period must be yyyy-MM.");
+        if (entries == null || entries.isEmpty()) throw new RemoteException("No payroll entries.");
+        if (entries.size() > MAX_BATCH_ROWS) throw new RemoteException("At most " + MAX_BATCH_ROWS + " entries per batch.");
+    }
+
+    /**
+     * @return Why the row cannot be stored, or null if it is valid
+     */
+    private static String validateEntry(PayrollEntry entry, Map<String, Integer> ids) {
+        if (entry == null || entry.getUsername() == null || entry.getUsername().trim().isEmpty()) return "Employee username is required";
+        if (!ids.containsKey(entry.getUsername())) return "Unknown employee: " + entry.getUsername();
+        double[] amounts = {entry.getBaseSalary(), entry.getOvertimeHours(), entry.getOvertimeRate(), entry.getBonus(), entry.getAllowance()};
+        for (double amount : amounts) {
+            if (Double.isNaN(amount) || Double.isInfinite(amount)) return "Amounts must be numbers";
+        }
+        if (entry.getBaseSalary() < 0) return "Base salary cannot be negative";
+        if (entry.getOvertimeHours() < 0) return "Overtime hours cannot be negative";
+        if (entry.getOvertimeRate() < 0) return "Overtime rate cannot be negative";
+        if (entry.getBonus() < 0) return "Bonus cannot be negative";
+        if (entry.getAllowance() < 0) return "Allowance cannot be negative";
+        return null;
+    }
+
+    static void validateSimulation(SimulationParameters params, int topN) throws RemoteException {
+        if (params == null) throw new RemoteException("Simulation parameters are required.");
+        if (params.getBaseSalaryFactor() < 0 || params.getOvertimeRateFactor() < 0 || params.getBonusFactor() < 0 || params.getAllowanceFactor() < 0) {
+            throw new RemoteException("Simulation factors cannot be negative.");
+        }
+        if (params.getDeductionRate() != null && (params.getDeductionRate() < 0 || params.getDeductionRate() > 1)) {
+            throw new RemoteException("Deduction rate must be between 0 and 1.");
+        }
+        if (topN < 0 || topN > 1000) throw new RemoteException("topN must be between 0 and 1000.");
+    }
+
+    /**
+     * Starts rendering every payslip of a period into a ZIP in the background.
+     * @param period Period to export ("yyyy-MM")
+     * @param format "text" or "html"
+     * @return Export ID to pass to readExportChunk
+     */
+    @Override
+    public String startPayslipExport(String period, String format) throws RemoteException {
+        System.out.println("[SERVER] Start payslip export: period=" + period + ", format=" + format);
+        validateExport(period, format);
+        ExportChannel channel = ExportChannel.open();
+        PayslipExporter exporter = new PayslipExporter(PayslipTemplate.forFormat(format));
+        Thread t = new Thread(Tenant.propagate(() -> {
+            try {
+                exporter.export(period, channel);
+                channel.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+                channel.fail(e);
+            }
+        }), "payslip-export");
+        t.setDaemon(true);
+        t.start();
+        return channel.getId();
+    }
+
+    /**
+     * Returns the next chunk of a running export, or null when it is complete.
+     */
+    @Override
+    public byte[] readExportChunk(String exportId) throws RemoteException {
+        return ExportChannel.read(exportId);
+    }
+
+    /**
+     * @return Audit journal detail text for a created payroll record
+     */
+    static String auditDetail(PayrollRecord record) {
+        return "employeeId=" + record.getEmployeeId() + " period=" + record.getPeriod() + " gross=" + record.getGrossPay() + " net=" + record.getNetPay();
+    }
+}
@@ -0,0 +1,133 @@
+package server;
+
+import common.PayrollRecord;
+import common.SimulationDelta;
+import common.SimulationParameters;
+import common.SimulationResult;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * PayrollSimulator recomputes payroll records under changed parameters with
+ * {@link PayrollCalculator}, in parallel and without writing anything back.
+ */
+final class PayrollSimulator {
+    private static final Comparator<SimulationDelta> BY_IMPACT = Comparator.comparingDouble(d -> Math.abs(d.getChange()));
+
+    private PayrollSimulator() {
+    }
+
+    /**
+     * @param inputs Records whose inputs are replayed (normally each employee's latest record)
+     * @param topN Number of most affected employees to return
+     */
+    static SimulationResult simulate(List<PayrollRecord> inputs, SimulationParameters params, int topN) {
+        double deductionRate = params.getDeductionRate() != null ? params.getDeductionRate() : PayrollCalculator.DEDUCTION_RATE;
+        Tally tally = inputs.parallelStream().collect(() -> new Tally(topN), (t, before) -> {
+            PayrollRecord after;
+            if (PayrollCalculator.hasComponents(before)) {
+                after = PayrollCalculator.calculate(before.getEmployeeId(), before.getPeriod(),
+                        before.getBaseSalary() * params.getBaseSalaryFactor(), before.getOvertimeHours(),
+                        before.getOvertimeRate() * params.getOvertimeRateFactor(), before.getBonus() * params.getBonusFactor(),
+                        before.getAllowance() * params.getAllowanceFactor(), deductionRate);
+            } else {
+                // 只录入了总工资的记录，总工资按基本工资处理
+                after = PayrollCalculator.fromGross(before.getEmployeeId(), before.getPeriod(),
+                        before.getGrossPay() * params.getBaseSalaryFactor(), deductionRate);
+            }
+            t.add(before, after);
+        }, Tally::combine);
+        return tally.toResult();
+    }
+
+    /**
+     * Combines results computed over disjoint sets of employees (one per shard).
+     */
+    static SimulationResult merge(List<SimulationResult> parts, int topN) {
+        SimulationResult total = new SimulationResult();
+        PriorityQueue<SimulationDelta> top = new PriorityQueue<>(BY_IMPACT);
+        for (SimulationResult part : parts) {
+            total.setEmployeeCount(total.getEmployeeCount() + part.getEmployeeCount());
+            total.setGrossPayBefore(total.getGrossPayBefore() + part.getGrossPayBefore());
+            total.setGrossPayAfter(total.getGrossPayAfter() + part.getGrossPayAfter());
+            total.setDeductionsBefore(total.getDeductionsBefore() + part.getDeductionsBefore());
+            total.setDeductionsAfter(total.getDeductionsAfter() + part.getDeductionsAfter());
+            total.setNetPayBefore(total.getNetPayBefore() + part.getNetPayBefore());
+            total.setNetPayAfter(total.getNetPayAfter() + part.getNetPayAfter());
+            for (SimulationDelta delta : part.getTopAffected()) {
+                offer(top, delta, topN);
+            }
+        }
+        total.setTopAffected(drain(top));
+        return total;
+    }
+
+    private static void offer(PriorityQueue<SimulationDelta> top, SimulationDelta delta, int topN) {
+        if (topN <= 0) {
+            return;
+        }
+        if (top.size() < topN) {
+            top.add(delta);
+        } else if (BY_IMPACT.compare(delta, top.peek()) > 0) {
+            top.poll();
+            top.add(delta);
+        }
+    }
+
+    private static List<SimulationDelta> drain(PriorityQueue<SimulationDelta> top) {
+        List<SimulationDelta> list = new ArrayList<>(top);
+        list.sort(BY_IMPACT.reversed());
+        return list;
+    }
+
+    /** Per-thread running totals plus a bounded min-heap of the largest changes. */
+    private static final class Tally {
+        final int topN;
+        final PriorityQueue<SimulationDelta> top = new PriorityQueue<>(BY_IMPACT);
+        int count;
+        double grossBefore, grossAfter, deductionsBefore, deductionsAfter, netBefore, netAfter;
+
+        Tally(int topN) {
+            this.topN = topN;
+        }
+
+        void add(PayrollRecord before, PayrollRecord after) {
+            count++;
+            grossBefore += before.getGrossPay();
+            grossAfter += after.getGrossPay();
+            deductionsBefore += before.getDeductions();
+            deductionsAfter += after.getDeductions();
+            netBefore += before.getNetPay();
+            netAfter += after.getNetPay();
+            offer(top, new SimulationDelta(before.getEmployeeId(), before.getPeriod(), before.getNetPay(), after.getNetPay()), topN);
+        }
+
+        void combine(Tally other) {
+            count += other.count;
+            grossBefore += other.grossBefore;
+            grossAfter += other.grossAfter;
+            deductionsBefore += other.deductionsBefore;
+            deductionsAfter += other.deductionsAfter;
+            netBefore += other.netBefore;
+            netAfter += other.netAfter;
+            for (SimulationDelta delta : other.top) {
+                offer(top, delta, topN);
+            }
+        }
+
+        SimulationResult toResult() {
+            SimulationResult result = new SimulationResult();
+            result.setEmployeeCount(count);
+            result.setGrossPayBefore(grossBefore);
+            result.setGrossPayAfter(grossAfter);
+            result.setDeductionsBefore(deductionsBefore);
+            result.setDeductionsAfter(deductionsAfter);
+            result.setNetPayBefore(netBefore);
+            result.setNetPayAfter(netAfter);
+            result.setTopAffected(drain(top));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package server;
+
+import common.Employee;
+import common.PayrollRecord;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * PayslipExporter renders every payslip of a period into one ZIP stream.
+ * One thread streams the Payroll/Employee join from the database, a pool sized to the CPU count
+ * renders payslips, and a single writer appends them to the ZIP. A semaphore caps the number of
+ * payslips between reader and writer, so memory stays bounded however large the period is.
+ */
+public class PayslipExporter {
+    private static final ExecutorService RENDER_POOL = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "payslip-render");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(2048));
+    private static final int MAX_IN_FLIGHT = Runtime.getRuntime().availableProcessors() * 64;
+
+    /** A rendered payslip on its way to the writer, or the end marker carrying the total count. */
+    private static class Rendered {
+        final String name;
+        final byte[] content;
+        final Throwable error;
+        final int total;
+
+        Rendered(String name, byte[] content, Throwable error, int total) {
+            this.name = name;
+            this.content = content;
+            this.error = error;
+            this.total = total;
+        }
+    }
+
+    private final PayslipTemplate template;
+
+    public PayslipExporter(PayslipTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Renders all payslips of the period and writes them as a ZIP to out; the caller closes out.
+     * @param period Period to export ("yyyy-MM")
+     * @param out Destination stream
+     * @return Number of payslips written
+     */
+    public int export(String period, OutputStream out) throws SQLException, IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Rendered> rendered = new LinkedBlockingQueue<>();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        String folder = "payslips-" + period + "/";
+        String extension = "." + template.getFileExtension();
+
+        Throwable[] writeFailure = new Throwable[1];
+        Thread writer = new Thread(() -> writeFailure[0] = writeZip(rendered, inFlight, out), "payslip-zip-writer");
+        writer.start();
+
+        int submitted = 0;
+        boolean includeArchive = PayrollArchiver.includesArchive(period);
+        String sql = "SELECT p.id, p.employeeId, p.period, p.baseSalary, p.overtimeHours, p.overtimeRate, p.bonus, p.allowance, p.grossPay, p.deductions, p.netPay, "
+                + "e.username, e.firstName, e.lastName, e.icPassport, e.role FROM ("
+                + PayrollDAO.select(" WHERE period = ?", includeArchive) + ") p JOIN Employee e ON e.id = p.employeeId";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            PayrollDAO.bind(stmt, includeArchive, period);
+            stmt.setFetchSize(1000);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                PayrollRecord rec = new PayrollRecord();
+                rec.setId(rs.getInt(1));
+                rec.setEmployeeId(rs.getInt(2));
+                rec.setPeriod(rs.getString(3));
+                rec.setBaseSalary(rs.getDouble(4));
+                rec.setOvertimeHours(rs.getDouble(5));
+                rec.setOvertimeRate(rs.getDouble(6));
+                rec.setBonus(rs.getDouble(7));
+                rec.setAllowance(rs.getDouble(8));
+                rec.setGrossPay(rs.getDouble(9));
+                rec.setDeductions(rs.getDouble(10));
+                rec.setNetPay(rs.getDouble(11));
+                Employee emp = new Employee();
+                emp.setId(rec.getEmployeeId());
+                emp.setUsername(rs.getString(12));
+                emp.setFirstName(rs.getString(13));
+                emp.setLastName(rs.getString(14));
+                emp.setIcPassport(rs.getString(15));
+                emp.setRole(rs.getString(16));
+                // 用户名可能含路径分隔符或“..”，只保留安全字符
+                String name = folder + String.valueOf(emp.getUsername()).replaceAll("[^A-Za-z0-9_-]", "_") + "-" + rec.getId() + extension;
+
+                inFlight.acquireUninterruptibly();
+                RENDER_POOL.execute(() -> {
+                    try {
+                        StringBuilder sb = BUFFERS.get();
+                        sb.setLength(0);
+                        template.render(rec, emp, sb);
+                        rendered.add(new Rendered(name, sb.toString().getBytes(StandardCharsets.UTF_8), null, 0));
+                    } catch (RuntimeException e) {
+                        rendered.add(new Rendered(name, null, e, 0));
+                    }
+                });
+                submitted++;
+            }
+        } finally {
+            rendered.add(new Rendered(null, null, null, submitted));
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (writeFailure[0] != null) {
+            throw new IOException("Payslip export failed: " + writeFailure[0].getMessage(), writeFailure[0]);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("[SERVER] Payslip export %s: %d payslips in %.2fs (%.0f/s)%n", period, submitted, seconds, submitted / Math.max(seconds, 1e-9));
+        return submitted;
+    }
+
+    private Throwable writeZip(BlockingQueue<Rendered> rendered, Semaphore inFlight, OutputStream out) {
+        int written = 0;
+        int total = -1;
+        long bytes = 0;
+        Throwable failure = null;
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.setLevel(Deflater.BEST_SPEED);
+        // 出错后仍继续取队列并释放许可，避免读取线程永久阻塞
+        while (total < 0 || written < total) {
+            Rendered item;
+            try {
+                item = rendered.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return e;
+            }
+            if (item.name == null) {
+                total = item.total;
+                continue;
+            }
+            inFlight.release();
+            written++;
+            if (failure != null) {
+                continue;
+            }
+            if (item.error != null) {
+                failure = item.error;
+                continue;
+            }
+            try {
+                zip.putNextEntry(new ZipEntry(item.name));
+                zip.write(item.content);
+                zip.closeEntry();
+                bytes += item.content.length;
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (written % 10000 == 0) {
+                System.out.println("[SERVER] Payslip export progress: " + written + " payslips, " + (bytes / 1024) + " KB rendered");
+            }
+        }
+        if (failure == null) {
+            try {
+                zip.finish();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,205 @@
+package server;
+
+import common.Employee;
+import common.PayrollRecord;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PayslipTemplate renders one payslip from a template with ${field} placeholders.
+ * The template is parsed once into literal and field segments, so rendering is a single pass
+ * with no lookups; instances are immutable and shared by all render threads.
+ */
+public class PayslipTemplate {
+    private static final String[] FIELDS = {
+        "username", "firstName", "lastName", "icPassport", "role", "employeeId", "period",
+        "baseSalary", "overtimeHours", "overtimeRate", "overtimePay", "bonus", "allowance", "grossPay", "deductions", "netPay"
+    };
+
+    public static final String TEXT = String.join("\n",
+        "==============================================",
+        "                   PAYSLIP",
+        "==============================================",
+        "Employee    : ${firstName} ${lastName} (${username})",
+        "Employee ID : ${employeeId}",
+        "IC/Passport : ${icPassport}",
+        "Period      : ${period}",
+        "----------------------------------------------",
+        "Base Salary      ${baseSalary}",
+        "Overtime         ${overtimeHours} h x ${overtimeRate} = ${overtimePay}",
+        "Bonus            ${bonus}",
+        "Allowance        ${allowance}",
+        "----------------------------------------------",
+        "Gross Pay        ${grossPay}",
+        "EPF Deductions   ${deductions}",
+        "Net Pay          ${netPay}",
+        "==============================================",
+        "");
+
+    public static final String HTML = String.join("\n",
+        "<!DOCTYPE html>",
+        "<html><head><meta charset=\"UTF-8\"><title>Payslip ${period} - ${username}</title></head>",
+        "<body style=\"font-family:Segoe UI,sans-serif\">",
+        "<h2>Payslip</h2>",
+        "<p><b>${firstName} ${lastName}</b> (${username})<br>Employee ID: ${employeeId}<br>IC/Passport: ${icPassport}<br>Period: ${period}</p>",
+        "<table border=\"1\" cellpadding=\"6\" cellspacing=\"0\">",
+        "<tr><td>Base Salary</td><td align=\"right\">${baseSalary}</td></tr>",
+        "<tr><td>Overtime (${overtimeHours} h x ${overtimeRate})</td><td align=\"right\">${overtimePay}</td></tr>",
+        "<tr><td>Bonus</td><td align=\"right\">${bonus}</td></tr>",
+        "<tr><td>Allowance</td><td align=\"right\">${allowance}</td></tr>",
+        "<tr><th align=\"left\">Gross Pay</th><th align=\"right\">${grossPay}</th></tr>",
+        "<tr><td>EPF Deductions</td><td align=\"right\">${deductions}</td></tr>",
+        "<tr><th align=\"left\">Net Pay</th><th align=\"right\">${netPay}</th></tr>",
+        "</table>",
+        "</body></html>",
+        "");
+
+    private final String[] literals;
+    private final int[] fields;
+    private final boolean html;
+
+    private PayslipTemplate(String[] literals, int[] fields, boolean html) {
+        this.literals = literals;
+        this.fields = fields;
+        this.html = html;
+    }
+
+    /**
+     * Parses a template; unknown placeholders are kept as literal text.
+     * @param source Template text
+     * @param html Whether field values must be HTML-escaped
+     */
+    public static PayslipTemplate compile(String source, boolean html) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> fields = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < source.length()) {
+            int start = source.indexOf("${", pos);
+            int end = start < 0 ? -1 : source.indexOf('}', start);
+            if (start < 0 || end < 0) {
+                literal.append(source, pos, source.length());
+                break;
+            }
+            int field = indexOfField(source.substring(start + 2, end));
+            literal.append(source, pos, start);
+            if (field < 0) {
+                literal.append(source, start, end + 1);
+            } else {
+                literals.add(literal.toString());
+                fields.add(field);
+                literal.setLength(0);
+            }
+            pos = end + 1;
+        }
+        literals.add(literal.toString());
+        int[] fieldArray = new int[fields.size()];
+        for (int i = 0; i < fieldArray.length; i++) {
+            fieldArray[i] = fields.get(i);
+        }
+        return new PayslipTemplate(literals.toArray(new String[0]), fieldArray, html);
+    }
+
+    private static final PayslipTemplate TEXT_TEMPLATE = compile(TEXT, false);
+    private static final PayslipTemplate HTML_TEMPLATE = compile(HTML, true);
+
+    /**
+     * Tells whether the format is "text" or "html".
+     */
+    public static boolean isFormat(String format) {
+        return "text".equalsIgnoreCase(format) || "html".equalsIgnoreCase(format);
+    }
+
+    /**
+     * Returns the shared compiled template for "text" or "html".
+     * @throws IllegalArgumentException for any other format
+     */
+    public static PayslipTemplate forFormat(String format) {
+        if (!isFormat(format)) {
+            throw new IllegalArgumentException("Unknown payslip format: " + format);
+        }
+        return "html".equalsIgnoreCase(format) ? HTML_TEMPLATE : TEXT_TEMPLATE;
+    }
+
+    public String getFileExtension() {
+        return html ? "html" : "txt";
+    }
+
+    private static int indexOfField(String name) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Renders a payslip into the given (reusable) builder.
+     */
+    public void render(PayrollRecord rec, Employee emp, StringBuilder out) {
+        for (int i = 0; i < fields.length; i++) {
+            out.append(literals[i]);
+            appendField(fields[i], rec, emp, out);
+        }
+        out.append(literals[literals.length - 1]);
+    }
+
+    private void appendField(int field, PayrollRecord rec, Employee emp, StringBuilder out) {
+        switch (field) {
+            case 0: appendText(emp.getUsername(), out); break;
+            case 1: appendText(emp.getFirstName(), out); break;
+            case 2: appendText(emp.getLastName(), out); break;
+            case 3: appendText(emp.getIcPassport(), out); break;
+            case 4: appendText(emp.getRole(), out); break;
+            case 5: out.append(rec.getEmployeeId()); break;
+            case 6: appendText(rec.getPeriod(), out); break;
+            case 7: appendMoney(rec.getBaseSalary(), out); break;
+            case 8: appendMoney(rec.getOvertimeHours(), out); break;
+            case 9: appendMoney(rec.getOvertimeRate(), out); break;
+            case 10: appendMoney(rec.getOvertimeHours() * rec.getOvertimeRate(), out); break;
+            case 11: appendMoney(rec.getBonus(), out); break;
+            case 12: appendMoney(rec.getAllowance(), out); break;
+            case 13: appendMoney(rec.getGrossPay(), out); break;
+            case 14: appendMoney(rec.getDeductions(), out); break;
+            default: appendMoney(rec.getNetPay(), out); break;
+        }
+    }
+
+    private void appendText(String value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        if (!html) {
+            out.append(value);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Appends a value with two decimals without going through String.format.
+     */
+    static void appendMoney(double value, StringBuilder out) {
+        long cents = Math.round(value * 100);
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        out.append(cents / 100).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+}
@@ -0,0 +1,277 @@
+package server;
+
+import common.ChangeEvent;
+import common.PayrollRecord;
+import common.RecalculationStatus;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RecalculationJob re-applies the payroll formula, with a corrected deduction rate, to the existing
+ * Payroll rows of a period range, updating them in place instead of inserting new records.
+ * <p>
+ * Rows are walked in id order in chunks (keyset: {@code id > lastId}); each chunk's row updates,
+ * year-to-date adjustments and the job's checkpoint commit in one transaction, so a job resumed
+ * after a crash or restart continues exactly after the last committed chunk. Between chunks the
+ * job sleeps in proportion to the time the chunk took, and backs off while RMI calls are queued.
+ */
+public class RecalculationJob implements Runnable {
+    private static final int CHUNK_SIZE = Integer.getInteger("payroll.recalc.chunkSize", 500);
+    // 工作时间占比，0.5 表示每处理一块后休息同样长的时间
+    private static final double DUTY_CYCLE = Double.parseDouble(System.getProperty("payroll.recalc.dutyCycle", "0.5"));
+    private static final long BUSY_BACKOFF_MS = Long.getLong("payroll.recalc.busyBackoffMs", 200);
+    // 任务串行执行，同一时间只有一个重算任务占用数据库
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "payroll-recalc");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String jobId;
+
+    private RecalculationJob(String jobId) {
+        this.jobId = jobId;
+    }
+
+    /**
+     * Records a new job and queues it.
+     * @return Job ID
+     */
+    public static String start(String fromPeriod, String toPeriod, double deductionRate) throws SQLException {
+        String jobId = UUID.randomUUID().toString();
+        String sql = "INSERT INTO RecalcJob (id, fromPeriod, toPeriod, deductionRate, status, totalRows, processed, updated, lastId, createdAt, updatedAt) "
+                + "VALUES (?, ?, ?, ?, 'PENDING', (SELECT COUNT(*) FROM Payroll WHERE period >= ? AND period <= ?), 0, 0, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobId);
+            stmt.setString(2, fromPeriod);
+            stmt.setString(3, toPeriod);
+            stmt.setDouble(4, deductionRate);
+            stmt.setString(5, fromPeriod);
+            stmt.setString(6, toPeriod);
+            stmt.executeUpdate();
+        }
+        EXECUTOR.submit(Tenant.propagate(new RecalculationJob(jobId)));
+        System.out.println("[SERVER] Recalculation job " + jobId + " queued for periods " + fromPeriod + ".." + toPeriod + ", deductionRate=" + deductionRate);
+        return jobId;
+    }
+
+    /**
+     * Re-queues jobs left PENDING or RUNNING by a previous server run. Called once at startup.
+     * @return Number of jobs resumed
+     */
+    public static int resumePending() throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT id FROM RecalcJob WHERE status IN ('PENDING', 'RUNNING') ORDER BY createdAt")) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        }
+        for (String id : ids) {
+            System.out.println("[SERVER] Resuming recalculation job " + id);
+            EXECUTOR.submit(Tenant.propagate(new RecalculationJob(id)));
+        }
+        return ids.size();
+    }
+
+    /**
+     * @return The job's status, or null if there is no such job
+     */
+    public static RecalculationStatus status(String jobId) throws SQLException {
+        String sql = "SELECT fromPeriod, toPeriod, deductionRate, status, totalRows, processed, updated, error FROM RecalcJob WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, jobId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            RecalculationStatus status = new RecalculationStatus();
+            status.setJobId(jobId);
+            status.setFromPeriod(rs.getString(1));
+            status.setToPeriod(rs.getString(2));
+            status.setDeductionRate(rs.getDouble(3));
+            status.setStatus(rs.getString(4));
+            status.setTotalRows(rs.getInt(5));
+            status.setProcessed(rs.getInt(6));
+            status.setUpdated(rs.getInt(7));
+            status.setError(rs.getString(8));
+            return status;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            RecalculationStatus job = status(jobId);
+            if (job == null || "COMPLETED".equals(job.getStatus()) || "FAILED".equals(job.getStatus())) {
+                return;
+            }
+            setStatus("RUNNING", null);
+            long start = System.currentTimeMillis();
+            int lastId = lastId();
+            int changedTotal = 0;
+            while (true) {
+                throttle();
+                long chunkStart = System.nanoTime();
+                int[] progress = runChunk(job, lastId);
+                if (progress == null) {
+                    break;
+                }
+                lastId = progress[0];
+                changedTotal += progress[1];
+                pause(System.nanoTime() - chunkStart);
+            }
+            setStatus("COMPLETED", null);
+            System.out.println("[SERVER] Recalculation job " + jobId + " completed: " + changedTotal + " rows changed in " + (System.currentTimeMillis() - start) + " ms");
+            if (changedTotal > 0) {
+                // 已有工资单被修改，刷新统计存储并让客户端重新同步
+                PayrollColumnStore.getInstance().load();
+                EventDispatcher.getInstance().publish(new ChangeEvent(ChangeEvent.Type.RESYNC, 0, 0, null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            e.printStackTrace();
+            try {
+                setStatus("FAILED", String.valueOf(e.getMessage()));
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Recalculates the next chunk after lastId and advances the checkpoint, in one transaction.
+     * @return {new lastId, rows changed}, or null when no rows are left
+     */
+    private int[] runChunk(RecalculationStatus job, int lastId) throws SQLException {
+        String select = "SELECT " + PayrollDAO.COLUMNS + " FROM Payroll WHERE id > ? AND period >= ? AND period <= ? ORDER BY id LIMIT ?";
+        String update = "UPDATE Payroll SET grossPay = ?, deductions = ?, netPay = ?, version = ? WHERE id = ?";
+        String checkpoint = "UPDATE RecalcJob SET lastId = ?, processed = processed + ?, updated = updated + ?, updatedAt = CURRENT_TIMESTAMP WHERE id = ?";
+        long version = ChangeVersion.begin();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<PayrollRecord> rows = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(select)) {
+                    stmt.setInt(1, lastId);
+                    stmt.setString(2, job.getFromPeriod());
+                    stmt.setString(3, job.getToPeriod());
+                    stmt.setInt(4, CHUNK_SIZE);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        rows.add(PayrollDAO.ROW.map(rs));
+                    }
+                }
+                if (rows.isEmpty()) {
+                    conn.rollback();
+                    return null;
+                }
+                int changed = 0;
+                try (PreparedStatement upd = conn.prepareStatement(update);
+                     PreparedStatement ytd = conn.prepareStatement(YearToDateDAO.ADJUST)) {
+                    for (PayrollRecord before : rows) {
+                        PayrollRecord after = recalculate(before, job.getDeductionRate());
+                        if (Math.abs(after.getNetPay() - before.getNetPay()) < 1e-9
+                                && Math.abs(after.getDeductions() - before.getDeductions()) < 1e-9
+                                && Math.abs(after.getGrossPay() - before.getGrossPay()) < 1e-9) {
+                            continue;
+                        }
+                        upd.setDouble(1, after.getGrossPay());
+                        upd.setDouble(2, after.getDeductions());
+                        upd.setDouble(3, after.getNetPay());
+                        upd.setLong(4, version);
+                        upd.setInt(5, before.getId());
+                        upd.addBatch();
+                        int year = YearToDateDAO.yearOf(before.getPeriod());
+                        if (year >= 0) {
+                            ytd.setDouble(1, after.getGrossPay() - before.getGrossPay());
+                            ytd.setDouble(2, after.getDeductions() - before.getDeductions());
+                            ytd.setDouble(3, after.getNetPay() - before.getNetPay());
+                            ytd.setInt(4, before.getEmployeeId());
+                            ytd.setInt(5, year);
+                            ytd.addBatch();
+                        }
+                        changed++;
+                    }
+                    if (changed > 0) {
+                        upd.executeBatch();
+                        ytd.executeBatch();
+                    }
+                }
+                int newLastId = rows.get(rows.size() - 1).getId();
+                try (PreparedStatement stmt = conn.prepareStatement(checkpoint)) {
+                    stmt.setInt(1, newLastId);
+                    stmt.setInt(2, rows.size());
+                    stmt.setInt(3, changed);
+                    stmt.setString(4, jobId);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+                return new int[]{newLastId, changed};
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            ChangeVersion.end(version);
+        }
+    }
+
+    /**
+     * Applies the formula to a record's stored inputs; lump-sum records keep their gross pay.
+     */
+    static PayrollRecord recalculate(PayrollRecord r, double deductionRate) {
+        if (PayrollCalculator.hasComponents(r)) {
+            return PayrollCalculator.calculate(r.getEmployeeId(), r.getPeriod(), r.getBaseSalary(), r.getOvertimeHours(),
+                    r.getOvertimeRate(), r.getBonus(), r.getAllowance(), deductionRate);
+        }
+        return PayrollCalculator.fromGross(r.getEmployeeId(), r.getPeriod(), r.getGrossPay(), deductionRate);
+    }
+
+    private void throttle() throws InterruptedException {
+        // 有请求在排队时让出数据库给在线请求
+        while (AdmissionControl.waitingCalls() > 0) {
+            Thread.sleep(BUSY_BACKOFF_MS);
+        }
+    }
+
+    private static void pause(long workNanos) throws InterruptedException {
+        if (DUTY_CYCLE >= 1) {
+            return;
+        }
+        long sleepMs = (long) (workNanos / 1_000_000 * (1 - DUTY_CYCLE) / Math.max(0.01, DUTY_CYCLE));
+        if (sleepMs > 0) {
+            Thread.sleep(sleepMs);
+        }
+    }
+
+    private int lastId() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT lastId FROM RecalcJob WHERE id = ?")) {
+            stmt.setString(1, jobId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void setStatus(String status, String error) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE RecalcJob SET status = ?, error = ?, updatedAt = CURRENT_TIMESTAMP WHERE id = ?")) {
+            stmt.setString(1, status);
+            stmt.setString(2, error);
+            stmt.setString(3, jobId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * RestoreTool rebuilds a database from a backup directory written by {@link PayrollBackup}:
+ * the latest full backup, then every incremental backup after it (or up to a given sequence).
+ * Run it with the server stopped.
+ * <pre>
+ * java -cp .:h2-2.3.232.jar server.RestoreTool backups ./payroll [--upTo 12] [--force]
+ * </pre>
+ */
+public class RestoreTool {
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: RestoreTool <backupDir> <targetDb> [--upTo sequence] [--force]");
+            return;
+        }
+        File dir = new File(args[0]);
+        String target = args[1];
+        int upTo = Integer.MAX_VALUE;
+        boolean force = false;
+        for (int i = 2; i < args.length; i++) {
+            if ("--upTo".equals(args[i])) {
+                upTo = Integer.parseInt(args[++i]);
+            } else if ("--force".equals(args[i])) {
+                force = true;
+            }
+        }
+        try {
+            restore(dir, target, upTo, force);
+        } catch (IOException e) {
+            System.err.println("Restore failed: " + e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Restores the backup chain ending at upTo into the database at target.
+     * Must run before anything else in the process opens a database connection.
+     */
+    static void restore(File dir, String target, int upTo, boolean force) throws SQLException, IOException {
+        List<PayrollBackup.Entry> chain = chain(PayrollBackup.readManifest(dir), upTo);
+        File dbFile = new File(target + ".mv.db");
+        if (dbFile.exists()) {
+            if (!force) {
+                throw new IOException(dbFile.getPath() + " already exists (use --force to overwrite)");
+            }
+            Files.delete(dbFile.toPath());
+        }
+        System.setProperty("payroll.db", target);
+        long start = System.currentTimeMillis();
+
+        PayrollBackup.Entry full = chain.get(0);
+        long bytes = unzipDatabase(new File(dir, full.file), dbFile);
+        System.out.println("[RESTORE] " + full.file + ": " + bytes / (1024 * 1024) + " MB in " + (System.currentTimeMillis() - start) + " ms");
+        // 旧备份可能早于当前表结构
+        SchemaMigrator.migrate();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (PayrollBackup.Entry incr : chain.subList(1, chain.size())) {
+                long t = System.currentTimeMillis();
+                long rows = PayrollBackup.applyIncrement(new File(dir, incr.file), conn);
+                System.out.println("[RESTORE] " + incr.file + ": " + rows + " rows in " + (System.currentTimeMillis() - t) + " ms");
+            }
+            conn.setAutoCommit(false);
+            int deleted = applyTombstones(conn, full.toVersion);
+            alignIdentity(conn, "Employee", "Employee");
+            alignIdentity(conn, "Payroll", "Payroll", "PayrollArchive");
+            conn.commit();
+            if (deleted > 0) {
+                System.out.println("[RESTORE] Removed " + deleted + " rows deleted after the full backup");
+            }
+        }
+        // 增量里的行按原表合并，再按归档状态移动已结账期间；全量备份中的年度累计本身一致，有增量时才重建
+        PayrollArchiver.init();
+        if (PayrollArchiver.getCutoffPeriod() != null) {
+            new PayrollArchiver().archiveBefore(PayrollArchiver.getCutoffPeriod());
+        }
+        if (chain.size() > 1) {
+            new YearToDateDAO().rebuild(0);
+        }
+        long ms = System.currentTimeMillis() - start;
+        PayrollBackup.Entry last = chain.get(chain.size() - 1);
+        System.out.println("[RESTORE] Restored backup " + last.sequence + " (" + chain.size() + " files) into " + dbFile.getPath()
+                + " in " + ms + " ms (" + String.format("%.0f", bytes / 1048576.0 * 1000 / Math.max(1, ms)) + " MB/s)");
+    }
+
+    /**
+     * @return The latest full backup at or before upTo, followed by the incrementals after it
+     */
+    private static List<PayrollBackup.Entry> chain(List<PayrollBackup.Entry> entries, int upTo) throws IOException {
+        int fullIndex = -1;
+        int end = -1;
+        for (int i = 0; i < entries.size() && entries.get(i).sequence <= upTo; i++) {
+            end = i;
+            if (entries.get(i).full) {
+                fullIndex = i;
+            }
+        }
+        if (fullIndex < 0) {
+            throw new IOException("No full backup" + (upTo == Integer.MAX_VALUE ? "" : " at or before " + upTo));
+        }
+        List<PayrollBackup.Entry> chain = new ArrayList<>(entries.subList(fullIndex, end + 1));
+        for (int i = 1; i < chain.size(); i++) {
+            if (chain.get(i).fromVersion != chain.get(i - 1).toVersion) {
+                throw new IOException("Backup chain broken before " + chain.get(i).file);
+            }
+        }
+        return chain;
+    }
+
+    private static long unzipDatabase(File zip, File dbFile) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(zip), 1 << 16))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                if (entry.getName().endsWith(".mv.db")) {
+                    return Files.copy(in, dbFile.toPath());
+                }
+            }
+        }
+        throw new IOException("No database file in " + zip);
+    }
+
+    private static int applyTombstones(Connection conn, long sinceVersion) throws SQLException {
+        String[][] deletes = {
+            {"Payroll", "Payroll"},
+            {"PayrollArchive", "Payroll"},
+            {"Employee", "Employee"},
+        };
+        int deleted = 0;
+        for (String[] d : deletes) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + d[0] + " WHERE id IN (SELECT rowId FROM DeletedRow WHERE tableName = ? AND version > ?)")) {
+                stmt.setString(1, d[1]);
+                stmt.setLong(2, sinceVersion);
+                deleted += stmt.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Restarts an identity column after the highest ID in use or ever deleted, since rows merged
+     * with explicit IDs do not advance it.
+     */
+    private static void alignIdentity(Connection conn, String table, String... idTables) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            long maxId = 0;
+            for (String idTable : idTables) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + idTable)) {
+                    rs.next();
+                    maxId = Math.max(maxId, rs.getLong(1));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(rowId), 0) FROM DeletedRow WHERE tableName = '" + table + "'")) {
+                rs.next();
+                maxId = Math.max(maxId, rs.getLong(1));
+            }
+            long increment = 1;
+            try (ResultSet rs = stmt.executeQuery("SELECT IDENTITY_INCREMENT FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = '" + table.toUpperCase() + "' AND COLUMN_NAME = 'ID'")) {
+                if (rs.next()) {
+                    increment = Math.max(1, rs.getLong(1));
+                }
+            }
+            if (maxId > 0) {
+                stmt.executeUpdate("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (maxId + increment));
+            }
+        }
+    }
+}
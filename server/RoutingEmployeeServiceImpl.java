@@ -0,0 +1,82 @@
+package server;
+
+import common.ChangeSet;
+import common.Employee;
+import common.EmployeeService;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * RoutingEmployeeServiceImpl forwards employee calls to the owning shard.
+ * Username-keyed calls route by username hash, ID-keyed calls by ID; listings are scatter-gathered.
+ */
+public class RoutingEmployeeServiceImpl extends UnicastRemoteObject implements EmployeeService {
+    private final ShardRouter router;
+
+    public RoutingEmployeeServiceImpl(ShardRouter router) throws RemoteException {
+        super();
+        this.router = router;
+    }
+
+    @Override
+    public boolean register(Employee employee) throws RemoteException {
+        return router.employeeShardForUsername(employee.getUsername()).register(employee);
+    }
+
+    @Override
+    public Employee login(String username, String password) throws RemoteException {
+        return router.employeeShardForUsername(username).login(username, password);
+    }
+
+    @Override
+    public boolean updateProfile(Employee employee) throws RemoteException {
+        return router.employeeShardForId(employee.getId()).updateProfile(employee);
+    }
+
+    @Override
+    public Employee getEmployeeByUsername(String username) throws RemoteException {
+        return router.employeeShardForUsername(username).getEmployeeByUsername(username);
+    }
+
+    @Override
+    public List<Employee> getAllEmployees() throws RemoteException {
+        List<Employee> all = router.gather(router.getEmployeeShards(), EmployeeService::getAllEmployees);
+        all.sort(Comparator.comparingInt(Employee::getId));
+        return all;
+    }
+
+    @Override
+    public boolean deleteEmployee(int id) throws RemoteException {
+        return router.employeeShardForId(id).deleteEmployee(id);
+    }
+
+    @Override
+    public ChangeSet<Employee> getChangesSince(long version) throws RemoteException {
+        return ShardRouter.mergeChanges(router.scatter(router.getEmployeeShards(), shard -> shard.getChangesSince(version)));
+    }
+
+    @Override
+    public List<Integer> deleteEmployees(List<Integer> ids) throws RemoteException {
+        EmployeeServiceImpl.validateDeletion(ids);
+        Map<Integer, List<Integer>> idsByShard = new TreeMap<>();
+        for (int id : ids) {
+            idsByShard.computeIfAbsent(router.getShardMap().shardForId(id), s -> new ArrayList<>()).add(id);
+        }
+        List<Integer> deleted = router.gather(new ArrayList<>(idsByShard.keySet()),
+                shard -> router.getEmployeeShards().get(shard).deleteEmployees(idsByShard.get(shard)));
+        deleted.sort(null);
+        return deleted;
+    }
+
+    @Override
+    public List<Employee> searchEmployees(String query, int limit) throws RemoteException {
+        // 每个分片返回各自的前 limit 个，合并后按同一评分重新排序
+        List<Employee> all = router.gather(router.getEmployeeShards(), shard -> shard.searchEmployees(query, limit));
+        return EmployeeSearchIndex.rank(query, all, limit);
+    }
+}
@@ -0,0 +1,334 @@
+package server;
+
+import common.ChangeSet;
+import common.PayrollDistribution;
+import common.PayrollEntry;
+import common.PayrollEntryResult;
+import common.PayrollEventListener;
+import common.PayrollRecord;
+import common.PayrollService;
+import common.PayrollSummary;
+import common.PayrollTrend;
+import common.RecalculationStatus;
+import common.SimulationParameters;
+import common.SimulationResult;
+import common.YearToDate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * RoutingPayrollServiceImpl forwards payroll calls to the shard that owns the employee.
+ * Payroll rows live on the same shard as their employee; period-wide listings are scatter-gathered.
+ */
+public class RoutingPayrollServiceImpl extends UnicastRemoteObject implements PayrollService {
+    private final ShardRouter router;
+    private static final List<String> STATUS_ORDER = java.util.Arrays.asList("FAILED", "PENDING", "RUNNING", "COMPLETED");
+
+    public RoutingPayrollServiceImpl(ShardRouter router) throws RemoteException {
+        super();
+        this.router = router;
+    }
+
+    @Override
+    public PayrollRecord calculatePayroll(int employeeId, String period) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).calculatePayroll(employeeId, period);
+    }
+
+    @Override
+    public PayrollRecord calculatePayroll(int employeeId, String period, double grossPay) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).calculatePayroll(employeeId, period, grossPay);
+    }
+
+    @Override
+    public PayrollRecord calculatePayroll(int employeeId, String period, double baseSalary, double overtimeHours, double overtimeRate, double bonus, double allowance) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).calculatePayroll(employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance);
+    }
+
+    /**
+     * Splits the batch by owning shard (employees and their payroll share a shard, chosen by
+     * username), submits the parts in parallel and puts the results back in entry order.
+     */
+    @Override
+    public List<PayrollEntryResult> calculatePayrollBatch(String period, List<PayrollEntry> entries) throws RemoteException {
+        PayrollServiceImpl.validateBatch(period, entries);
+        Map<Integer, List<Integer>> rowsByShard = new TreeMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            PayrollEntry entry = entries.get(i);
+            // 缺少用户名的行交给分片0，由分片逐行校验并拒绝
+            int shard = entry == null || entry.getUsername() == null ? 0 : router.getShardMap().shardForUsername(entry.getUsername());
+            rowsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(i);
+        }
+        List<Integer> shards = new ArrayList<>(rowsByShard.keySet());
+        List<List<PayrollEntryResult>> parts = router.scatter(shards, shard -> {
+            List<PayrollEntry> part = new ArrayList<>();
+            for (int row : rowsByShard.get(shard)) {
+                part.add(entries.get(row));
+            }
+            return router.getPayrollShards().get(shard).calculatePayrollBatch(period, part);
+        });
+        PayrollEntryResult[] results = new PayrollEntryResult[entries.size()];
+        for (int s = 0; s < shards.size(); s++) {
+            List<Integer> rows = rowsByShard.get(shards.get(s));
+            for (int k = 0; k < rows.size(); k++) {
+                results[rows.get(k)] = parts.get(s).get(k);
+            }
+        }
+        return java.util.Arrays.asList(results);
+    }
+
+    @Override
+    public List<PayrollRecord> getPayrollRecords(int employeeId) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).getPayrollRecords(employeeId);
+    }
+
+    @Override
+    public List<PayrollRecord> getPayrollRecords(int employeeId, String fromPeriod, String toPeriod) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).getPayrollRecords(employeeId, fromPeriod, toPeriod);
+    }
+
+    @Override
+    public List<PayrollRecord> getPayrollRecordsForPeriod(String period) throws RemoteException {
+        List<PayrollRecord> all = router.gather(router.getPayrollShards(), shard -> shard.getPayrollRecordsForPeriod(period));
+        all.sort(Comparator.comparingInt(PayrollRecord::getId));
+        return all;
+    }
+
+    @Override
+    public List<PayrollRecord> getAllPayrollRecords() throws RemoteException {
+        List<PayrollRecord> all = router.gather(router.getPayrollShards(), PayrollService::getAllPayrollRecords);
+        all.sort(Comparator.comparingInt(PayrollRecord::getId));
+        return all;
+    }
+
+    @Override
+    public ChangeSet<PayrollRecord> getChangesSince(long version) throws RemoteException {
+        return ShardRouter.mergeChanges(router.scatter(router.getPayrollShards(), shard -> shard.getChangesSince(version)));
+    }
+
+    @Override
+    public ChangeSet<PayrollRecord> getChangesSince(int employeeId, long version) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).getChangesSince(employeeId, version);
+    }
+
+    @Override
+    public void addEventListener(PayrollEventListener listener) throws RemoteException {
+        // 客户端回调存根直接注册到每个分片，事件不经过路由进程
+        router.scatter(router.getPayrollShards(), shard -> {
+            shard.addEventListener(listener);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeEventListener(PayrollEventListener listener) throws RemoteException {
+        router.scatter(router.getPayrollShards(), shard -> {
+            shard.removeEventListener(listener);
+            return null;
+        });
+    }
+
+    @Override
+    public YearToDate getYearToDate(int employeeId, int year) throws RemoteException {
+        return router.payrollShardForEmployee(employeeId).getYearToDate(employeeId, year);
+    }
+
+    /**
+     * Merges each shard's per-group count/sum/min/max into one summary per group.
+     */
+    @Override
+    public List<PayrollSummary> getPayrollSummary(String groupBy, String measure) throws RemoteException {
+        Map<String, PayrollSummary> merged = new LinkedHashMap<>();
+        for (List<PayrollSummary> shardResult : router.scatter(router.getPayrollShards(), shard -> shard.getPayrollSummary(groupBy, measure))) {
+            for (PayrollSummary summary : shardResult) {
+                PayrollSummary existing = merged.putIfAbsent(summary.getKey(), summary);
+                if (existing != null) {
+                    existing.merge(summary);
+                }
+            }
+        }
+        List<PayrollSummary> result = new ArrayList<>(merged.values());
+        if ("employee".equalsIgnoreCase(groupBy)) {
+            result.sort(Comparator.comparingInt(summary -> Integer.parseInt(summary.getKey())));
+        } else {
+            result.sort(Comparator.comparing(PayrollSummary::getKey));
+        }
+        return result;
+    }
+
+    /**
+     * Merges each shard's sketches per group, so percentiles are computed over all shards' rows.
+     */
+    @Override
+    public List<PayrollDistribution> getPayrollDistribution(String groupBy, String measure) throws RemoteException {
+        Map<String, PayrollDistribution> merged = new TreeMap<>();
+        for (List<PayrollDistribution> shardResult : router.scatter(router.getPayrollShards(), shard -> shard.getPayrollDistribution(groupBy, measure))) {
+            for (PayrollDistribution distribution : shardResult) {
+                PayrollDistribution existing = merged.putIfAbsent(distribution.getKey(), distribution);
+                if (existing != null) {
+                    existing.getSketch().merge(distribution.getSketch());
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    @Override
+    public List<PayrollTrend> getPayrollTrend(String measure) throws RemoteException {
+        return PayrollColumnStore.trend(getPayrollDistribution("period", measure));
+    }
+
+    @Override
+    public SimulationResult simulatePayroll(SimulationParameters params, int topN) throws RemoteException {
+        PayrollServiceImpl.validateSimulation(params, topN);
+        return PayrollSimulator.merge(router.scatter(router.getPayrollShards(), shard -> shard.simulatePayroll(params, topN)), topN);
+    }
+
+    /**
+     * Starts the job on every shard. The returned ID joins the shard job IDs in shard order,
+     * so status lookups need no router-side state.
+     */
+    @Override
+    public String startRecalculation(String fromPeriod, String toPeriod, double deductionRate) throws RemoteException {
+        PayrollServiceImpl.validateRecalculation(fromPeriod, toPeriod, deductionRate);
+        return String.join("/", router.scatter(router.getPayrollShards(), shard -> shard.startRecalculation(fromPeriod, toPeriod, deductionRate)));
+    }
+
+    @Override
+    public RecalculationStatus getRecalculationStatus(String jobId) throws RemoteException {
+        String[] shardJobIds = jobId.split("/");
+        List<PayrollService> shards = router.getPayrollShards();
+        if (shardJobIds.length != shards.size()) {
+            throw new RemoteException("Unknown recalculation job: " + jobId);
+        }
+        RecalculationStatus total = null;
+        for (int i = 0; i < shards.size(); i++) {
+            RecalculationStatus part = shards.get(i).getRecalculationStatus(shardJobIds[i]);
+            if (total == null) {
+                total = part;
+                total.setJobId(jobId);
+                continue;
+            }
+            total.setTotalRows(total.getTotalRows() + part.getTotalRows());
+            total.setProcessed(total.getProcessed() + part.getProcessed());
+            total.setUpdated(total.getUpdated() + part.getUpdated());
+            // 任一分片失败则整体失败；否则取进度最慢的分片状态，全部完成才算完成
+            if (STATUS_ORDER.indexOf(part.getStatus()) < STATUS_ORDER.indexOf(total.getStatus())) {
+                total.setStatus(part.getStatus());
+            }
+            if (part.getError() != null) {
+                total.setError(part.getError());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Starts the export on every shard and merges the shard ZIPs entry by entry into one ZIP.
+     */
+    @Override
+    public String startPayslipExport(String period, String format) throws RemoteException {
+        PayrollServiceImpl.validateExport(period, format);
+        List<PayrollService> shards = router.getPayrollShards();
+        List<String> shardExports = router.scatter(shards, shard -> shard.startPayslipExport(period, format));
+        ExportChannel channel = ExportChannel.open();
+        Thread t = new Thread(() -> {
+            // 出错时不能关闭ZIP：关闭会写出完整的目录并结束通道，客户端会把截断的压缩包当作成功
+            ZipOutputStream zip = new ZipOutputStream(channel);
+            try {
+                zip.setLevel(Deflater.BEST_SPEED);
+                byte[] buffer = new byte[64 * 1024];
+                for (int i = 0; i < shards.size(); i++) {
+                    try (ZipInputStream in = new ZipInputStream(new ShardExportStream(shards.get(i), shardExports.get(i)))) {
+                        ZipEntry entry;
+                        while ((entry = in.getNextEntry()) != null) {
+                            zip.putNextEntry(new ZipEntry(entry.getName()));
+                            int n;
+                            while ((n = in.read(buffer)) > 0) {
+                                zip.write(buffer, 0, n);
+                            }
+                            zip.closeEntry();
+                        }
+                    }
+                }
+                zip.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+                channel.fail(e);
+            }
+        }, "payslip-export-merge");
+        t.setDaemon(true);
+        t.start();
+        return channel.getId();
+    }
+
+    @Override
+    public byte[] readExportChunk(String exportId) throws RemoteException {
+        return ExportChannel.read(exportId);
+    }
+
+    /** Reads one shard's export as a plain InputStream by pulling its chunks. */
+    private static class ShardExportStream extends InputStream {
+        private final PayrollService shard;
+        private final String exportId;
+        private byte[] chunk = new byte[0];
+        private int pos;
+        private boolean done;
+
+        ShardExportStream(PayrollService shard, String exportId) {
+            this.shard = shard;
+            this.exportId = exportId;
+        }
+
+        private boolean fill() throws IOException {
+            while (!done && pos == chunk.length) {
+                byte[] next = shard.readExportChunk(exportId);
+                if (next == null) {
+                    done = true;
+                } else {
+                    chunk = next;
+                    pos = 0;
+                }
+            }
+            return pos < chunk.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[pos++] & 0xff : -1;
+        }
+
+        /** Drains the rest (the ZIP central directory) so the shard can finish its export. */
+        @Override
+        public void close() throws IOException {
+            while (fill()) {
+                pos = chunk.length;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package server;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to an object.
+ * Mappers read columns by position, so they are only valid for the SELECT list they were
+ * written against (e.g. {@link PayrollDAO#COLUMNS}, {@link EmployeeDAO#COLUMNS}).
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,142 @@
+package server;
+
+import common.PayrollRecord;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures reading the whole Payroll table three ways: mapping columns by name into a list (the
+ * old DAO code), the index-based {@link PayrollDAO#ROW} mapper into a list, and streaming the
+ * same mapper to a visitor with {@link Rows#forEach}:
+ * <pre>
+ * java -cp .:h2-2.3.232.jar -Dpayroll.db=./payroll-bench server.RowMapperBenchmark [rows] [runs]
+ * </pre>
+ * Missing rows are generated first (default 200000 rows, 15 runs), so -Dpayroll.db must name a
+ * scratch database; the benchmark refuses to run against the default ./payroll.
+ * Prints the median time and the bytes allocated per row for each variant.
+ */
+public class RowMapperBenchmark {
+    private interface Variant {
+        int run() throws SQLException;
+    }
+
+    // 改造前的写法：每行按列名查找
+    private static final RowMapper<PayrollRecord> BY_NAME = rs -> {
+        PayrollRecord record = new PayrollRecord();
+        record.setId(rs.getInt("id"));
+        record.setEmployeeId(rs.getInt("employeeId"));
+        record.setPeriod(rs.getString("period"));
+        record.setBaseSalary(rs.getDouble("baseSalary"));
+        record.setOvertimeHours(rs.getDouble("overtimeHours"));
+        record.setOvertimeRate(rs.getDouble("overtimeRate"));
+        record.setBonus(rs.getDouble("bonus"));
+        record.setAllowance(rs.getDouble("allowance"));
+        record.setGrossPay(rs.getDouble("grossPay"));
+        record.setDeductions(rs.getDouble("deductions"));
+        record.setNetPay(rs.getDouble("netPay"));
+        return record;
+    };
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        String db = System.getProperty("payroll.db");
+        if (db == null || new File(db).getAbsoluteFile().toPath().normalize().equals(new File("payroll").getAbsoluteFile().toPath())) {
+            System.err.println("Set -Dpayroll.db to a scratch database (e.g. ./payroll-bench): the benchmark inserts test data.");
+            System.exit(1);
+        }
+        SchemaMigrator.migrate();
+        int existing = seed(rows);
+        System.out.println("Payroll rows: " + existing + ", runs: " + runs);
+
+        String sql = "SELECT " + PayrollDAO.COLUMNS + " FROM Payroll ORDER BY id";
+        measure("by-name list", runs, existing, () -> Rows.list(sql, Rows.Binder.NONE, BY_NAME).size());
+        measure("index-mapper list", runs, existing, () -> Rows.list(sql, Rows.Binder.NONE, PayrollDAO.ROW).size());
+        measure("forEach visitor", runs, existing, () -> {
+            double[] total = new double[1];
+            int n = Rows.forEach(sql, Rows.Binder.NONE, PayrollDAO.ROW, r -> total[0] += r.getNetPay());
+            return total[0] >= 0 ? n : -1;
+        });
+    }
+
+    /**
+     * Inserts generated employees and payroll rows until the table has at least the given number.
+     * @return Number of payroll rows
+     */
+    private static int seed(int rows) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            int existing;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Payroll")) {
+                rs.next();
+                existing = rs.getInt(1);
+            }
+            if (existing >= rows) {
+                return existing;
+            }
+            conn.setAutoCommit(false);
+            int employees = 1000;
+            List<Integer> ids = new ArrayList<>();
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO Employee (username, password, firstName, lastName, icPassport, role, version) VALUES (?, 'x', 'Bench', ?, 'X', 'employee', 1)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < employees; i++) {
+                    insert.setString(1, "bench-" + System.nanoTime() + "-" + i);
+                    insert.setString(2, "E" + i);
+                    insert.executeUpdate();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        keys.next();
+                        ids.add(keys.getInt(1));
+                    }
+                }
+            }
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO Payroll (employeeId, period, baseSalary, overtimeHours, overtimeRate, bonus, allowance, grossPay, deductions, netPay, version) VALUES (?, ?, ?, 0, 0, 0, 0, ?, ?, ?, 1)")) {
+                for (int i = existing; i < rows; i++) {
+                    double gross = 3000 + i % 500;
+                    insert.setInt(1, ids.get(i % employees));
+                    insert.setString(2, String.format("%04d-%02d", 2000 + i / employees / 12 % 30, i / employees % 12 + 1));
+                    insert.setDouble(3, gross);
+                    insert.setDouble(4, gross);
+                    insert.setDouble(5, gross * 0.1);
+                    insert.setDouble(6, gross * 0.9);
+                    insert.addBatch();
+                    if (i % 1000 == 999) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+            return rows;
+        }
+    }
+
+    private static void measure(String name, int runs, int rows, Variant variant) throws SQLException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long self = Thread.currentThread().getId();
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            variant.run();
+        }
+        long[] times = new long[runs];
+        long allocated = 0;
+        for (int i = 0; i < runs; i++) {
+            long bytes = threads.getThreadAllocatedBytes(self);
+            long start = System.nanoTime();
+            if (variant.run() != rows) {
+                throw new IllegalStateException(name + " did not read every row");
+            }
+            times[i] = System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(self) - bytes;
+        }
+        Arrays.sort(times);
+        System.out.printf("%-18s %6.0f ms  %5d B/row%n", name, times[runs / 2] / 1e6, allocated / runs / Math.max(rows, 1));
+    }
+}
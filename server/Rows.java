@@ -0,0 +1,68 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs a query and hands each row, mapped once by a {@link RowMapper}, to a list or a visitor.
+ * SQLExceptions are propagated; the DAOs decide how to report them.
+ */
+final class Rows {
+    // 流式读取时每次从结果集取的行数
+    private static final int FETCH_SIZE = Integer.getInteger("payroll.jdbc.fetchSize", 1000);
+
+    /** Binds the parameters of a prepared query. */
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement stmt) throws SQLException;
+
+        Binder NONE = stmt -> { };
+    }
+
+    private Rows() {
+    }
+
+    /**
+     * Streams every row to the visitor without building a list.
+     * @return Number of rows visited
+     */
+    static <T> int forEach(String sql, Binder binder, RowMapper<T> mapper, Consumer<? super T> visitor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            binder.bind(stmt);
+            int count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    visitor.accept(mapper.map(rs));
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    static <T> List<T> list(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        List<T> list = new ArrayList<>();
+        forEach(sql, binder, mapper, list::add);
+        return list;
+    }
+
+    /**
+     * @return The first row, or null if the query returned nothing
+     */
+    static <T> T first(String sql, Binder binder, RowMapper<T> mapper) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            binder.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapper.map(rs) : null;
+            }
+        }
+    }
+}
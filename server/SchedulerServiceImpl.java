@@ -0,0 +1,90 @@
+package server;
+
+import common.JobRun;
+import common.JobStatus;
+import common.SchedulerService;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * SchedulerServiceImpl exposes the server's job scheduler over RMI.
+ */
+public class SchedulerServiceImpl extends UnicastRemoteObject implements SchedulerService {
+    private final JobScheduler scheduler = JobScheduler.getInstance();
+
+    public SchedulerServiceImpl() throws RemoteException {
+        super();
+    }
+
+    /**
+     * Returns every job with its schedule, next run and last outcome.
+     */
+    @Override
+    public List<JobStatus> getJobs() throws RemoteException {
+        try {
+            return scheduler.getJobs();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RemoteException("Failed to read jobs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a job's most recent runs, newest first.
+     * @param limit Maximum number of runs (1-1000)
+     */
+    @Override
+    public List<JobRun> getJobRuns(String name, int limit) throws RemoteException {
+        try {
+            return scheduler.getRuns(name, Math.max(1, Math.min(1000, limit)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RemoteException("Failed to read job runs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates or replaces a job.
+     * @param type PAYROLL_RUN, PAYSLIP_EXPORT, ARCHIVE or BACKUP
+     * @param cron Five-field cron expression, e.g. "0 6 1 * *" for 06:00 on the 1st of each month
+     * @param parameters "key=value" pairs separated by ';' (period, format, dir, horizonMonths, fullEvery)
+     */
+    @Override
+    public void scheduleJob(String name, String type, String cron, String parameters) throws RemoteException {
+        System.out.println("[SERVER] Schedule job: " + name + " " + type + " '" + cron + "' " + parameters);
+        if (name == null || name.trim().isEmpty() || name.length() > 64) {
+            throw new RemoteException("Job name must be 1-64 characters.");
+        }
+        try {
+            scheduler.schedule(name.trim(), JobScheduler.JobType.valueOf(String.valueOf(type).toUpperCase()), cron, parameters);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException("Invalid job: " + e.getMessage());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RemoteException("Failed to schedule job: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean removeJob(String name) throws RemoteException {
+        System.out.println("[SERVER] Remove job: " + name);
+        try {
+            return scheduler.remove(name);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new RemoteException("Failed to remove job: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a job immediately.
+     * @return false if the job is already running
+     */
+    @Override
+    public boolean runJobNow(String name) throws RemoteException {
+        System.out.println("[SERVER] Run job now: " + name);
+        return scheduler.trigger(name);
+    }
+}
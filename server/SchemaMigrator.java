@@ -0,0 +1,176 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * SchemaMigrator brings the database schema up to date with an ordered list of migrations.
+ * Each applied migration is recorded in schema_version with a CRC32 checksum of its statements;
+ * a current database costs one SELECT and no DDL, and an edited migration that was already
+ * applied stops startup instead of silently diverging.
+ * Statements must be idempotent (IF NOT EXISTS etc.), so a migration interrupted by a crash
+ * can simply run again. New schema changes are appended as new migrations, never edited in.
+ */
+public class SchemaMigrator {
+    /** Extra work a migration does after its statements, e.g. backfilling derived data. */
+    interface Action {
+        void run(Connection conn) throws SQLException;
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final String[] statements;
+        final Action action;
+
+        Migration(int version, String description, Action action, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+            this.action = action;
+        }
+
+        long checksum() {
+            CRC32 crc = new CRC32();
+            for (String sql : statements) {
+                crc.update(sql.getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
+            return crc.getValue();
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        MIGRATIONS.add(new Migration(1, "Employee and Payroll tables", null,
+            "CREATE TABLE IF NOT EXISTS Employee (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(255) UNIQUE, password VARCHAR(255), firstName VARCHAR(255), lastName VARCHAR(255), icPassport VARCHAR(255), role VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS Payroll (id INT AUTO_INCREMENT PRIMARY KEY, employeeId INT, period VARCHAR(255), baseSalary DOUBLE, overtimeHours DOUBLE, overtimeRate DOUBLE, bonus DOUBLE, allowance DOUBLE, grossPay DOUBLE, deductions DOUBLE, netPay DOUBLE, FOREIGN KEY (employeeId) REFERENCES Employee(id))"));
+        // 增量同步：行版本号 + 删除墓碑表
+        MIGRATIONS.add(new Migration(2, "Row versions and tombstones for delta sync", null,
+            "ALTER TABLE Employee ADD COLUMN IF NOT EXISTS version BIGINT",
+            "ALTER TABLE Payroll ADD COLUMN IF NOT EXISTS version BIGINT",
+            "UPDATE Employee SET version = 1 WHERE version IS NULL",
+            "UPDATE Payroll SET version = 1 WHERE version IS NULL",
+            "CREATE INDEX IF NOT EXISTS idx_employee_version ON Employee(version)",
+            "CREATE INDEX IF NOT EXISTS idx_payroll_version ON Payroll(version)",
+            "CREATE TABLE IF NOT EXISTS DeletedRow (tableName VARCHAR(32), rowId INT, version BIGINT)",
+            "CREATE INDEX IF NOT EXISTS idx_deletedrow_version ON DeletedRow(tableName, version)"));
+        // 已结账期间的归档表，列与 Payroll 一致
+        MIGRATIONS.add(new Migration(3, "Payroll archive for closed periods", null,
+            "CREATE TABLE IF NOT EXISTS PayrollArchive (id INT PRIMARY KEY, employeeId INT, period VARCHAR(255), baseSalary DOUBLE, overtimeHours DOUBLE, overtimeRate DOUBLE, bonus DOUBLE, allowance DOUBLE, grossPay DOUBLE, deductions DOUBLE, netPay DOUBLE, version BIGINT)",
+            "CREATE INDEX IF NOT EXISTS idx_archive_employee ON PayrollArchive(employeeId, period)",
+            "CREATE INDEX IF NOT EXISTS idx_archive_period ON PayrollArchive(period)",
+            "CREATE INDEX IF NOT EXISTS idx_archive_version ON PayrollArchive(version)",
+            "CREATE TABLE IF NOT EXISTS ArchiveState (id INT PRIMARY KEY, cutoffPeriod VARCHAR(16))"));
+        // 年度累计（YTD），首次创建时从已有工资单回填
+        MIGRATIONS.add(new Migration(4, "Year-to-date accumulators",
+            conn -> YearToDateDAO.rebuild(conn, 0),
+            "CREATE TABLE IF NOT EXISTS PayrollYtd (employeeId INT, payYear INT, periodCount INT, grossPay DOUBLE, deductions DOUBLE, netPay DOUBLE, PRIMARY KEY (employeeId, payYear))"));
+        // 按期间范围查询
+        MIGRATIONS.add(new Migration(5, "Period range indexes", null,
+            "CREATE INDEX IF NOT EXISTS idx_payroll_employee_period ON Payroll(employeeId, period)",
+            "CREATE INDEX IF NOT EXISTS idx_payroll_period ON Payroll(period)"));
+        // 追溯重算任务及其断点
+        MIGRATIONS.add(new Migration(6, "Retroactive recalculation jobs", null,
+            "CREATE TABLE IF NOT EXISTS RecalcJob (id VARCHAR(36) PRIMARY KEY, fromPeriod VARCHAR(16), toPeriod VARCHAR(16), deductionRate DOUBLE, status VARCHAR(16), totalRows INT, processed INT, updated INT, lastId INT, error VARCHAR(1000), createdAt TIMESTAMP, updatedAt TIMESTAMP)"));
+        // 定时任务及运行记录
+        MIGRATIONS.add(new Migration(7, "Scheduled jobs", null,
+            "CREATE TABLE IF NOT EXISTS ScheduledJob (name VARCHAR(64) PRIMARY KEY, jobType VARCHAR(32), schedule VARCHAR(128), parameters VARCHAR(1000), enabled BOOLEAN, nextRunAt TIMESTAMP, lastStartedAt TIMESTAMP, lastDurationMs BIGINT, lastStatus VARCHAR(16), lastError VARCHAR(1000), attempts INT)",
+            "CREATE TABLE IF NOT EXISTS JobRun (id BIGINT AUTO_INCREMENT PRIMARY KEY, jobName VARCHAR(64), startedAt TIMESTAMP, durationMs BIGINT, status VARCHAR(16), attempt INT, message VARCHAR(1000))",
+            "CREATE INDEX IF NOT EXISTS idx_jobrun_job ON JobRun(jobName, id)"));
+        // 批量录入：每个员工每个期间只能认领一次，防止并发或重发的批次重复生成工资单
+        MIGRATIONS.add(new Migration(8, "Payroll period claims for batch entry", null,
+            "CREATE TABLE IF NOT EXISTS PayrollPeriodClaim (employeeId INT, period VARCHAR(255), PRIMARY KEY (employeeId, period))"));
+    }
+
+    /**
+     * Applies every pending migration and verifies the checksums of applied ones.
+     * @return Number of migrations applied (0 when the schema was already current)
+     */
+    public static int migrate() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Map<Integer, Long> applied = loadApplied(conn);
+            int count = 0;
+            for (Migration m : MIGRATIONS) {
+                Long checksum = applied.get(m.version);
+                if (checksum != null) {
+                    if (checksum != m.checksum()) {
+                        throw new SQLException("Schema migration " + m.version + " (" + m.description + ") was changed after it was applied.");
+                    }
+                    continue;
+                }
+                apply(conn, m);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return The schema version this build expects
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    private static Map<Integer, Long> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'SCHEMA_VERSION'")) {
+                rs.next();
+                if (rs.getInt(1) == 0) {
+                    stmt.executeUpdate("CREATE TABLE schema_version (version INT PRIMARY KEY, description VARCHAR(255), checksum BIGINT, appliedAt TIMESTAMP, durationMs BIGINT)");
+                    return applied;
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+                while (rs.next()) {
+                    applied.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection conn, Migration m) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : m.statements) {
+                stmt.executeUpdate(sql);
+            }
+        }
+        // 数据回填与版本记录在同一事务中提交（DDL在H2中会自动提交，语句本身是幂等的）
+        conn.setAutoCommit(false);
+        long durationMs;
+        try {
+            if (m.action != null) {
+                m.action.run(conn);
+            }
+            durationMs = (System.nanoTime() - start) / 1_000_000;
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO schema_version (version, description, checksum, appliedAt, durationMs) VALUES (?, ?, ?, CURRENT_TIMESTAMP, ?)")) {
+                stmt.setInt(1, m.version);
+                stmt.setString(2, m.description);
+                stmt.setLong(3, m.checksum());
+                stmt.setLong(4, durationMs);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        System.out.println("[SERVER] Applied schema migration " + m.version + ": " + m.description + " (" + durationMs + " ms)");
+    }
+}
@@ -1,33 +1,166 @@
 package server;
 
+import common.EmployeeService;
+import common.PayrollService;
+import java.io.File;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 public class Server {
     public static void main(String[] args) {
+        // 分片部署：-Dpayroll.shard.index=0 -Dpayroll.shard.count=3 -Dpayroll.port=1100 -Dpayroll.db=./payroll-shard0
+        int port = Integer.getInteger("payroll.port", 1099);
+        int shardIndex = Integer.getInteger("payroll.shard.index", 0);
+        int shardCount = Integer.getInteger("payroll.shard.count", 1);
+        long startedAt = System.nanoTime();
+        long phaseStart = startedAt;
         try {
-            // 初始化数据库表
+            // H2 在最后一个连接关闭时会关闭数据库文件；保持一个连接直到进程退出，避免每次调用都重新打开数据库
+            Connection keepOpen = DatabaseConnection.getConnection();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    keepOpen.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }));
+            phaseStart = logPhase("database open", phaseStart);
+
+            // 初始化数据库表：按版本执行未应用的迁移，已是最新时不执行任何DDL
+            int applied = SchemaMigrator.migrate();
+            phaseStart = logPhase("schema (" + applied + " migrations applied, version " + SchemaMigrator.latestVersion() + ")", phaseStart);
+
             try (Connection conn = DatabaseConnection.getConnection();
                  Statement stmt = conn.createStatement()) {
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Employee (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(255) UNIQUE, password VARCHAR(255), firstName VARCHAR(255), lastName VARCHAR(255), icPassport VARCHAR(255), role VARCHAR(255))");
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Payroll (id INT AUTO_INCREMENT PRIMARY KEY, employeeId INT, period VARCHAR(255), baseSalary DOUBLE, overtimeHours DOUBLE, overtimeRate DOUBLE, bonus DOUBLE, allowance DOUBLE, grossPay DOUBLE, deductions DOUBLE, netPay DOUBLE, FOREIGN KEY (employeeId) REFERENCES Employee(id))");
+                if (shardCount > 1) {
+                    ShardMap shardMap = new ShardMap(shardCount);
+                    alignIdentity(stmt, shardMap, shardIndex, "Employee");
+                    alignIdentity(stmt, shardMap, shardIndex, "Payroll", "PayrollArchive");
+                }
+                seedChangeVersion(stmt);
+            }
+            PayrollArchiver.init();
+            // 归档：-Dpayroll.archive.horizonMonths=24 表示只在热表保留最近24个月，由定时任务每天凌晨2点检查；去掉该参数则停用任务
+            int horizonMonths = Integer.getInteger("payroll.archive.horizonMonths", 0);
+            if (horizonMonths > 0) {
+                JobScheduler.getInstance().ensureJob("archive", JobScheduler.JobType.ARCHIVE, "0 2 * * *", "horizonMonths=" + horizonMonths);
+            } else {
+                JobScheduler.getInstance().disable("archive");
             }
+            // 审计日志：所有修改操作追加到内存映射的段文件，关闭时刷盘
+            AuditJournal.open();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> AuditJournal.getInstance().sync()));
+            // 在线备份：-Dpayroll.backup.dir=backups 注册定时任务 backup，每天凌晨3点增量备份，每7次做一次全量
+            String backupDir = System.getProperty("payroll.backup.dir");
+            if (backupDir != null) {
+                JobScheduler.getInstance().ensureJob("backup", JobScheduler.JobType.BACKUP, "0 3 * * *", "dir=" + backupDir + ";fullEvery=7");
+            } else {
+                JobScheduler.getInstance().disable("backup");
+            }
+            phaseStart = logPhase("state (shard ids, change versions, archive, audit)", phaseStart);
+            int analyticsRows = PayrollColumnStore.getInstance().load();
+            phaseStart = logPhase("analytics store (" + analyticsRows + " rows)", phaseStart);
+            int indexedEmployees = EmployeeSearchIndex.getInstance().load();
+            phaseStart = logPhase("employee search index (" + indexedEmployees + " employees)", phaseStart);
+            // 上次运行未完成的重算任务从断点继续
+            int resumedJobs = RecalculationJob.resumePending();
+            if (resumedJobs > 0) {
+                System.out.println("[SERVER] Resumed " + resumedJobs + " recalculation job(s)");
+            }
+            JobScheduler.getInstance().start();
 
             // 启动纯RMI注册表，完全禁用SSL
             System.setProperty("java.rmi.server.hostname", "0.0.0.0");
-            Registry registry = LocateRegistry.createRegistry(1099);
-            registry.rebind("EmployeeService", new EmployeeServiceImpl());
-            registry.rebind("PayrollService", new PayrollServiceImpl());
+            // 回调客户端时的超时，防止失联客户端长期占用事件分发线程
+            if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+                System.setProperty("sun.rmi.transport.tcp.responseTimeout", "5000");
+            }
+            Registry registry = LocateRegistry.createRegistry(port);
+            // 每类调用（读/写/批量）限制并发数，超出等待队列时立即返回“服务器繁忙”
+            EmployeeService employeeService = AdmissionControl.wrap(EmployeeService.class, new EmployeeServiceImpl());
+            PayrollService payrollService = AdmissionControl.wrap(PayrollService.class, new PayrollServiceImpl());
+            registry.rebind("EmployeeService", employeeService);
+            registry.rebind("PayrollService", payrollService);
+            MonitoringServiceImpl monitoringService = new MonitoringServiceImpl();
+            registry.rebind("MonitoringService", monitoringService);
+            registry.rebind("SchedulerService", new SchedulerServiceImpl());
+            // 多租户：-Dpayroll.tenants.dir=tenants 时每个租户一个数据库文件，客户端通过 TenantDirectory 按租户查找服务
+            String tenantsDir = System.getProperty("payroll.tenants.dir");
+            if (tenantsDir != null) {
+                TenantManager.init(new File(tenantsDir));
+                registry.rebind("TenantDirectory", new TenantDirectoryImpl());
+            }
+            phaseStart = logPhase("rmi registry and services", phaseStart);
+            // 可选的二进制协议端点，供大批量集成使用
+            int binaryPort = Integer.getInteger("payroll.binary.port", 0);
+            if (binaryPort > 0) {
+                BinaryEndpoint.start(binaryPort, employeeService, payrollService);
+                phaseStart = logPhase("binary protocol endpoint", phaseStart);
+            }
+            // 可选的只读HTTP/JSON接口，供看板等不支持RMI的工具使用
+            int httpPort = Integer.getInteger("payroll.http.port", 0);
+            if (httpPort > 0) {
+                HttpApi.start(httpPort, employeeService, payrollService, monitoringService);
+                logPhase("http api", phaseStart);
+            }
 
             System.out.println("Server started. Pure RMI (No SSL).");
-            System.out.println("Listening on port 1099 for all network interfaces.");
+            if (shardCount > 1) {
+                System.out.println("Serving shard " + shardIndex + " of " + shardCount + ".");
+            }
+            System.out.println("Listening on port " + port + " for all network interfaces.");
+            System.out.println("[SERVER] Ready in " + (System.nanoTime() - startedAt) / 1_000_000 + " ms");
         } catch (SQLException e) {
             e.printStackTrace();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Makes sure new change versions are above every version stored in the database.
+     */
+    static void seedChangeVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT GREATEST((SELECT COALESCE(MAX(version), 0) FROM Employee), (SELECT COALESCE(MAX(version), 0) FROM Payroll), (SELECT COALESCE(MAX(version), 0) FROM DeletedRow))")) {
+            rs.next();
+            ChangeVersion.seed(rs.getLong(1));
+        }
+    }
+
+    /**
+     * Logs how long a startup phase took.
+     * @return Start time of the next phase
+     */
+    private static long logPhase(String phase, long phaseStart) {
+        long now = System.nanoTime();
+        System.out.println("[SERVER] Startup phase " + phase + ": " + (now - phaseStart) / 1_000_000 + " ms");
+        return now;
+    }
+
+    /**
+     * Makes a table's identity column hand out only IDs owned by this shard,
+     * so the router can find the owning shard from an ID alone and IDs stay unique across shards.
+     * @param tables The identity table first, then any tables holding IDs it allocated earlier
+     */
+    private static void alignIdentity(Statement stmt, ShardMap shardMap, int shardIndex, String... tables) throws SQLException {
+        String table = tables[0];
+        try (ResultSet rs = stmt.executeQuery("SELECT IDENTITY_INCREMENT FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = '" + table.toUpperCase() + "' AND COLUMN_NAME = 'ID'")) {
+            if (rs.next() && rs.getLong(1) == shardMap.getShardCount()) {
+                return; // 已对齐，跳过DDL
+            }
+        }
+        int maxId = 0;
+        for (String idTable : tables) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + idTable)) {
+                rs.next();
+                maxId = Math.max(maxId, rs.getInt(1));
+            }
+        }
+        stmt.executeUpdate("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + shardMap.nextIdForShard(shardIndex, maxId));
+        stmt.executeUpdate("ALTER TABLE " + table + " ALTER COLUMN id SET INCREMENT BY " + shardMap.getShardCount());
+    }
+}
@@ -0,0 +1,53 @@
+package server;
+
+/**
+ * ShardMap decides which server instance owns an employee.
+ * Employees are hash-partitioned by username; each shard allocates IDs congruent to its
+ * index (shard i of n hands out i+1, i+1+n, ...), so an ID alone identifies its shard.
+ */
+public class ShardMap {
+    private final int shardCount;
+
+    public ShardMap(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1.");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Returns the shard that owns the given username (used for register and login).
+     * @param username Employee username
+     * @return Shard index in [0, shardCount)
+     */
+    public int shardForUsername(String username) {
+        return Math.floorMod(username == null ? 0 : username.hashCode(), shardCount);
+    }
+
+    /**
+     * Returns the shard that allocated the given ID (employee or payroll record).
+     * @param id Employee or payroll record ID
+     * @return Shard index in [0, shardCount)
+     */
+    public int shardForId(int id) {
+        return Math.floorMod(id - 1, shardCount);
+    }
+
+    /**
+     * Returns the first ID above currentMaxId that belongs to the given shard.
+     * @param shardIndex Shard index
+     * @param currentMaxId Largest ID already stored in the shard's database
+     * @return Next ID the shard may allocate
+     */
+    public int nextIdForShard(int shardIndex, int currentMaxId) {
+        int next = currentMaxId + 1;
+        while (shardForId(next) != shardIndex) {
+            next++;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,158 @@
+package server;
+
+import common.ChangeSet;
+import common.EmployeeService;
+import common.PayrollService;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ShardRouter is a thin router process for a sharded deployment.
+ * It binds EmployeeService and PayrollService in its own registry and forwards every call
+ * to the shard that owns the employee; listings are scatter-gathered across all shards.
+ * Clients connect to the router exactly as they would to a single Server.
+ */
+public class ShardRouter {
+    /** A remote call against one shard's stub. */
+    interface ShardCall<S, T> {
+        T call(S stub) throws RemoteException;
+    }
+
+    private final ShardMap shardMap;
+    private final List<EmployeeService> employeeShards;
+    private final List<PayrollService> payrollShards;
+    private final ExecutorService executor;
+
+    public ShardRouter(List<EmployeeService> employeeShards, List<PayrollService> payrollShards) {
+        this.shardMap = new ShardMap(employeeShards.size());
+        this.employeeShards = employeeShards;
+        this.payrollShards = payrollShards;
+        this.executor = Executors.newFixedThreadPool(employeeShards.size() * 2, r -> {
+            Thread t = new Thread(r, "shard-gather");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    public List<EmployeeService> getEmployeeShards() {
+        return employeeShards;
+    }
+
+    public List<PayrollService> getPayrollShards() {
+        return payrollShards;
+    }
+
+    public EmployeeService employeeShardForUsername(String username) {
+        return employeeShards.get(shardMap.shardForUsername(username));
+    }
+
+    public EmployeeService employeeShardForId(int employeeId) {
+        return employeeShards.get(shardMap.shardForId(employeeId));
+    }
+
+    public PayrollService payrollShardForEmployee(int employeeId) {
+        return payrollShards.get(shardMap.shardForId(employeeId));
+    }
+
+    /**
+     * Runs the call on every shard in parallel and returns the per-shard results in shard order.
+     * Fails the whole call if any shard fails, so callers never see a silently partial listing.
+     */
+    public <S, T> List<T> scatter(List<S> shards, ShardCall<S, T> call) throws RemoteException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (S shard : shards) {
+            futures.add(executor.submit(() -> call.call(shard)));
+        }
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                throw new RemoteException("Shard " + i + " failed: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Interrupted while waiting for shard " + i, e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Scatter-gathers a list-returning call and concatenates the results.
+     */
+    public <S, T> List<T> gather(List<S> shards, ShardCall<S, List<T>> call) throws RemoteException {
+        List<T> merged = new ArrayList<>();
+        for (List<T> part : scatter(shards, call)) {
+            merged.addAll(part);
+        }
+        return merged;
+    }
+
+    /**
+     * Merges per-shard change sets. Shards version independently, so the merged version is the
+     * lowest shard version: rows above it on faster shards are resent next time, which is harmless
+     * because clients apply upserts by ID.
+     */
+    public static <T extends Serializable> ChangeSet<T> mergeChanges(List<ChangeSet<T>> parts) {
+        ChangeSet<T> merged = new ChangeSet<>();
+        long version = Long.MAX_VALUE;
+        for (ChangeSet<T> part : parts) {
+            merged.getUpserts().addAll(part.getUpserts());
+            merged.getDeletedIds().addAll(part.getDeletedIds());
+            version = Math.min(version, part.getVersion());
+        }
+        merged.setVersion(parts.isEmpty() ? 0 : version);
+        return merged;
+    }
+
+    public static void main(String[] args) {
+        // 用法：-Dpayroll.shards=localhost:1100,localhost:1101 -Dpayroll.port=1099
+        String shardList = System.getProperty("payroll.shards");
+        if (shardList == null || shardList.trim().isEmpty()) {
+            System.err.println("Missing -Dpayroll.shards=host:port,host:port,...");
+            return;
+        }
+        int port = Integer.getInteger("payroll.port", 1099);
+        try {
+            List<EmployeeService> employeeShards = new ArrayList<>();
+            List<PayrollService> payrollShards = new ArrayList<>();
+            // 顺序即分片编号，必须与各 Server 的 payroll.shard.index 一致
+            for (String endpoint : shardList.split(",")) {
+                String[] hostPort = endpoint.trim().split(":");
+                Registry shardRegistry = LocateRegistry.getRegistry(hostPort[0], Integer.parseInt(hostPort[1]));
+                employeeShards.add((EmployeeService) shardRegistry.lookup("EmployeeService"));
+                payrollShards.add((PayrollService) shardRegistry.lookup("PayrollService"));
+                System.out.println("[ROUTER] Shard " + (employeeShards.size() - 1) + " -> " + endpoint.trim());
+            }
+            ShardRouter router = new ShardRouter(employeeShards, payrollShards);
+
+            System.setProperty("java.rmi.server.hostname", "0.0.0.0");
+            Registry registry = LocateRegistry.createRegistry(port);
+            RoutingEmployeeServiceImpl employeeService = new RoutingEmployeeServiceImpl(router);
+            RoutingPayrollServiceImpl payrollService = new RoutingPayrollServiceImpl(router);
+            registry.rebind("EmployeeService", employeeService);
+            registry.rebind("PayrollService", payrollService);
+            int binaryPort = Integer.getInteger("payroll.binary.port", 0);
+            if (binaryPort > 0) {
+                BinaryEndpoint.start(binaryPort, employeeService, payrollService);
+            }
+
+            System.out.println("Shard router started for " + employeeShards.size() + " shards.");
+            System.out.println("Listening on port " + port + " for all network interfaces.");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+/**
+ * Tenant is one client company hosted by a multi-tenant server: its own H2 database file, a small
+ * connection pool, and the in-memory structures built from that database (analytics store, search
+ * index, archive cutoff).
+ * <p>
+ * A thread works for a tenant between {@link TenantManager#acquire} and {@link TenantManager#release};
+ * while it does, {@link #current()} is set and DatabaseConnection, PayrollColumnStore,
+ * EmployeeSearchIndex and PayrollArchiver use the tenant's instances instead of the default ones.
+ * Work handed to other threads must go through {@link #propagate(Runnable)}.
+ * ChangeVersion stays shared: versions are clock based and only have to be unique and increasing
+ * within each database, which a single sequence for all tenants guarantees.
+ */
+final class Tenant {
+    private static final ThreadLocal<Tenant> CURRENT = new ThreadLocal<>();
+    private static final int POOL_SIZE = Integer.getInteger("payroll.tenants.poolSize", 8);
+
+    final String id;
+    private final String url;
+    // 正在使用该租户的调用和后台任务数，大于0时不会被淘汰
+    final AtomicInteger inUse = new AtomicInteger();
+    volatile long lastUsed = System.currentTimeMillis();
+    volatile String archiveCutoff;
+    private volatile JdbcConnectionPool pool;
+    private volatile PayrollColumnStore columnStore;
+    private volatile EmployeeSearchIndex searchIndex;
+    // 打开失败后该实例作废，不再重试打开
+    private boolean failed;
+
+    /**
+     * Thrown by {@link #open()} when an earlier open of the same instance failed. The instance is
+     * unusable; acquire the tenant again to get a fresh one.
+     */
+    static final class FailedException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        FailedException(String id) {
+            super("Tenant " + id + " failed to open");
+        }
+    }
+
+    Tenant(String id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
+    /**
+     * @return The tenant the current thread works for, or null for the default database
+     */
+    static Tenant current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return ID of the current tenant, or null for the default database
+     */
+    static String currentId() {
+        Tenant tenant = CURRENT.get();
+        return tenant == null ? null : tenant.id;
+    }
+
+    /**
+     * Wraps a task so it runs for the current tenant on another thread. The tenant stays pinned
+     * (cannot be evicted) until the task has run.
+     */
+    static Runnable propagate(Runnable task) {
+        Tenant tenant = CURRENT.get();
+        if (tenant == null) {
+            return task;
+        }
+        tenant.inUse.incrementAndGet();
+        return () -> {
+            Tenant previous = enter(tenant);
+            try {
+                task.run();
+            } finally {
+                leave(previous);
+                TenantManager.release(tenant);
+            }
+        };
+    }
+
+    /**
+     * Makes the tenant current on this thread.
+     * @return The previously current tenant, to pass to {@link #leave(Tenant)}
+     */
+    static Tenant enter(Tenant tenant) {
+        Tenant previous = CURRENT.get();
+        CURRENT.set(tenant);
+        return previous;
+    }
+
+    static void leave(Tenant previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    Connection connection() throws SQLException {
+        JdbcConnectionPool p = pool;
+        if (p == null) {
+            throw new SQLException("Tenant " + id + " is not open");
+        }
+        return p.getConnection();
+    }
+
+    PayrollColumnStore columnStore() {
+        return columnStore;
+    }
+
+    EmployeeSearchIndex searchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Opens the database on first use: migrates the schema and builds the in-memory structures.
+     * If that fails the instance stays closed for good.
+     * @return false if it was already open
+     * @throws FailedException if an earlier call failed to open it
+     */
+    synchronized boolean open() throws SQLException {
+        if (failed) {
+            throw new FailedException(id);
+        }
+        if (pool != null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        JdbcConnectionPool p = JdbcConnectionPool.create(url, "sa", "sa");
+        p.setMaxConnections(POOL_SIZE);
+        Tenant previous = enter(this);
+        try {
+            pool = p;
+            columnStore = new PayrollColumnStore();
+            searchIndex = new EmployeeSearchIndex();
+            SchemaMigrator.migrate();
+            try (Connection conn = p.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                Server.seedChangeVersion(stmt);
+            }
+            PayrollArchiver.init();
+            int rows = columnStore.load();
+            int employees = searchIndex.load();
+            RecalculationJob.resumePending();
+            System.out.printf("[SERVER] Tenant %s opened in %.0f ms (%d employees, %d payroll rows)%n",
+                    id, (System.nanoTime() - start) / 1e6, employees, rows);
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            failed = true;
+            close();
+            throw e;
+        } finally {
+            leave(previous);
+        }
+    }
+
+    /**
+     * Closes the pool (and with it the database file) and drops the in-memory structures.
+     */
+    synchronized void close() {
+        JdbcConnectionPool p = pool;
+        pool = null;
+        columnStore = null;
+        searchIndex = null;
+        archiveCutoff = null;
+        if (p != null) {
+            p.dispose();
+        }
+    }
+}
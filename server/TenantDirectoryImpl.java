@@ -0,0 +1,60 @@
+package server;
+
+import common.EmployeeService;
+import common.PayrollService;
+import common.TenantDirectory;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TenantDirectoryImpl exports one pair of tenant-scoped service stubs per tenant, on first lookup.
+ * Stubs are cheap and stay exported; the tenant's database is only opened when a call arrives and
+ * may be closed again by {@link TenantManager} between calls.
+ */
+public class TenantDirectoryImpl extends UnicastRemoteObject implements TenantDirectory {
+    private final EmployeeService employeeService;
+    private final PayrollService payrollService;
+    private final Map<String, Remote[]> stubs = new ConcurrentHashMap<>();
+
+    public TenantDirectoryImpl() throws RemoteException {
+        super();
+        // 所有租户共用无状态的服务实现，由租户代理切换数据库
+        EmployeeServiceImpl employees = new EmployeeServiceImpl();
+        PayrollServiceImpl payroll = new PayrollServiceImpl();
+        UnicastRemoteObject.unexportObject(employees, true);
+        UnicastRemoteObject.unexportObject(payroll, true);
+        this.employeeService = employees;
+        this.payrollService = payroll;
+    }
+
+    @Override
+    public Remote lookup(String tenantId, String serviceName) throws RemoteException {
+        TenantManager.checkTenant(tenantId);
+        int index;
+        if ("EmployeeService".equals(serviceName)) {
+            index = 0;
+        } else if ("PayrollService".equals(serviceName)) {
+            index = 1;
+        } else {
+            throw new RemoteException("Unknown service: " + serviceName);
+        }
+        Remote[] pair = stubs.get(tenantId);
+        if (pair == null) {
+            synchronized (stubs) {
+                pair = stubs.get(tenantId);
+                if (pair == null) {
+                    // 准入控制在外层：打开租户数据库也计入调用的并发限制
+                    pair = new Remote[]{
+                        AdmissionControl.wrap(EmployeeService.class, TenantManager.scope(EmployeeService.class, tenantId, employeeService)),
+                        AdmissionControl.wrap(PayrollService.class, TenantManager.scope(PayrollService.class, tenantId, payrollService))
+                    };
+                    stubs.put(tenantId, pair);
+                }
+            }
+        }
+        return pair[index];
+    }
+}
@@ -0,0 +1,230 @@
+package server;
+
+import common.ServerBusyException;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * TenantManager hosts many tenants' databases in one server (-Dpayroll.tenants.dir=tenants, one
+ * H2 file per tenant named after its ID).
+ * <p>
+ * A tenant's database is opened on its first call and kept in an LRU of at most
+ * -Dpayroll.tenants.maxOpen open tenants. A tenant idle for -Dpayroll.tenants.idleSeconds is
+ * closed by a background reaper, and opening one more tenant when the LRU is full closes the least
+ * recently used idle one. Tenants with calls or background work in progress are never closed;
+ * if every open tenant is busy the new call is rejected as server busy. Each open tenant costs
+ * at most -Dpayroll.tenants.cacheKb of H2 page cache plus its pool and in-memory indexes, so the
+ * memory footprint is bounded by maxOpen rather than by the number of tenants.
+ */
+final class TenantManager {
+    private static final int MAX_OPEN = Integer.getInteger("payroll.tenants.maxOpen", 32);
+    private static final long IDLE_MS = Long.getLong("payroll.tenants.idleSeconds", 300) * 1000;
+    private static final int CACHE_KB = Integer.getInteger("payroll.tenants.cacheKb", 4096);
+    // 默认只打开已存在的租户库；开启后首次访问时自动创建
+    private static final boolean AUTO_CREATE = Boolean.getBoolean("payroll.tenants.autoCreate");
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    // 按访问顺序排列，最前面的是最久未用的
+    private static final LinkedHashMap<String, Tenant> OPEN = new LinkedHashMap<>(16, 0.75f, true);
+    private static final AtomicLong opened = new AtomicLong();
+    private static final AtomicLong evicted = new AtomicLong();
+    private static volatile File dir;
+
+    private TenantManager() {
+    }
+
+    /**
+     * Enables tenant hosting and starts the idle reaper.
+     * @param tenantsDir Directory holding the tenants' database files
+     */
+    static synchronized void init(File tenantsDir) {
+        if (dir != null) {
+            return;
+        }
+        tenantsDir.mkdirs();
+        dir = tenantsDir;
+        ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tenant-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(IDLE_MS / 2, 30_000));
+        reaper.scheduleWithFixedDelay(TenantManager::closeIdle, period, period, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(TenantManager::closeAll));
+        System.out.println("[SERVER] Hosting tenants from " + tenantsDir.getAbsolutePath() + " (max " + MAX_OPEN + " open, idle close after " + IDLE_MS / 1000 + "s)");
+    }
+
+    /**
+     * Checks that a tenant ID is well formed and, unless auto-create is on, that its database exists.
+     */
+    static void checkTenant(String tenantId) throws RemoteException {
+        if (dir == null) {
+            throw new RemoteException("This server does not host tenants");
+        }
+        if (tenantId == null || !TENANT_ID.matcher(tenantId).matches()) {
+            throw new RemoteException("Invalid tenant ID: " + tenantId);
+        }
+        if (!AUTO_CREATE && !new File(dir, tenantId + ".mv.db").isFile()) {
+            throw new RemoteException("Unknown tenant: " + tenantId);
+        }
+    }
+
+    /**
+     * Pins a tenant for a call, opening its database if needed. Must be paired with {@link #release}.
+     * @throws ServerBusyException if the tenant is not open and every open tenant is busy
+     */
+    static Tenant acquire(String tenantId) throws RemoteException {
+        while (true) {
+            Tenant tenant = pin(tenantId);
+            try {
+                if (tenant.open()) {
+                    opened.incrementAndGet();
+                }
+                return tenant;
+            } catch (Tenant.FailedException e) {
+                // 另一个调用打开该实例失败：移出LRU后重新获取一个新实例
+                synchronized (OPEN) {
+                    OPEN.remove(tenantId, tenant);
+                }
+                release(tenant);
+            } catch (SQLException | RuntimeException e) {
+                // 打开失败（包括加载内存索引失败）时移出LRU并释放，否则会永久占用一个名额；
+                // 同时持有该实例的其他调用会收到FailedException并重新获取
+                e.printStackTrace();
+                synchronized (OPEN) {
+                    OPEN.remove(tenantId, tenant);
+                }
+                release(tenant);
+                throw new RemoteException("Database for tenant " + tenantId + " is unavailable: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Finds or registers the tenant in the LRU and marks it in use, evicting idle tenants to make room.
+     */
+    private static Tenant pin(String tenantId) throws ServerBusyException {
+        Tenant tenant;
+        List<Tenant> closing = new ArrayList<>();
+        synchronized (OPEN) {
+            tenant = OPEN.get(tenantId);
+            if (tenant == null) {
+                Iterator<Tenant> lru = OPEN.values().iterator();
+                while (OPEN.size() >= MAX_OPEN && lru.hasNext()) {
+                    Tenant candidate = lru.next();
+                    if (candidate.inUse.get() == 0) {
+                        lru.remove();
+                        closing.add(candidate);
+                    }
+                }
+                if (OPEN.size() >= MAX_OPEN) {
+                    throw new ServerBusyException("Server busy: " + MAX_OPEN + " tenants open and in use. Please retry shortly.");
+                }
+                tenant = new Tenant(tenantId, url(tenantId));
+                OPEN.put(tenantId, tenant);
+            }
+            tenant.inUse.incrementAndGet();
+        }
+        close(closing, "evicted");
+        return tenant;
+    }
+
+    static void release(Tenant tenant) {
+        tenant.lastUsed = System.currentTimeMillis();
+        tenant.inUse.decrementAndGet();
+    }
+
+    /**
+     * Wraps a service so every call runs for the given tenant. Like {@link AdmissionControl#wrap},
+     * the result is a plain proxy; wrap it with AdmissionControl to export it.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Remote> T scope(Class<T> iface, String tenantId, T target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(target, args);
+            }
+            Tenant tenant = acquire(tenantId);
+            Tenant previous = Tenant.enter(tenant);
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                Tenant.leave(previous);
+                release(tenant);
+            }
+        };
+        return (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, handler);
+    }
+
+    private static String url(String tenantId) {
+        String path = new File(dir, tenantId).getAbsolutePath();
+        return "jdbc:h2:" + path + ";CACHE_SIZE=" + CACHE_KB + (AUTO_CREATE ? "" : ";IFEXISTS=TRUE");
+    }
+
+    private static void closeIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_MS;
+        List<Tenant> closing = new ArrayList<>();
+        synchronized (OPEN) {
+            Iterator<Tenant> it = OPEN.values().iterator();
+            while (it.hasNext()) {
+                Tenant tenant = it.next();
+                if (tenant.inUse.get() == 0 && tenant.lastUsed < cutoff) {
+                    it.remove();
+                    closing.add(tenant);
+                }
+            }
+        }
+        close(closing, "idle");
+    }
+
+    private static void closeAll() {
+        List<Tenant> closing;
+        synchronized (OPEN) {
+            closing = new ArrayList<>(OPEN.values());
+            OPEN.clear();
+        }
+        for (Tenant tenant : closing) {
+            tenant.close();
+        }
+    }
+
+    private static void close(List<Tenant> tenants, String reason) {
+        for (Tenant tenant : tenants) {
+            tenant.close();
+            evicted.incrementAndGet();
+            System.out.println("[SERVER] Tenant " + tenant.id + " closed (" + reason + ")");
+        }
+    }
+
+    /**
+     * Adds open/opened/evicted tenant counters to the given metrics map.
+     */
+    static void collectMetrics(Map<String, Long> metrics) {
+        if (dir == null) {
+            return;
+        }
+        synchronized (OPEN) {
+            metrics.put("tenants.open", (long) OPEN.size());
+        }
+        metrics.put("tenants.maxOpen", (long) MAX_OPEN);
+        metrics.put("tenants.opened", opened.get());
+        metrics.put("tenants.evicted", evicted.get());
+    }
+}
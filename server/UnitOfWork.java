@@ -0,0 +1,166 @@
+package server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UnitOfWork binds one connection and transaction to the current thread so several DAO calls
+ * commit (or roll back) together:
+ * <pre>
+ * try (UnitOfWork work = UnitOfWork.begin()) {
+ *     employeeDAO.update(a);
+ *     payrollDAO.insert(b);
+ *     work.commit();
+ * }
+ * </pre>
+ * While a unit is active, {@link DatabaseConnection#getConnection()} returns its connection. The
+ * DAOs' own setAutoCommit, commit and close calls on it do nothing, and a rollback marks the unit
+ * as failed so that {@link #commit()} throws. A unit that is closed without commit is rolled back.
+ * Beginning a unit inside another one joins the outer unit.
+ * <p>
+ * In-memory updates that must only happen once the data is committed (column store, search index)
+ * go through {@link #afterCommit(Runnable)}. The unit also holds a change version for its whole
+ * length, so delta-sync readers never move past rows it has written but not yet committed.
+ */
+final class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final UnitOfWork outer;
+    private final Connection conn;
+    private final Connection shared;
+    private final long version;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean rollbackOnly;
+    private boolean committed;
+
+    private UnitOfWork(Connection conn) {
+        this.outer = null;
+        this.conn = conn;
+        this.shared = share(conn);
+        this.version = ChangeVersion.begin();
+    }
+
+    private UnitOfWork(UnitOfWork outer) {
+        this.outer = outer;
+        this.conn = null;
+        this.shared = null;
+        this.version = 0;
+    }
+
+    /**
+     * Starts a unit on this thread, or joins the one already active.
+     */
+    static UnitOfWork begin() throws SQLException {
+        UnitOfWork active = CURRENT.get();
+        if (active != null) {
+            return new UnitOfWork(active);
+        }
+        Connection conn = DatabaseConnection.open();
+        conn.setAutoCommit(false);
+        UnitOfWork work = new UnitOfWork(conn);
+        CURRENT.set(work);
+        return work;
+    }
+
+    /**
+     * @return The active unit's connection, or null outside a unit
+     */
+    static Connection currentConnection() {
+        UnitOfWork active = CURRENT.get();
+        return active == null ? null : active.shared;
+    }
+
+    /**
+     * Runs the action after the active unit commits (it is dropped on rollback), or at once when
+     * no unit is active.
+     */
+    static void afterCommit(Runnable action) {
+        UnitOfWork active = CURRENT.get();
+        if (active == null) {
+            action.run();
+        } else {
+            active.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Commits the unit and ends it; later DAO calls on this thread use their own connections again.
+     * A joined unit only marks its part as done and leaves the commit to the outer unit.
+     * @throws SQLException If a statement in the unit failed and rolled back, or the commit failed
+     */
+    void commit() throws SQLException {
+        if (committed) {
+            return;
+        }
+        if (outer != null) {
+            committed = true;
+            return;
+        }
+        if (rollbackOnly) {
+            throw new SQLException("Unit of work was rolled back by a failed statement");
+        }
+        conn.commit();
+        committed = true;
+        CURRENT.remove();
+        for (Runnable action : afterCommit) {
+            action.run();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (outer != null) {
+            // 内层未提交即结束，整个外层事务都不能提交
+            if (!committed) {
+                outer.rollbackOnly = true;
+            }
+            return;
+        }
+        try {
+            if (!committed) {
+                conn.rollback();
+            }
+        } finally {
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+            ChangeVersion.end(version);
+            conn.close();
+        }
+    }
+
+    /**
+     * Wraps the connection so DAO code written for its own transaction runs unchanged inside the unit.
+     */
+    private Connection share(Connection target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "close":
+                case "setAutoCommit":
+                case "commit":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+}
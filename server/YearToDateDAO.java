@@ -0,0 +1,114 @@
+package server;
+
+import common.PayrollRecord;
+import common.YearToDate;
+import java.sql.*;
+
+/**
+ * YearToDateDAO maintains per-employee, per-year running totals in PayrollYtd.
+ * Totals are bumped in the same transaction as each payroll insert, so reading them is a
+ * single primary-key lookup; {@link #rebuild} recomputes them from Payroll and PayrollArchive.
+ */
+public class YearToDateDAO {
+    private static final String ACCUMULATE = "MERGE INTO PayrollYtd t USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS DOUBLE), CAST(? AS DOUBLE), CAST(? AS DOUBLE))) s(employeeId, payYear, grossPay, deductions, netPay) "
+            + "ON t.employeeId = s.employeeId AND t.payYear = s.payYear "
+            + "WHEN MATCHED THEN UPDATE SET periodCount = t.periodCount + 1, grossPay = t.grossPay + s.grossPay, deductions = t.deductions + s.deductions, netPay = t.netPay + s.netPay "
+            + "WHEN NOT MATCHED THEN INSERT (employeeId, payYear, periodCount, grossPay, deductions, netPay) VALUES (s.employeeId, s.payYear, 1, s.grossPay, s.deductions, s.netPay)";
+
+    // 重算已有工资单时按差额调整累计值，期数不变
+    static final String ADJUST = "UPDATE PayrollYtd SET grossPay = grossPay + ?, deductions = deductions + ?, netPay = netPay + ? WHERE employeeId = ? AND payYear = ?";
+
+    /**
+     * Extracts the calendar year from a "yyyy-MM" period.
+     * @return The year, or -1 if the period is not in that format
+     */
+    static int yearOf(String period) {
+        if (period == null || period.length() < 4) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(period.substring(0, 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds a newly inserted record to its year's totals, on the caller's connection and transaction.
+     */
+    static void accumulate(Connection conn, PayrollRecord record) throws SQLException {
+        int year = yearOf(record.getPeriod());
+        if (year < 0) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(ACCUMULATE)) {
+            stmt.setInt(1, record.getEmployeeId());
+            stmt.setInt(2, year);
+            stmt.setDouble(3, record.getGrossPay());
+            stmt.setDouble(4, record.getDeductions());
+            stmt.setDouble(5, record.getNetPay());
+            stmt.executeUpdate();
+        }
+    }
+
+    public YearToDate get(int employeeId, int year) {
+        String sql = "SELECT periodCount, grossPay, deductions, netPay FROM PayrollYtd WHERE employeeId = ? AND payYear = ?";
+        YearToDate ytd = new YearToDate();
+        ytd.setEmployeeId(employeeId);
+        ytd.setYear(year);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, employeeId);
+            stmt.setInt(2, year);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                ytd.setPeriodCount(rs.getInt(1));
+                ytd.setGrossPay(rs.getDouble(2));
+                ytd.setDeductions(rs.getDouble(3));
+                ytd.setNetPay(rs.getDouble(4));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return ytd;
+    }
+
+    /**
+     * Recomputes the accumulators from the payroll rows, e.g. after a correction.
+     * @param employeeId Employee to rebuild, or 0 to rebuild every employee
+     * @return Number of accumulator rows written
+     */
+    public int rebuild(int employeeId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int rows = rebuild(conn, employeeId);
+                conn.commit();
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Recomputes the accumulators on the caller's connection and transaction (used by schema
+     * migrations, so the backfill commits together with its version record).
+     */
+    static int rebuild(Connection conn, int employeeId) throws SQLException {
+        String filter = employeeId > 0 ? " WHERE employeeId = " + employeeId : "";
+        String source = "SELECT employeeId, period, grossPay, deductions, netPay FROM Payroll" + filter
+                + " UNION ALL SELECT employeeId, period, grossPay, deductions, netPay FROM PayrollArchive" + filter;
+        String insert = "INSERT INTO PayrollYtd (employeeId, payYear, periodCount, grossPay, deductions, netPay) "
+                + "SELECT employeeId, payYear, COUNT(*), SUM(grossPay), SUM(deductions), SUM(netPay) FROM "
+                + "(SELECT employeeId, CAST(LEFT(period, 4) AS INT) AS payYear, grossPay, deductions, netPay FROM (" + source + ") s WHERE REGEXP_LIKE(period, '^[0-9]{4}')) p "
+                + "GROUP BY employeeId, payYear";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM PayrollYtd" + filter);
+            int rows = stmt.executeUpdate(insert);
+            System.out.println("[SERVER] Rebuilt " + rows + " year-to-date accumulators" + (employeeId > 0 ? " for employeeId=" + employeeId : ""));
+            return rows;
+        }
+    }
+}